@@ -0,0 +1,121 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioReturns;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.TradeBook;
+import com.stock.quotes.QuoteTransport;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+
+/**
+ * {@link PortfolioManagerImpl#calculateAnnualizedReturn} end to end, with canned quotes served
+ * from memory in place of Tiingo, and the per-trade return formula on its own.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnnualizedReturnBenchmark {
+
+  static final LocalDate FIRST_DAY = LocalDate.parse("2015-01-01");
+  static final LocalDate END_DATE = LocalDate.parse("2019-12-31");
+  private static final int SYMBOLS = 500;
+
+  @Param({"10", "1000", "100000"})
+  public int trades;
+
+  private List<PortfolioTrade> portfolio;
+  private TradeBook tradeBook;
+  private PortfolioManager portfolioManager;
+
+  @Setup
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    Map<String, CandleSeries> quotes = new HashMap<>();
+    for (int i = 0; i < Math.min(trades, SYMBOLS); i++) {
+      quotes.put("SYM" + i, dailyCandles(random));
+    }
+    portfolio = new ArrayList<>(trades);
+    int days = (int) (END_DATE.toEpochDay() - FIRST_DAY.toEpochDay());
+    for (int i = 0; i < trades; i++) {
+      portfolio.add(new PortfolioTrade("SYM" + (i % quotes.size()), 1 + random.nextInt(100),
+          FIRST_DAY.plusDays(random.nextInt(days - 30))));
+    }
+
+    tradeBook = TradeBook.of(portfolio);
+
+    QuoteTransport canned = (symbol, from, to) ->
+        CompletableFuture.completedFuture(quotes.get(symbol).between(from, to));
+    portfolioManager = PortfolioManagerImpl.forTransport(
+        new ThrottledQuoteTransport(canned, RequestScheduler.unlimited()), null);
+  }
+
+  /** One candle per weekday between {@link #FIRST_DAY} and {@link #END_DATE}. */
+  private static CandleSeries dailyCandles(SplittableRandom random) {
+    CandleSeries.Builder candles = CandleSeries.builder();
+    double price = 10 + random.nextDouble() * 500;
+    for (LocalDate day = FIRST_DAY; !day.isAfter(END_DATE); day = day.plusDays(1)) {
+      if (day.getDayOfWeek().getValue() > 5) {
+        continue;
+      }
+      double open = price;
+      price = Math.max(1.0, price * (0.98 + random.nextDouble() * 0.04));
+      candles.add(day.toEpochDay(), open, Math.max(open, price), Math.min(open, price), price);
+    }
+    return candles.build();
+  }
+
+  @Benchmark
+  public List<AnnualizedReturn> calculateAnnualizedReturn() {
+    return portfolioManager.calculateAnnualizedReturn(portfolio, END_DATE);
+  }
+
+  @Benchmark
+  public List<AnnualizedReturn> calculateTopAnnualizedReturns() {
+    return portfolioManager.calculateAnnualizedReturn(portfolio, END_DATE, Ranking.top(50));
+  }
+
+  @Benchmark
+  public List<AnnualizedReturn> calculateTopAnnualizedReturnsFromTradeBook() {
+    return portfolioManager.calculateAnnualizedReturn(tradeBook, END_DATE, Ranking.top(50));
+  }
+
+  @Benchmark
+  public PortfolioReturns calculatePortfolioReturns() {
+    return portfolioManager.calculatePortfolioReturns(portfolio, END_DATE);
+  }
+
+  @Benchmark
+  public void calculateAnnualizedReturns(Blackhole blackhole) {
+    for (PortfolioTrade trade : portfolio) {
+      blackhole.consume(PortfolioManagerImpl.calculateAnnualizedReturns(END_DATE, trade, 100.0,
+          125.0));
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.stock.portfolio;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.stock.dto.AnnualizedReturn;
+
+/**
+ * Ranking of computed returns by descending annualized return, as done at the end of every
+ * {@link PortfolioManager} call and by {@code PortfolioManagerApplication}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RankingBenchmark {
+
+  private static final Comparator<AnnualizedReturn> DESCENDING =
+      Comparator.comparing(AnnualizedReturn::getAnnualizedReturn).reversed();
+
+  @Param({"10", "1000", "100000"})
+  public int results;
+
+  private List<AnnualizedReturn> unsorted;
+
+  @Setup
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    unsorted = new ArrayList<>(results);
+    for (int i = 0; i < results; i++) {
+      double totalReturns = random.nextDouble() * 4 - 0.9;
+      unsorted.add(new AnnualizedReturn("SYM" + i, totalReturns / 3, totalReturns));
+    }
+  }
+
+  /** The in-place sort used by {@link PortfolioManagerImpl}. */
+  @Benchmark
+  public List<AnnualizedReturn> listSort() {
+    List<AnnualizedReturn> list = new ArrayList<>(unsorted);
+    list.sort(DESCENDING);
+    return list;
+  }
+
+  /** The stream pipeline used by {@code PortfolioManagerApplication.mainCalculateSingleReturn}. */
+  @Benchmark
+  public List<AnnualizedReturn> streamSorted() {
+    return unsorted.stream().sorted(DESCENDING).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<AnnualizedReturn> topTen() {
+    return unsorted.stream().sorted(DESCENDING).limit(10).collect(Collectors.toList());
+  }
+}
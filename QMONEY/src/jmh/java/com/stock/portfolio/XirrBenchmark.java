@@ -0,0 +1,71 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.decampo.xirr.Transaction;
+import org.decampo.xirr.Xirr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link XirrSolver} against {@code org.decampo.xirr.Xirr} on the same flows. The solver is
+ * refilled on every invocation, as it is when scoring one portfolio after another.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class XirrBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int flows;
+
+  private double[] amounts;
+  private long[] days;
+  private List<Transaction> transactions;
+  private final XirrSolver solver = new XirrSolver();
+
+  @Setup
+  public void setUp() {
+    SplittableRandom random = new SplittableRandom(42);
+    amounts = new double[flows];
+    days = new long[flows];
+    transactions = new ArrayList<>(flows);
+    long day = LocalDate.parse("2010-01-04").toEpochDay();
+    for (int i = 0; i < flows; i++) {
+      day += 1 + random.nextInt(5);
+      amounts[i] = (i < flows * 2 / 3 ? -1 : 1.6) * (100 + random.nextDouble() * 1_000);
+      days[i] = day;
+      transactions.add(new Transaction(amounts[i], LocalDate.ofEpochDay(day)));
+    }
+  }
+
+  @Benchmark
+  public double solver() {
+    solver.reset();
+    for (int i = 0; i < flows; i++) {
+      solver.add(amounts[i], days[i]);
+    }
+    return solver.solve();
+  }
+
+  @Benchmark
+  public double library() {
+    return new Xirr(transactions).xirr();
+  }
+}
@@ -0,0 +1,134 @@
+package com.stock.quotes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.TiingoCandle;
+
+/**
+ * Deserialization of a Tiingo daily-prices payload: binding to {@code TiingoCandle[]}, the
+ * {@link CandleSeries} deserializer behind {@code RestTemplate}, and the two
+ * {@link TiingoResponseParser} entry points, and the parser over the gzipped payload with only
+ * the {@value TiingoEndpoints#CANDLE_COLUMNS} columns that {@link PooledHttpQuoteTransport} asks
+ * for.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TiingoParseBenchmark {
+
+  @Param({"1", "250", "5000"})
+  public int candles;
+
+  private byte[] payload;
+  private byte[] projectedGzip;
+  private ObjectMapper mapper;
+
+  @Setup
+  public void setUp() {
+    payload = payload(candles);
+    projectedGzip = gzip(projectedPayload(candles));
+    mapper = new ObjectMapper();
+    mapper.registerModule(new JavaTimeModule());
+  }
+
+  @Benchmark
+  public TiingoCandle[] objectMapperTiingoCandles() throws IOException {
+    return mapper.readValue(payload, TiingoCandle[].class);
+  }
+
+  @Benchmark
+  public CandleSeries objectMapperCandleSeries() throws IOException {
+    return mapper.readValue(payload, CandleSeries.class);
+  }
+
+  @Benchmark
+  public CandleSeries parseSeries() throws IOException {
+    return TiingoResponseParser.parseSeries(new ByteArrayInputStream(payload));
+  }
+
+  @Benchmark
+  public TiingoResponseParser.Endpoints parseEndpoints() throws IOException {
+    return TiingoResponseParser.parseEndpoints(new ByteArrayInputStream(payload));
+  }
+
+  @Benchmark
+  public CandleSeries parseProjectedGzipSeries() throws IOException {
+    return TiingoResponseParser.parseSeries(
+        new GZIPInputStream(new ByteArrayInputStream(projectedGzip), 8192));
+  }
+
+  /** A Tiingo daily-prices payload with all 13 fields per candle, as the API returns it. */
+  static byte[] payload(int candles) {
+    return payload(candles, true);
+  }
+
+  /** The payload with only the date and the {@value TiingoEndpoints#CANDLE_COLUMNS} columns. */
+  static byte[] projectedPayload(int candles) {
+    return payload(candles, false);
+  }
+
+  private static byte[] payload(int candles, boolean allColumns) {
+    StringBuilder json = new StringBuilder(candles * 320).append('[');
+    LocalDate date = LocalDate.parse("2000-01-03");
+    double price = 100.0;
+    for (int i = 0; i < candles; i++) {
+      double open = price;
+      price = Math.max(1.0, price * (1.0 + ((i * 7919) % 41 - 20) / 1_000.0));
+      double high = Math.max(open, price) * 1.01;
+      double low = Math.min(open, price) * 0.99;
+      if (i > 0) {
+        json.append(',');
+      }
+      if (allColumns) {
+        json.append(String.format(Locale.ROOT, "{\"date\":\"%sT00:00:00.000Z\",\"close\":%.4f,"
+            + "\"high\":%.4f,\"low\":%.4f,\"open\":%.4f,\"volume\":%d,\"adjClose\":%.4f,"
+            + "\"adjHigh\":%.4f,\"adjLow\":%.4f,\"adjOpen\":%.4f,\"adjVolume\":%d,"
+            + "\"divCash\":0.0,\"splitFactor\":1.0}", date, price, high, low, open,
+            1_000_000 + i, price, high, low, open, 1_000_000 + i));
+      } else {
+        json.append(String.format(Locale.ROOT, "{\"date\":\"%sT00:00:00.000Z\",\"close\":%.4f,"
+            + "\"high\":%.4f,\"low\":%.4f,\"open\":%.4f}", date, price, high, low, open));
+      }
+      int dayOfWeek = date.getDayOfWeek().getValue();
+      date = date.plusDays(dayOfWeek >= 5 ? 8 - dayOfWeek : 1);
+    }
+    return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] gzip(byte[] bytes) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(bytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+}
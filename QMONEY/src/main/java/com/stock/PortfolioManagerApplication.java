@@ -1,15 +1,19 @@
 package com.stock;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -18,6 +22,7 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -25,22 +30,73 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
 import org.apache.logging.log4j.ThreadContext;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 import com.stock.dto.AnnualizedReturn;
 import com.stock.dto.Candle;
+import com.stock.dto.CandleSeries;
 import com.stock.dto.PortfolioTrade;
-import com.stock.dto.TiingoCandle;
+import com.stock.dto.TradeBook;
+import com.stock.io.AnnualizedReturnWriter;
+import com.stock.io.PortfolioTradeReader;
 import com.stock.log.UncaughtExceptionHandler;
+import com.stock.metrics.CountingInputStream;
+import com.stock.metrics.MetricsReporter;
+import com.stock.portfolio.PortfolioBatchManager;
 import com.stock.portfolio.PortfolioManager;
 import com.stock.portfolio.PortfolioManagerFactory;
+import com.stock.portfolio.RankedSelection;
+import com.stock.portfolio.Ranking;
+import com.stock.quotes.BatchingQuoteTransport;
+import com.stock.quotes.CandleCache;
+import com.stock.quotes.Futures;
+import com.stock.quotes.HedgedQuoteTransport;
+import com.stock.quotes.HttpDeadlines;
+import com.stock.quotes.PooledHttpQuoteTransport;
+import com.stock.quotes.PooledHttpQuoteTransport.BodyReader;
+import com.stock.quotes.QuoteMetrics;
+import com.stock.quotes.QuoteServiceException;
+import com.stock.quotes.QuoteStore;
+import com.stock.quotes.QuoteTransport;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.RestTemplateQuoteTransport;
+import com.stock.quotes.StoredQuoteTransport;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.quotes.TiingoEndpoints;
+import com.stock.quotes.TiingoResponseParser;
+import com.stock.quotes.TiingoResponseParser.Endpoints;
 
 public class PortfolioManagerApplication {
 
+	/**
+	 * System properties selecting streaming output: {@code ndjson} or {@code array}, written to the
+	 * given file or to standard output.
+	 */
+	public static final String OUTPUT_FORMAT_PROPERTY = "qmoney.output.format";
+	public static final String OUTPUT_FILE_PROPERTY = "qmoney.output.file";
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().registerModule(new JavaTimeModule());
+
 	public static void main(String[] args) throws Exception {
 		Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
 		ThreadContext.put("runId", UUID.randomUUID().toString());
 
-		printJsonObject(mainCalculateReturnsAfterRefactor(args));
+		MetricsReporter metricsReporter = MetricsReporter.fromSystemProperties();
+		try {
+			String outputFormat = System.getProperty(OUTPUT_FORMAT_PROPERTY);
+			if (Files.isDirectory(Paths.get(args[0]))) {
+				printJsonObject(mainCalculateBatchReturns(args));
+			} else if (outputFormat != null) {
+				streamReturns(args, AnnualizedReturnWriter.Format.parse(outputFormat),
+						System.getProperty(OUTPUT_FILE_PROPERTY));
+			} else {
+				printJsonObject(mainCalculateReturnsAfterRefactor(args));
+			}
+		} finally {
+			if (metricsReporter != null) {
+				metricsReporter.close();
+			}
+		}
 	}
 
 	/**
@@ -52,35 +108,19 @@ public class PortfolioManagerApplication {
 	 * @throws URISyntaxException
 	 */
 	public static List<String> mainReadFile(String[] args) throws IOException, URISyntaxException {
-		File file = resolveFileFromResources(args[0]);
-		ObjectMapper om = getObjectMapper();
-		PortfolioTrade[] values = om.readValue(file, PortfolioTrade[].class);
-		List<String> result = new ArrayList<>();
-		for (PortfolioTrade value : values) {
-			result.add(value.getSymbol());
+		try (Stream<PortfolioTrade> trades = PortfolioTradeReader.stream(args[0])) {
+			return trades.map(PortfolioTrade::getSymbol).collect(Collectors.toList());
 		}
-		return result;
-	}
-
-	/**
-	 * Resolve given filename to actual filename and read file.
-	 * @param filename
-	 * @return
-	 * @throws URISyntaxException
-	 */
-	private static File resolveFileFromResources(String filename) throws URISyntaxException {
-		return Paths.get(Thread.currentThread().getContextClassLoader().getResource(filename).toURI()).toFile();
 	}
 
 	/**
-	 * Static method to initialize ObjectMapper
+	 * Static method to get the shared ObjectMapper. ObjectMapper is thread-safe once configured,
+	 * so one instance is reused instead of building a new one per call.
 	 * 
 	 * @return ObjectMapper
 	 */
 	private static ObjectMapper getObjectMapper() {
-		ObjectMapper objectMapper = new ObjectMapper();
-		objectMapper.registerModule(new JavaTimeModule());
-		return objectMapper;
+		return OBJECT_MAPPER;
 	}
 
 	/**
@@ -108,7 +148,9 @@ public class PortfolioManagerApplication {
 	}
 
 	/**
-	 * Method to read values from the file
+	 * Method to read values from the file. The file is looked up on the filesystem first and on
+	 * the classpath second, and parsed one trade at a time; use {@link PortfolioTradeReader}
+	 * directly to process very large files without collecting them.
 	 * 
 	 * @param filename
 	 * @return List<PortfolioTrade>
@@ -116,12 +158,9 @@ public class PortfolioManagerApplication {
 	 * @throws URISyntaxException
 	 */
 	public static List<PortfolioTrade> readTradesFromJson(String filename) throws IOException, URISyntaxException {
-		File file =  resolveFileFromResources(filename);
-		ObjectMapper om = getObjectMapper();
-		PortfolioTrade[] values = om.readValue(file, PortfolioTrade[].class);
 		List<PortfolioTrade> result = new ArrayList<>();
-		for(PortfolioTrade trade: values) {
-			result.add(trade);
+		try (PortfolioTradeReader reader = PortfolioTradeReader.open(filename)) {
+			reader.forEachRemaining(result::add);
 		}
 		return result;
 	}
@@ -161,12 +200,7 @@ public class PortfolioManagerApplication {
 	 */
 	public static String prepareUrl(PortfolioTrade trade, LocalDate endDate, String token)
 			throws JsonParseException, JsonMappingException, IOException {
-		String symbol = trade.getSymbol();
-
-		String urlString = "https://api.tiingo.com/tiingo/daily/" + symbol +"/prices?startDate="
-				+ trade.getPurchaseDate() + "&endDate=" + endDate + "&token=" + token;
-
-		return urlString;
+		return TiingoEndpoints.dailyPrices(trade.getSymbol(), trade.getPurchaseDate(), endDate, token);
 	}
 
 	/**
@@ -175,19 +209,52 @@ public class PortfolioManagerApplication {
 	 * @return String
 	 */
 	public static String makeUrlCall(String urlString) {
-		try {
-			URL url = new URL(urlString);
-			ObjectMapper om = getObjectMapper();
-			TiingoCandle[] quotes = om.readValue(url, TiingoCandle[].class);
-			for(TiingoCandle quote : quotes) {
-				return String.valueOf(quote.getClose());
-			} 
-		} catch (Exception exc) {
-			throw new RuntimeException();
-		} 
+		Endpoints quotes = callTiingo(urlString, TiingoResponseParser::parseEndpoints);
+		if (!quotes.isEmpty()) {
+			return String.valueOf(quotes.getFirstClose());
+		}
 		return null; 
 	}
 
+	/**
+	 * GETs a Tiingo url once the shared request quota allows it, and reads the body with
+	 * {@code reader}. A 429 response is retried with backoff by the scheduler; any other failure
+	 * is reported as a {@link QuoteServiceException} carrying the status and the original cause.
+	 */
+	private static <T> T callTiingo(String urlString, BodyReader<T> reader) {
+		String symbol = TiingoEndpoints.symbolOf(urlString);
+		return RequestScheduler.shared().execute(() -> {
+			long start = QuoteMetrics.startFetch();
+			Throwable failure = null;
+			try {
+				HttpURLConnection connection = (HttpURLConnection) new URL(urlString).openConnection();
+				connection.setConnectTimeout(Math.toIntExact(HttpDeadlines.connectTimeout().toMillis()));
+				connection.setReadTimeout(Math.toIntExact(HttpDeadlines.readTimeout().toMillis()));
+				int status = connection.getResponseCode();
+				if (status != HttpURLConnection.HTTP_OK) {
+					connection.disconnect();
+					throw new QuoteServiceException("HTTP " + status + " from Tiingo", status,
+							QuoteServiceException.parseRetryAfter(connection.getHeaderField("Retry-After")), null);
+				}
+				try (InputStream body = new CountingInputStream(connection.getInputStream(),
+						QuoteMetrics.BYTES_RECEIVED)) {
+					return reader.read(body);
+				}
+			} catch (IOException exc) {
+				failure = exc;
+				if (HttpDeadlines.isTimeout(exc)) {
+					QuoteMetrics.TIMEOUTS.increment();
+				}
+				throw new QuoteServiceException("Tiingo request failed", exc);
+			} catch (RuntimeException exc) {
+				failure = exc;
+				throw exc;
+			} finally {
+				QuoteMetrics.endFetch(symbol, start, failure);
+			}
+		});
+	}
+
 	/**
 	 * Method to get the starting price
 	 * @param candles
@@ -197,6 +264,22 @@ public class PortfolioManagerApplication {
 		return candle.getOpen();
 	}
 
+	/**
+	 * Method to get the opening price of the first trading day on or after startDate, so that a
+	 * purchase on a weekend or holiday is priced at the next session. Candle lists obtained from
+	 * {@link CandleSeries#asCandles()} are searched in O(log n).
+	 * @param candles
+	 * @param startDate
+	 */
+	public static Double getOpeningPriceOnStartDate(List<Candle> candles, LocalDate startDate) {
+		CandleSeries series = CandleSeries.of(candles);
+		int index = series.indexAtOrAfter(startDate);
+		if (index < 0) {
+			throw new RuntimeException("No trading day on or after " + startDate);
+		}
+		return series.getOpen(index);
+	}
+
 	/**
 	 * Method to get the closing price
 	 * @param candles
@@ -206,6 +289,21 @@ public class PortfolioManagerApplication {
 		return candle.getClose();
 	}
 
+	/**
+	 * Method to get the closing price of the last trading day on or before endDate. Candle lists
+	 * obtained from {@link CandleSeries#asCandles()} are searched in O(log n).
+	 * @param candles
+	 * @param endDate
+	 */
+	public static Double getClosingPriceOnEndDate(List<Candle> candles, LocalDate endDate) {
+		CandleSeries series = CandleSeries.of(candles);
+		int index = series.indexAtOrBefore(endDate);
+		if (index < 0) {
+			throw new RuntimeException("No trading day on or before " + endDate);
+		}
+		return series.getClose(index);
+	}
+
 
 	/**
 	 * Method to get candles within given range
@@ -220,29 +318,14 @@ public class PortfolioManagerApplication {
 	public static List<Candle> fetchCandles(PortfolioTrade trade, LocalDate endDate, String token)
 			throws JsonParseException, JsonMappingException {
 		try {
-			List<Candle> result = new ArrayList<>();
-			result =  makeUrlCallForCandle(prepareUrl(trade, endDate, token));
-			return result;
-		} catch (Exception exc) {
-			throw new RuntimeException();
+			return makeUrlCallForCandle(prepareUrl(trade, endDate, token));
+		} catch (IOException exc) {
+			throw new UncheckedIOException(exc);
 		} 
 	}
 
 	private static List<Candle> makeUrlCallForCandle(String urlString) {
-		try {
-			List<Candle> result = new ArrayList<>();
-			URL url = new URL(urlString);
-			ObjectMapper om = getObjectMapper();
-			TiingoCandle[] quotes = om.readValue(url, TiingoCandle[].class);
-
-			for(TiingoCandle candle : quotes) {
-				result.add(candle);
-			}
-
-			return result;
-		} catch (Exception exc) {
-			throw new RuntimeException();
-		} 
+		return callTiingo(urlString, TiingoResponseParser::parseSeries).asCandles();
 	}
 
 	/**
@@ -265,14 +348,102 @@ public class PortfolioManagerApplication {
 		return new AnnualizedReturn(trade.getSymbol(), annualizedReturn, totalReturns);
 	}
 
+	/**
+	 * @param args[0] trade file
+	 * @param args[1] endDate
+	 * @param args[2] optional ranking, {@code all} (the default), {@code top:K} or {@code bottom:K}
+	 */
 	public static List<AnnualizedReturn> mainCalculateReturnsAfterRefactor(String[] args)
 			throws Exception {
 		String file = args[0];
 		LocalDate endDate = LocalDate.parse(args[1]);
-		RestTemplate restTemplate = new RestTemplate();
-		PortfolioManager portfolioManager = PortfolioManagerFactory.getPortfolioManager(restTemplate);
-		List<PortfolioTrade> portfolioTrades = readTradesFromJson(file);
-		return portfolioManager.calculateAnnualizedReturn(portfolioTrades, endDate);
+		Ranking ranking = args.length > 2 ? Ranking.parse(args[2]) : Ranking.all();
+		// Read into columns rather than a PortfolioTrade per lot, so large books fit in memory.
+		TradeBook portfolioTrades = PortfolioTradeReader.readTradeBook(file);
+		try (QuoteTransport transport = openQuoteTransport()) {
+			PortfolioManager portfolioManager =
+					PortfolioManagerFactory.getPortfolioManager(transport, new CandleCache());
+			return portfolioManager.calculateAnnualizedReturnAsync(portfolioTrades, endDate, ranking).join();
+		}
+	}
+
+	/**
+	 * Writes each annualized return to {@code file}, or standard output if null, as soon as it is
+	 * computed, rather than building and printing the whole list at the end.
+	 */
+	private static void streamReturns(String[] args, AnnualizedReturnWriter.Format format, String file)
+			throws Exception {
+		if (file == null) {
+			mainStreamReturns(args, new AnnualizedReturnWriter(System.out, format));
+			return;
+		}
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(file)))) {
+			mainStreamReturns(args, new AnnualizedReturnWriter(out, format));
+		}
+	}
+
+	/**
+	 * Streams the annualized returns of a trade file to {@code writer}, in the order they are
+	 * computed, and closes the writer.
+	 * 
+	 * @param args[0] trade file
+	 * @param args[1] endDate
+	 * @return the number of returns written
+	 */
+	public static long mainStreamReturns(String[] args, AnnualizedReturnWriter writer) throws Exception {
+		LocalDate endDate = LocalDate.parse(args[1]);
+		List<PortfolioTrade> portfolioTrades = readTradesFromJson(args[0]);
+		try (QuoteTransport transport = openQuoteTransport(); AnnualizedReturnWriter output = writer) {
+			PortfolioManager portfolioManager =
+					PortfolioManagerFactory.getPortfolioManager(transport, new CandleCache());
+			return Futures.join(portfolioManager.streamAnnualizedReturn(portfolioTrades, endDate, output));
+		}
+	}
+
+	/**
+	 * Evaluates every portfolio in a directory, fetching each symbol once across all of them.
+	 * 
+	 * @param args[0] directory of trade files; each {@code *.json} file is one portfolio, named
+	 *        after the file
+	 * @param args[1] endDate
+	 * @param args[2] optional number of threads, 8 by default
+	 * @return annualized returns by portfolio name, in file name order
+	 */
+	public static Map<String, List<AnnualizedReturn>> mainCalculateBatchReturns(String[] args)
+			throws Exception {
+		Path directory = Paths.get(args[0]);
+		LocalDate endDate = LocalDate.parse(args[1]);
+		int numThreads = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+		Map<String, List<PortfolioTrade>> portfolios = new LinkedHashMap<>();
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".json")).sorted()
+					.collect(Collectors.toList())) {
+				String name = file.getFileName().toString();
+				portfolios.put(name.substring(0, name.length() - ".json".length()),
+						readTradesFromJson(file.toString()));
+			}
+		}
+		try (QuoteTransport transport = openQuoteTransport()) {
+			PortfolioBatchManager batchManager =
+					PortfolioManagerFactory.getPortfolioBatchManager(transport, new CandleCache());
+			return batchManager.calculateAnnualizedReturns(portfolios, endDate, numThreads);
+		}
+	}
+
+	/**
+	 * Pooled transport to Tiingo, hedging slow requests and batching fetches of the current
+	 * session across symbols, behind the local quote store when
+	 * {@value QuoteStore#DIRECTORY_PROPERTY} names one, so that a run only downloads the candles
+	 * earlier runs have not stored.
+	 */
+	private static QuoteTransport openQuoteTransport() throws IOException {
+		QuoteStore store = QuoteStore.fromSystemProperties();
+		PooledHttpQuoteTransport pooled = new PooledHttpQuoteTransport(getToken());
+		RequestScheduler scheduler = RequestScheduler.shared();
+		QuoteTransport tiingo = new BatchingQuoteTransport(pooled,
+				HedgedQuoteTransport.fromSystemProperties(pooled, scheduler), scheduler);
+		return store == null ? tiingo : new StoredQuoteTransport(store, tiingo);
 	}
 
 	/**
@@ -297,49 +468,42 @@ public class PortfolioManagerApplication {
 		logger.info(mapper.writeValueAsString(object));
 	}
 	
+	/**
+	 * @param args[0] trade file
+	 * @param args[1] endDate
+	 * @param args[2] optional ranking, {@code all} (the default), {@code top:K} or {@code bottom:K}
+	 */
 	public static List<AnnualizedReturn> mainCalculateSingleReturn(String[] args)
 			throws IOException, URISyntaxException {
 
 		String file = args[0];
 		final LocalDate endDate = LocalDate.parse(args[1]);
-		String contents = readFileAsString(file);
-		ObjectMapper objectMapper = getObjectMapper();
-		PortfolioTrade[] portfolioTrades = objectMapper.readValue(contents, PortfolioTrade[].class);
-
-		String uri = "https://api.tiingo.com/tiingo/daily/$SYMBOL/prices?startDate=$STARTDATE&endDate=$ENDDATE&token=$APIKEY";
-
-		return Arrays.stream(portfolioTrades).map(trade -> {
-			String url = uri.replace("$APIKEY", getToken()).replace("$SYMBOL", trade
-					.getSymbol())
-					.replace("$STARTDATE", trade.getPurchaseDate().toString())
-					.replace("$ENDDATE", endDate.toString());
-			TiingoCandle[] tiingoCandles = new RestTemplate().getForObject(url, TiingoCandle[].class);
-			Double buyPrice = 0.0;
-			Double sellPrice = 0.0;
-			for (TiingoCandle candle : tiingoCandles) {
-				if (candle.getDate().equals(trade.getPurchaseDate())) {
-					buyPrice = candle.getOpen();
-				}
-				if (candle.getDate().equals(endDate)) {
-					sellPrice = candle.getClose();
-				}
-			}
-			return calculateAnnualizedReturns(endDate, trade, buyPrice, sellPrice);
-		})
-				.sorted(Comparator.comparing(AnnualizedReturn::getAnnualizedReturn).reversed())
-				.collect(Collectors.toList());
+		Ranking ranking = args.length > 2 ? Ranking.parse(args[2]) : Ranking.all();
+		List<PortfolioTrade> portfolioTrades = readTradesFromJson(file);
 
-	}
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setConnectTimeout(Math.toIntExact(HttpDeadlines.connectTimeout().toMillis()));
+		requestFactory.setReadTimeout(Math.toIntExact(HttpDeadlines.readTimeout().toMillis()));
+		QuoteTransport tiingo = new ThrottledQuoteTransport(new RestTemplateQuoteTransport(new RestTemplate(requestFactory),
+				(symbol, from, to) -> TiingoEndpoints.dailyPrices(symbol, from, to, getToken())),
+				RequestScheduler.shared());
+
+		RankedSelection<AnnualizedReturn> selection = ranking.newSelection(
+				Comparator.comparing(AnnualizedReturn::getAnnualizedReturn).reversed());
+		for (PortfolioTrade trade : portfolioTrades) {
+			CandleSeries candles = tiingo.fetch(trade.getSymbol(), trade.getPurchaseDate(), endDate);
+			int buyIndex = candles.indexAtOrAfter(trade.getPurchaseDate());
+			int sellIndex = candles.indexAtOrBefore(endDate);
+			if (buyIndex < 0 || sellIndex < 0) {
+				throw new RuntimeException("No trading days for " + trade.getSymbol() + " between "
+						+ trade.getPurchaseDate() + " and " + endDate);
+			}
+			Double buyPrice = candles.getOpen(buyIndex);
+			Double sellPrice = candles.getClose(sellIndex);
+			selection.offer(calculateAnnualizedReturns(endDate, trade, buyPrice, sellPrice));
+		}
+		return selection.toList();
 
-	/**
-	 * Method to read file as string
-	 * 
-	 * @param filename
-	 * @throws URISyntaxException
-	 * @throws IOException
-	 */
-	private static String readFileAsString(String filename) throws URISyntaxException, IOException {
-		return new String(Files.readAllBytes(resolveFileFromResources(filename).toPath()), "UTF-8");
 	}
 
 }
@@ -0,0 +1,429 @@
+package com.stock.dto;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Daily candles of one symbol stored column-wise in primitive arrays, in ascending date order.
+ *
+ * <p>A Tiingo history of 5,000 days costs five arrays here instead of 5,000 {@link TiingoCandle}
+ * objects with four boxed prices and a {@link LocalDate} each. Missing prices are stored as
+ * {@link Double#NaN}. Instances are immutable; {@link #between} returns views sharing the arrays.
+ *
+ * <p>Code written against {@code List<Candle>} can keep working through {@link #asCandles()}.
+ */
+@JsonDeserialize(using = CandleSeries.Deserializer.class)
+public final class CandleSeries {
+
+  private static final int[] NO_DAYS = new int[0];
+  private static final double[] NO_PRICES = new double[0];
+
+  public static final CandleSeries EMPTY =
+      new CandleSeries(NO_DAYS, NO_PRICES, NO_PRICES, NO_PRICES, NO_PRICES, 0, 0);
+
+  private final int[] epochDays;
+  private final double[] open;
+  private final double[] high;
+  private final double[] low;
+  private final double[] close;
+  private final int offset;
+  private final int size;
+
+  private CandleSeries(int[] epochDays, double[] open, double[] high, double[] low,
+      double[] close, int offset, int size) {
+    this.epochDays = epochDays;
+    this.open = open;
+    this.high = high;
+    this.low = low;
+    this.close = close;
+    this.offset = offset;
+    this.size = size;
+  }
+
+  public static Builder builder() {
+    return new Builder(16);
+  }
+
+  public static Builder builder(int expectedSize) {
+    return new Builder(expectedSize);
+  }
+
+  /**
+   * Returns the series backing {@code candles} if it is a view from {@link #asCandles()},
+   * otherwise copies the candles into a new series. The candles must be in ascending date order.
+   */
+  public static CandleSeries of(List<? extends Candle> candles) {
+    if (candles instanceof CandleList) {
+      return ((CandleList) candles).series();
+    }
+    Builder builder = new Builder(candles.size());
+    for (Candle candle : candles) {
+      builder.add(candle.getDate().toEpochDay(), toPrimitive(candle.getOpen()),
+          toPrimitive(candle.getHigh()), toPrimitive(candle.getLow()),
+          toPrimitive(candle.getClose()));
+    }
+    return builder.build();
+  }
+
+  /** Concatenates series whose date ranges are ascending and do not overlap. */
+  public static CandleSeries concat(CandleSeries... parts) {
+    int total = 0;
+    CandleSeries single = EMPTY;
+    for (CandleSeries part : parts) {
+      if (part.size > 0) {
+        total += part.size;
+        single = part;
+      }
+    }
+    if (total == single.size) {
+      return single;
+    }
+    Builder builder = new Builder(total);
+    for (CandleSeries part : parts) {
+      builder.addAll(part);
+    }
+    return builder.build();
+  }
+
+  private static double toPrimitive(Double value) {
+    return value == null ? Double.NaN : value;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public int getEpochDay(int index) {
+    return epochDays[offset + checkIndex(index)];
+  }
+
+  public LocalDate getDate(int index) {
+    return LocalDate.ofEpochDay(getEpochDay(index));
+  }
+
+  public double getOpen(int index) {
+    return open[offset + checkIndex(index)];
+  }
+
+  public double getHigh(int index) {
+    return high[offset + checkIndex(index)];
+  }
+
+  public double getLow(int index) {
+    return low[offset + checkIndex(index)];
+  }
+
+  public double getClose(int index) {
+    return close[offset + checkIndex(index)];
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return index;
+  }
+
+  /** Returns the candles dated within {@code [from, to]}, sharing this series' arrays. */
+  public CandleSeries between(LocalDate from, LocalDate to) {
+    int start = lowerBound(from.toEpochDay());
+    int end = lowerBound(to.toEpochDay() + 1);
+    if (start >= end) {
+      return EMPTY;
+    }
+    if (start == 0 && end == size) {
+      return this;
+    }
+    return new CandleSeries(epochDays, open, high, low, close, offset + start, end - start);
+  }
+
+  /**
+   * Index of the first trading day on or after {@code date}, or -1 if the series ends before it.
+   * Runs in O(log n).
+   */
+  public int indexAtOrAfter(LocalDate date) {
+    int index = lowerBound(date.toEpochDay());
+    return index < size ? index : -1;
+  }
+
+  /**
+   * Index of the last trading day on or before {@code date}, or -1 if the series starts after
+   * it. Runs in O(log n).
+   */
+  public int indexAtOrBefore(LocalDate date) {
+    return lowerBound(date.toEpochDay() + 1) - 1;
+  }
+
+  /** Index of the first candle dated on or after {@code epochDay}, or {@code size()} if none. */
+  int lowerBound(long epochDay) {
+    int low = offset;
+    int high = offset + size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (epochDays[mid] < epochDay) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low - offset;
+  }
+
+  /** A {@code List<Candle>} view of this series; elements are created on access. */
+  public List<Candle> asCandles() {
+    return new CandleList(this);
+  }
+
+  @Override
+  public String toString() {
+    if (size == 0) {
+      return "CandleSeries{size=0}";
+    }
+    return "CandleSeries{"
+        + "size=" + size
+        + ", from=" + getDate(0)
+        + ", to=" + getDate(size - 1)
+        + '}';
+  }
+
+  /** Appends candles in ascending date order. */
+  public static final class Builder {
+
+    private int[] epochDays;
+    private double[] open;
+    private double[] high;
+    private double[] low;
+    private double[] close;
+    private int size;
+
+    private Builder(int expectedSize) {
+      int capacity = Math.max(expectedSize, 1);
+      epochDays = new int[capacity];
+      open = new double[capacity];
+      high = new double[capacity];
+      low = new double[capacity];
+      close = new double[capacity];
+    }
+
+    public Builder add(long epochDay, double open, double high, double low, double close) {
+      if (size == epochDays.length) {
+        grow(size * 2);
+      }
+      this.epochDays[size] = Math.toIntExact(epochDay);
+      this.open[size] = open;
+      this.high[size] = high;
+      this.low[size] = low;
+      this.close[size] = close;
+      size++;
+      return this;
+    }
+
+    public Builder addAll(CandleSeries series) {
+      if (size + series.size > epochDays.length) {
+        grow(Math.max(size * 2, size + series.size));
+      }
+      System.arraycopy(series.epochDays, series.offset, epochDays, size, series.size);
+      System.arraycopy(series.open, series.offset, open, size, series.size);
+      System.arraycopy(series.high, series.offset, high, size, series.size);
+      System.arraycopy(series.low, series.offset, low, size, series.size);
+      System.arraycopy(series.close, series.offset, close, size, series.size);
+      size += series.size;
+      return this;
+    }
+
+    private void grow(int capacity) {
+      epochDays = Arrays.copyOf(epochDays, capacity);
+      open = Arrays.copyOf(open, capacity);
+      high = Arrays.copyOf(high, capacity);
+      low = Arrays.copyOf(low, capacity);
+      close = Arrays.copyOf(close, capacity);
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public CandleSeries build() {
+      if (size == 0) {
+        return EMPTY;
+      }
+      if (size != epochDays.length) {
+        grow(size);
+      }
+      return new CandleSeries(epochDays, open, high, low, close, 0, size);
+    }
+  }
+
+  private static final class CandleList extends AbstractList<Candle> implements RandomAccess {
+
+    private final CandleSeries series;
+
+    CandleList(CandleSeries series) {
+      this.series = series;
+    }
+
+    CandleSeries series() {
+      return series;
+    }
+
+    @Override
+    public Candle get(int index) {
+      return new CandleView(series, series.checkIndex(index));
+    }
+
+    @Override
+    public int size() {
+      return series.size;
+    }
+  }
+
+  private static final class CandleView implements Candle {
+
+    private final CandleSeries series;
+    private final int index;
+
+    CandleView(CandleSeries series, int index) {
+      this.series = series;
+      this.index = index;
+    }
+
+    @Override
+    public Double getOpen() {
+      return series.getOpen(index);
+    }
+
+    @Override
+    public Double getClose() {
+      return series.getClose(index);
+    }
+
+    @Override
+    public Double getHigh() {
+      return series.getHigh(index);
+    }
+
+    @Override
+    public Double getLow() {
+      return series.getLow(index);
+    }
+
+    @Override
+    public LocalDate getDate() {
+      return series.getDate(index);
+    }
+
+    @Override
+    public String toString() {
+      return "Candle{"
+          + "open=" + getOpen()
+          + ", close=" + getClose()
+          + ", high=" + getHigh()
+          + ", low=" + getLow()
+          + ", date=" + getDate()
+          + '}';
+    }
+  }
+
+  /**
+   * Reads a Tiingo daily-prices array straight into the columns, without creating a
+   * {@link TiingoCandle} per day. Fields other than the date and OHLC prices are skipped.
+   */
+  public static final class Deserializer extends JsonDeserializer<CandleSeries> {
+
+    @Override
+    public CandleSeries deserialize(JsonParser parser, DeserializationContext context)
+        throws IOException {
+      if (parser.currentToken() != JsonToken.START_ARRAY) {
+        return (CandleSeries) context.handleUnexpectedToken(CandleSeries.class, parser);
+      }
+      return readTiingoArray(parser);
+    }
+
+    /**
+     * Reads the candles of a Tiingo array whose {@code START_ARRAY} token is the current token,
+     * leaving the parser on the matching {@code END_ARRAY}.
+     */
+    public static CandleSeries readTiingoArray(JsonParser parser) throws IOException {
+      Builder builder = new Builder(256);
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+        long epochDay = Long.MIN_VALUE;
+        double open = Double.NaN;
+        double high = Double.NaN;
+        double low = Double.NaN;
+        double close = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          JsonToken value = parser.nextToken();
+          if (value == JsonToken.VALUE_NULL) {
+            continue;
+          }
+          switch (field) {
+            case "date":
+              epochDay = parseEpochDay(parser.getText());
+              break;
+            case "open":
+              open = parser.getDoubleValue();
+              break;
+            case "high":
+              high = parser.getDoubleValue();
+              break;
+            case "low":
+              low = parser.getDoubleValue();
+              break;
+            case "close":
+              close = parser.getDoubleValue();
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+        if (epochDay == Long.MIN_VALUE) {
+          throw new JsonParseException(parser, "Tiingo candle without a date");
+        }
+        builder.add(epochDay, open, high, low, close);
+      }
+      if (token != JsonToken.END_ARRAY) {
+        throw new JsonParseException(parser, "Expected a Tiingo candle object, got " + token);
+      }
+      return builder.build();
+    }
+
+    /** Parses the {@code yyyy-MM-dd} prefix of Tiingo's UTC midnight timestamps. */
+    public static long parseEpochDay(String text) {
+      if (text.length() < 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+        return LocalDate.parse(text).toEpochDay();
+      }
+      int year = digits(text, 0, 4);
+      int month = digits(text, 5, 7);
+      int day = digits(text, 8, 10);
+      return LocalDate.of(year, month, day).toEpochDay();
+    }
+
+    private static int digits(String text, int from, int to) {
+      int value = 0;
+      for (int i = from; i < to; i++) {
+        char c = text.charAt(i);
+        if (c < '0' || c > '9') {
+          throw new NumberFormatException("Not a date: " + text);
+        }
+        value = value * 10 + (c - '0');
+      }
+      return value;
+    }
+  }
+}
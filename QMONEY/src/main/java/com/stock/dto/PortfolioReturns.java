@@ -0,0 +1,73 @@
+package com.stock.dto;
+
+import java.util.List;
+
+/**
+ * Per-lot annualized returns of a portfolio's holdings together with its totals. Capital and
+ * values are weighted by quantity, with a {@link TradeType#SELL} lot counting with a negative
+ * quantity; sells are left out of the per-lot returns and of the annualized return.
+ */
+public class PortfolioReturns {
+
+  private final List<AnnualizedReturn> annualizedReturns;
+  private final int lots;
+  private final double investedCapital;
+  private final double currentValue;
+  private final double annualizedReturn;
+
+  public PortfolioReturns(List<AnnualizedReturn> annualizedReturns, int lots,
+      double investedCapital, double currentValue, double annualizedReturn) {
+    this.annualizedReturns = annualizedReturns;
+    this.lots = lots;
+    this.investedCapital = investedCapital;
+    this.currentValue = currentValue;
+    this.annualizedReturn = annualizedReturn;
+  }
+
+  /** Annualized returns of the bought lots, best first. */
+  public List<AnnualizedReturn> getAnnualizedReturns() {
+    return annualizedReturns;
+  }
+
+  /** Lots, sells included, that could be priced and are included in the totals. */
+  public int getLots() {
+    return lots;
+  }
+
+  /** Sum of quantity times purchase price. */
+  public double getInvestedCapital() {
+    return investedCapital;
+  }
+
+  /** Sum of quantity times closing price at the end date. */
+  public double getCurrentValue() {
+    return currentValue;
+  }
+
+  public double getProfitAndLoss() {
+    return currentValue - investedCapital;
+  }
+
+  /** {@link #getProfitAndLoss()} relative to the invested capital. */
+  public double getTotalReturns() {
+    return (currentValue - investedCapital) / investedCapital;
+  }
+
+  /**
+   * Average of the bought lots' annualized returns weighted by their purchase cost, or NaN if
+   * nothing was bought. Sells are not weighted in, so that the rate stays bounded by the lots'
+   * own returns however close the net invested capital is to zero.
+   */
+  public double getAnnualizedReturn() {
+    return annualizedReturn;
+  }
+
+  @Override
+  public String toString() {
+    return "PortfolioReturns{lots=" + lots
+        + ", investedCapital=" + investedCapital
+        + ", currentValue=" + currentValue
+        + ", annualizedReturn=" + annualizedReturn
+        + '}';
+  }
+}
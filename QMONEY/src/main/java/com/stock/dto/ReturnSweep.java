@@ -0,0 +1,101 @@
+package com.stock.dto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Annualized and total returns of every lot of a portfolio at every trading day of a range of end
+ * dates, stored column-wise: one row of primitive doubles per lot, one column per end date.
+ *
+ * <p>A year of daily end dates for a portfolio of N lots costs two arrays of 250 * N doubles
+ * instead of 250 * N {@link AnnualizedReturn} objects with two boxed values each. A lot has
+ * {@link Double#NaN} returns at end dates before its purchase or when its quotes could not be
+ * fetched. Use {@link #toAnnualizedReturns} to materialize a single end date.
+ */
+public final class ReturnSweep {
+
+  private final String[] symbols;
+  private final int[] epochDays;
+  private final double[] annualizedReturns;
+  private final double[] totalReturns;
+
+  /**
+   * Takes ownership of the arrays; the return arrays hold {@code symbols.length} rows of
+   * {@code epochDays.length} values.
+   */
+  public ReturnSweep(String[] symbols, int[] epochDays, double[] annualizedReturns,
+      double[] totalReturns) {
+    int cells = symbols.length * epochDays.length;
+    if (annualizedReturns.length != cells || totalReturns.length != cells) {
+      throw new IllegalArgumentException("Expected " + symbols.length + " x " + epochDays.length
+          + " returns, got " + annualizedReturns.length + " and " + totalReturns.length);
+    }
+    this.symbols = symbols;
+    this.epochDays = epochDays;
+    this.annualizedReturns = annualizedReturns;
+    this.totalReturns = totalReturns;
+  }
+
+  /** Number of lots, in the order of the portfolio they were computed from. */
+  public int getLotCount() {
+    return symbols.length;
+  }
+
+  /** Number of end dates. */
+  public int getDayCount() {
+    return epochDays.length;
+  }
+
+  public String getSymbol(int lot) {
+    return symbols[lot];
+  }
+
+  public int getEpochDay(int day) {
+    return epochDays[day];
+  }
+
+  public LocalDate getDate(int day) {
+    return LocalDate.ofEpochDay(epochDays[day]);
+  }
+
+  public double getAnnualizedReturn(int lot, int day) {
+    return annualizedReturns[cell(lot, day)];
+  }
+
+  public double getTotalReturn(int lot, int day) {
+    return totalReturns[cell(lot, day)];
+  }
+
+  /**
+   * The returns at one end date, in lot order, leaving out lots without a return; sort with the
+   * portfolio manager's comparator to get what {@code calculateAnnualizedReturn} would return.
+   */
+  public List<AnnualizedReturn> toAnnualizedReturns(int day) {
+    List<AnnualizedReturn> list = new ArrayList<>(symbols.length);
+    for (int lot = 0; lot < symbols.length; lot++) {
+      int cell = cell(lot, day);
+      if (!Double.isNaN(totalReturns[cell])) {
+        list.add(new AnnualizedReturn(symbols[lot], annualizedReturns[cell], totalReturns[cell]));
+      }
+    }
+    return list;
+  }
+
+  private int cell(int lot, int day) {
+    if (lot < 0 || lot >= symbols.length || day < 0 || day >= epochDays.length) {
+      throw new IndexOutOfBoundsException("Lot " + lot + ", day " + day + " of " + symbols.length
+          + " x " + epochDays.length);
+    }
+    return lot * epochDays.length + day;
+  }
+
+  @Override
+  public String toString() {
+    return "ReturnSweep{lots=" + symbols.length
+        + ", days=" + epochDays.length
+        + (epochDays.length == 0 ? "" : ", from=" + getDate(0) + ", to="
+            + getDate(epochDays.length - 1))
+        + '}';
+  }
+}
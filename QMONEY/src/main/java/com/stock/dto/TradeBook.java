@@ -0,0 +1,321 @@
+package com.stock.dto;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Trades stored column-wise in primitive arrays, for books of millions of lots.
+ *
+ * <p>A {@link PortfolioTrade} is an object per lot with its own symbol string and
+ * {@link LocalDate}. Here every distinct symbol is kept once in a dictionary that lots refer to by
+ * id, and quantities, purchase dates as epoch days and trade types are {@code int[]},
+ * {@code int[]} and {@code byte[]} columns. Lots are also indexed by symbol when the book is
+ * built, so grouping them takes no hashing. Instances are immutable.
+ *
+ * <p>Code written against {@code List<PortfolioTrade>} can keep working through
+ * {@link #asTrades()}.
+ */
+@JsonDeserialize(using = TradeBook.Deserializer.class)
+public final class TradeBook {
+
+  private static final TradeType[] TRADE_TYPES = TradeType.values();
+
+  private final String[] symbols;
+  private final int[] symbolIds;
+  private final int[] quantities;
+  private final int[] epochDays;
+  private final byte[] tradeTypes;
+  private final int size;
+  // The lots of symbol id s are lotsBySymbol[symbolStarts[s]] up to symbolStarts[s + 1], in book
+  // order.
+  private final int[] symbolStarts;
+  private final int[] lotsBySymbol;
+
+  private TradeBook(String[] symbols, int[] symbolIds, int[] quantities, int[] epochDays,
+      byte[] tradeTypes, int size) {
+    this.symbols = symbols;
+    this.symbolIds = symbolIds;
+    this.quantities = quantities;
+    this.epochDays = epochDays;
+    this.tradeTypes = tradeTypes;
+    this.size = size;
+    this.symbolStarts = new int[symbols.length + 1];
+    for (int i = 0; i < size; i++) {
+      symbolStarts[symbolIds[i] + 1]++;
+    }
+    for (int s = 0; s < symbols.length; s++) {
+      symbolStarts[s + 1] += symbolStarts[s];
+    }
+    this.lotsBySymbol = new int[size];
+    int[] next = Arrays.copyOf(symbolStarts, symbols.length);
+    for (int i = 0; i < size; i++) {
+      lotsBySymbol[next[symbolIds[i]]++] = i;
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder(16);
+  }
+
+  public static Builder builder(int expectedSize) {
+    return new Builder(expectedSize);
+  }
+
+  public static TradeBook of(List<PortfolioTrade> trades) {
+    Builder builder = new Builder(trades.size());
+    for (PortfolioTrade trade : trades) {
+      builder.add(trade);
+    }
+    return builder.build();
+  }
+
+  /** Number of lots. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Number of distinct symbols; ids run from 0 in order of first occurrence. */
+  public int getSymbolCount() {
+    return symbols.length;
+  }
+
+  public String getSymbolById(int symbolId) {
+    return symbols[symbolId];
+  }
+
+  public int getSymbolId(int index) {
+    return symbolIds[checkIndex(index)];
+  }
+
+  public String getSymbol(int index) {
+    return symbols[getSymbolId(index)];
+  }
+
+  public int getQuantity(int index) {
+    return quantities[checkIndex(index)];
+  }
+
+  public int getEpochDay(int index) {
+    return epochDays[checkIndex(index)];
+  }
+
+  public LocalDate getPurchaseDate(int index) {
+    return LocalDate.ofEpochDay(getEpochDay(index));
+  }
+
+  public TradeType getTradeType(int index) {
+    return TRADE_TYPES[tradeTypes[checkIndex(index)]];
+  }
+
+  /** Number of lots of the symbol with id {@code symbolId}. */
+  public int getLotCount(int symbolId) {
+    return symbolStarts[symbolId + 1] - symbolStarts[symbolId];
+  }
+
+  /** Index in the book of the {@code k}-th lot of the symbol with id {@code symbolId}. */
+  public int getLot(int symbolId, int k) {
+    if (k < 0 || k >= getLotCount(symbolId)) {
+      throw new IndexOutOfBoundsException("Lot: " + k + ", Lots: " + getLotCount(symbolId));
+    }
+    return lotsBySymbol[symbolStarts[symbolId] + k];
+  }
+
+  private int checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return index;
+  }
+
+  /** A {@code List<PortfolioTrade>} view of this book; elements are created on access. */
+  public List<PortfolioTrade> asTrades() {
+    return new TradeList(this);
+  }
+
+  @Override
+  public String toString() {
+    return "TradeBook{"
+        + "size=" + size
+        + ", symbols=" + symbols.length
+        + '}';
+  }
+
+  /** Appends lots, giving each new symbol the next id. */
+  public static final class Builder {
+
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private String[] symbols = new String[16];
+    private int[] symbolIds;
+    private int[] quantities;
+    private int[] epochDays;
+    private byte[] tradeTypes;
+    private int size;
+
+    private Builder(int expectedSize) {
+      int capacity = Math.max(expectedSize, 1);
+      symbolIds = new int[capacity];
+      quantities = new int[capacity];
+      epochDays = new int[capacity];
+      tradeTypes = new byte[capacity];
+    }
+
+    /** Appends a lot; a null trade type is a buy, as for {@link PortfolioTrade}. */
+    public Builder add(String symbol, int quantity, long epochDay, TradeType tradeType) {
+      Objects.requireNonNull(symbol, "symbol");
+      if (size == symbolIds.length) {
+        grow(size * 2);
+      }
+      Integer id = dictionary.get(symbol);
+      if (id == null) {
+        id = dictionary.size();
+        if (id == symbols.length) {
+          symbols = Arrays.copyOf(symbols, id * 2);
+        }
+        symbols[id] = symbol;
+        dictionary.put(symbol, id);
+      }
+      this.symbolIds[size] = id;
+      this.quantities[size] = quantity;
+      this.epochDays[size] = Math.toIntExact(epochDay);
+      this.tradeTypes[size] = (byte) (tradeType == null ? TradeType.BUY : tradeType).ordinal();
+      size++;
+      return this;
+    }
+
+    public Builder add(String symbol, int quantity, LocalDate purchaseDate, TradeType tradeType) {
+      return add(symbol, quantity, purchaseDate.toEpochDay(), tradeType);
+    }
+
+    public Builder add(PortfolioTrade trade) {
+      return add(trade.getSymbol(), trade.getQuantity(), trade.getPurchaseDate(),
+          trade.getTradeType());
+    }
+
+    private void grow(int capacity) {
+      symbolIds = Arrays.copyOf(symbolIds, capacity);
+      quantities = Arrays.copyOf(quantities, capacity);
+      epochDays = Arrays.copyOf(epochDays, capacity);
+      tradeTypes = Arrays.copyOf(tradeTypes, capacity);
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public TradeBook build() {
+      if (size != symbolIds.length) {
+        grow(size);
+      }
+      return new TradeBook(Arrays.copyOf(symbols, dictionary.size()), symbolIds, quantities,
+          epochDays, tradeTypes, size);
+    }
+  }
+
+  private static final class TradeList extends AbstractList<PortfolioTrade>
+      implements RandomAccess {
+
+    private final TradeBook book;
+
+    TradeList(TradeBook book) {
+      this.book = book;
+    }
+
+    @Override
+    public PortfolioTrade get(int index) {
+      PortfolioTrade trade = new PortfolioTrade(book.getSymbol(index), book.getQuantity(index),
+          book.getPurchaseDate(index));
+      trade.setTradeType(book.getTradeType(index));
+      return trade;
+    }
+
+    @Override
+    public int size() {
+      return book.size;
+    }
+  }
+
+  /**
+   * Reads a JSON array of trades, as {@link PortfolioTrade} is bound from, straight into the
+   * columns without an object per lot.
+   */
+  public static final class Deserializer extends JsonDeserializer<TradeBook> {
+
+    @Override
+    public TradeBook deserialize(JsonParser parser, DeserializationContext context)
+        throws IOException {
+      if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+        throw new JsonParseException(parser,
+            "Expected an array of trades, got " + parser.getCurrentToken());
+      }
+      Builder builder = builder();
+      for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY;
+          token = parser.nextToken()) {
+        if (token != JsonToken.START_OBJECT) {
+          throw new JsonParseException(parser, "Expected a trade object, got " + token);
+        }
+        readTrade(parser, builder);
+      }
+      return builder.build();
+    }
+
+    /**
+     * Reads the trade object at the parser's current {@code START_OBJECT} into {@code builder},
+     * leaving the parser on its {@code END_OBJECT}. Like binding a {@link PortfolioTrade}, an
+     * unknown field is an error.
+     */
+    public static void readTrade(JsonParser parser, Builder builder) throws IOException {
+      String symbol = null;
+      int quantity = 0;
+      long epochDay = 0;
+      boolean dated = false;
+      TradeType tradeType = TradeType.BUY;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        boolean isNull = parser.nextToken() == JsonToken.VALUE_NULL;
+        try {
+          switch (field) {
+            case "symbol":
+              symbol = isNull ? null : parser.getText();
+              break;
+            case "quantity":
+              quantity = isNull ? 0 : parser.getIntValue();
+              break;
+            case "purchaseDate":
+              dated = !isNull;
+              epochDay = isNull ? 0 : CandleSeries.Deserializer.parseEpochDay(parser.getText());
+              break;
+            case "tradeType":
+              tradeType = isNull ? null : TradeType.valueOf(parser.getText());
+              break;
+            default:
+              throw new JsonParseException(parser, "Unrecognized trade field \"" + field + "\"");
+          }
+        } catch (DateTimeException | IllegalArgumentException e) {
+          throw new JsonParseException(parser, "Invalid " + field + ": " + parser.getText(), e);
+        }
+      }
+      if (symbol == null || !dated) {
+        throw new JsonParseException(parser, "Trade without a symbol or a purchase date");
+      }
+      builder.add(symbol, quantity, epochDay, tradeType);
+    }
+  }
+}
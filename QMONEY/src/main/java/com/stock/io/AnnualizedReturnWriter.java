@@ -0,0 +1,116 @@
+package com.stock.io;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.stock.dto.AnnualizedReturn;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * Writes annualized returns one at a time, as they are computed, instead of serializing a whole
+ * list at the end. Every return goes through the same {@link JsonGenerator} and is flushed as soon
+ * as it is written, so a reader of the output sees it at once and nothing is buffered per result.
+ *
+ * <p>Objects have the same fields as the default serialization of {@link AnnualizedReturn}. The
+ * target stream is flushed but not closed.
+ */
+public class AnnualizedReturnWriter implements Consumer<AnnualizedReturn>, Closeable {
+
+  private static final JsonFactory JSON = new JsonFactory()
+      .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+  public enum Format {
+    /** One object per line. */
+    NDJSON,
+    /** A single JSON array, opened before the first object and closed by {@link #close}. */
+    JSON_ARRAY;
+
+    /** Parses {@code ndjson} or {@code array}. */
+    public static Format parse(String name) {
+      switch (name.toLowerCase(Locale.ROOT)) {
+        case "ndjson":
+          return NDJSON;
+        case "array":
+        case "json":
+          return JSON_ARRAY;
+        default:
+          throw new IllegalArgumentException("Unknown output format " + name
+              + ", expected ndjson or array");
+      }
+    }
+  }
+
+  private final JsonGenerator generator;
+  private final Format format;
+  private long written;
+  private boolean closed;
+
+  public AnnualizedReturnWriter(OutputStream out, Format format) throws IOException {
+    this.generator = JSON.createGenerator(out, JsonEncoding.UTF8);
+    this.format = format;
+    if (format == Format.NDJSON) {
+      generator.setRootValueSeparator(new SerializedString("\n"));
+    } else {
+      generator.writeStartArray();
+      generator.flush();
+    }
+  }
+
+  /**
+   * Writes and flushes {@code annualizedReturn}. Calls must not overlap; callers writing from
+   * several threads have to serialize them.
+   */
+  public void write(AnnualizedReturn annualizedReturn) throws IOException {
+    generator.writeStartObject();
+    generator.writeStringField("symbol", annualizedReturn.getSymbol());
+    writeNumberField("annualizedReturn", annualizedReturn.getAnnualizedReturn());
+    writeNumberField("totalReturns", annualizedReturn.getTotalReturns());
+    generator.writeEndObject();
+    generator.flush();
+    written++;
+  }
+
+  private void writeNumberField(String name, Double value) throws IOException {
+    generator.writeFieldName(name);
+    if (value == null) {
+      generator.writeNull();
+    } else {
+      generator.writeNumber(value);
+    }
+  }
+
+  /** {@link #write} with I/O errors rethrown unchecked, for use as a result callback. */
+  @Override
+  public void accept(AnnualizedReturn annualizedReturn) {
+    try {
+      write(annualizedReturn);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public long getWrittenCount() {
+    return written;
+  }
+
+  /** Ends the array in {@link Format#JSON_ARRAY}, or the last line in {@link Format#NDJSON}. */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (format == Format.JSON_ARRAY) {
+      generator.writeEndArray();
+    } else if (written > 0) {
+      generator.writeRaw('\n');
+    }
+    generator.close();
+  }
+}
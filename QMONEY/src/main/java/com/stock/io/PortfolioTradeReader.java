@@ -0,0 +1,139 @@
+package com.stock.io;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.TradeBook;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a JSON array of trades one element at a time, so that heap use does not depend on the
+ * size of the file. Only the trade being returned is materialized.
+ *
+ * <p>{@link #readTradeBook()} instead reads the trades straight into the columns of a
+ * {@link TradeBook}, for books too large to hold as one object per lot.
+ *
+ * <p>Locations are resolved against the filesystem first and the classpath second. The reader
+ * must be closed; {@link #stream()} closes it when the stream is closed.
+ */
+public class PortfolioTradeReader implements Iterator<PortfolioTrade>, Closeable {
+
+  private static final ObjectReader TRADE_READER = new ObjectMapper()
+      .registerModule(new JavaTimeModule())
+      .readerFor(PortfolioTrade.class);
+
+  private final JsonParser parser;
+  private JsonToken next;
+
+  public PortfolioTradeReader(InputStream in) throws IOException {
+    this.parser = TRADE_READER.getFactory().createParser(in);
+    JsonToken first = parser.nextToken();
+    if (first != JsonToken.START_ARRAY) {
+      parser.close();
+      throw new JsonParseException(parser, "Expected an array of trades, got " + first);
+    }
+  }
+
+  /** Opens a file path, or a classpath resource if no such file exists. */
+  public static PortfolioTradeReader open(String location) throws IOException {
+    Path path = Paths.get(location);
+    if (Files.isRegularFile(path)) {
+      return open(path);
+    }
+    InputStream resource = Thread.currentThread().getContextClassLoader()
+        .getResourceAsStream(location);
+    if (resource == null) {
+      throw new FileNotFoundException(location + " is neither a file nor a classpath resource");
+    }
+    return new PortfolioTradeReader(resource);
+  }
+
+  public static PortfolioTradeReader open(Path path) throws IOException {
+    return new PortfolioTradeReader(Files.newInputStream(path));
+  }
+
+  /** Lazily streams the trades at {@code location}; close the stream to release the file. */
+  public static Stream<PortfolioTrade> stream(String location) throws IOException {
+    return open(location).stream();
+  }
+
+  /** Reads the whole book at {@code location} and closes the file. */
+  public static TradeBook readTradeBook(String location) throws IOException {
+    try (PortfolioTradeReader reader = open(location)) {
+      return reader.readTradeBook();
+    }
+  }
+
+  /** Reads the remaining trades into a {@link TradeBook}, without a {@link PortfolioTrade} each. */
+  public TradeBook readTradeBook() throws IOException {
+    TradeBook.Builder builder = TradeBook.builder();
+    while (hasNext()) {
+      next = null;
+      TradeBook.Deserializer.readTrade(parser, builder);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      try {
+        next = parser.nextToken();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (next != JsonToken.START_OBJECT && next != JsonToken.END_ARRAY) {
+        throw new UncheckedIOException(new JsonParseException(parser,
+            "Expected a trade object, got " + next));
+      }
+    }
+    return next == JsonToken.START_OBJECT;
+  }
+
+  @Override
+  public PortfolioTrade next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    next = null;
+    try {
+      return TRADE_READER.readValue(parser);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public Stream<PortfolioTrade> stream() {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+        Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(() -> {
+          try {
+            close();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  @Override
+  public void close() throws IOException {
+    parser.close();
+  }
+}
@@ -0,0 +1,29 @@
+package com.stock.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free count that can go up and down, e.g. requests in flight. Backed by a
+ * {@link LongAdder}, so concurrent updates do not contend on one cache line.
+ */
+public class Counter implements CounterMXBean {
+
+  private final LongAdder count = new LongAdder();
+
+  public void increment() {
+    count.increment();
+  }
+
+  public void decrement() {
+    count.decrement();
+  }
+
+  public void add(long delta) {
+    count.add(delta);
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+}
@@ -0,0 +1,7 @@
+package com.stock.metrics;
+
+/** JMX view of a {@link Counter}. */
+public interface CounterMXBean {
+
+  long getCount();
+}
@@ -0,0 +1,41 @@
+package com.stock.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Adds every byte read from the wrapped stream to a {@link Counter}. */
+public class CountingInputStream extends FilterInputStream {
+
+  private final Counter bytes;
+
+  public CountingInputStream(InputStream in, Counter bytes) {
+    super(in);
+    this.bytes = bytes;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0) {
+      bytes.increment();
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int read = super.read(buffer, offset, length);
+    if (read > 0) {
+      bytes.add(read);
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(n);
+    bytes.add(skipped);
+    return skipped;
+  }
+}
@@ -0,0 +1,111 @@
+package com.stock.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds.
+ *
+ * <p>Values fall into log-linear buckets: each power of two is split into eight sub-buckets, so a
+ * reported percentile is at most 12.5% above the true value while the whole range from 1 ns to
+ * centuries fits in a few hundred counters. Recording is a handful of atomic increments and never
+ * allocates; reads are not atomic across buckets, which is fine for monitoring.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    buckets.incrementAndGet(bucketOf(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /** Records the time elapsed since {@code startNanos}, a {@link System#nanoTime()} reading. */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Largest value that falls into {@code bucket}. */
+  static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = SUB_BUCKETS + bucket % SUB_BUCKETS;
+    int shift = exponent - SUB_BUCKET_BITS;
+    return (subBucket << shift) + (1L << shift) - 1;
+  }
+
+  /** Value below which {@code quantile} (0 to 1) of the recorded values fall, in nanoseconds. */
+  public long valueAtQuantile(double quantile) {
+    long total = count.sum();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return Math.min(upperBoundOf(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+  @Override
+  public double getMeanMillis() {
+    long total = count.sum();
+    return total == 0 ? 0 : toMillis(sum.sum()) / total;
+  }
+
+  @Override
+  public double getMaxMillis() {
+    return toMillis(max.get());
+  }
+
+  @Override
+  public double getMedianMillis() {
+    return toMillis(valueAtQuantile(0.5));
+  }
+
+  @Override
+  public double get95thPercentileMillis() {
+    return toMillis(valueAtQuantile(0.95));
+  }
+
+  @Override
+  public double get99thPercentileMillis() {
+    return toMillis(valueAtQuantile(0.99));
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
@@ -0,0 +1,17 @@
+package com.stock.metrics;
+
+/** JMX view of a {@link LatencyHistogram}. */
+public interface LatencyHistogramMXBean {
+
+  long getCount();
+
+  double getMeanMillis();
+
+  double getMaxMillis();
+
+  double getMedianMillis();
+
+  double get95thPercentileMillis();
+
+  double get99thPercentileMillis();
+}
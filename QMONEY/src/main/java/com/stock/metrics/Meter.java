@@ -0,0 +1,71 @@
+package com.stock.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events and reports their rate, both since creation and over the last minute. The recent
+ * rate comes from a ring of per-second slots that are reset lazily when reused; an event racing
+ * with that reset may be dropped from the recent rate, never from the total.
+ */
+public class Meter implements MeterMXBean {
+
+  private static final int SLOTS = 61;
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final LongAdder count = new LongAdder();
+  private final AtomicLongArray slotCounts = new AtomicLongArray(SLOTS);
+  private final AtomicLongArray slotSeconds = new AtomicLongArray(SLOTS);
+  private final long startNanos = System.nanoTime();
+
+  public Meter() {
+    for (int i = 0; i < SLOTS; i++) {
+      slotSeconds.set(i, -1);
+    }
+  }
+
+  public void mark() {
+    mark(1);
+  }
+
+  public void mark(long events) {
+    count.add(events);
+    long second = (System.nanoTime() - startNanos) / SECOND;
+    int slot = (int) (second % SLOTS);
+    long slotSecond = slotSeconds.get(slot);
+    if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second)) {
+      slotCounts.set(slot, 0);
+    }
+    slotCounts.addAndGet(slot, events);
+  }
+
+  @Override
+  public long getCount() {
+    return count.sum();
+  }
+
+  @Override
+  public double getMeanRatePerSecond() {
+    long elapsed = System.nanoTime() - startNanos;
+    return elapsed <= 0 ? 0 : count.sum() * (double) SECOND / elapsed;
+  }
+
+  /** Events per second over the last complete seconds, up to one minute. */
+  @Override
+  public double getRecentRatePerSecond() {
+    long current = (System.nanoTime() - startNanos) / SECOND;
+    long window = Math.min(SLOTS - 1, current);
+    if (window == 0) {
+      return 0;
+    }
+    long events = 0;
+    for (int i = 0; i < SLOTS; i++) {
+      long second = slotSeconds.get(i);
+      if (second < current && second >= current - window) {
+        events += slotCounts.get(i);
+      }
+    }
+    return events / (double) window;
+  }
+}
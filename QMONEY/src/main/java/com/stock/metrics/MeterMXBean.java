@@ -0,0 +1,11 @@
+package com.stock.metrics;
+
+/** JMX view of a {@link Meter}. */
+public interface MeterMXBean {
+
+  long getCount();
+
+  double getMeanRatePerSecond();
+
+  double getRecentRatePerSecond();
+}
@@ -0,0 +1,121 @@
+package com.stock.metrics;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Named counters, meters and latency histograms. Metrics are created on first use and live as
+ * long as the registry; callers on hot paths should look a metric up once and keep it.
+ *
+ * <p>When JMX publishing is on, each metric is registered with the platform MBean server as
+ * {@code com.stock:type=<Counter|Meter|Histogram>,name=<name>} as soon as it is created.
+ */
+public class MetricsRegistry {
+
+  private static final Logger log = LogManager.getLogger(MetricsRegistry.class);
+
+  public static final String JMX_DOMAIN = "com.stock";
+
+  private static final MetricsRegistry GLOBAL = new MetricsRegistry(true);
+
+  private final boolean publishToJmx;
+  private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Meter> meters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+  public MetricsRegistry(boolean publishToJmx) {
+    this.publishToJmx = publishToJmx;
+  }
+
+  /** The registry the application records into, published over JMX. */
+  public static MetricsRegistry global() {
+    return GLOBAL;
+  }
+
+  public Counter counter(String name) {
+    return getOrCreate(counters, name, "Counter", Counter::new);
+  }
+
+  public Meter meter(String name) {
+    return getOrCreate(meters, name, "Meter", Meter::new);
+  }
+
+  public LatencyHistogram histogram(String name) {
+    return getOrCreate(histograms, name, "Histogram", LatencyHistogram::new);
+  }
+
+  private <T> T getOrCreate(ConcurrentMap<String, T> metrics, String name, String type,
+      Supplier<T> factory) {
+    T metric = metrics.get(name);
+    if (metric != null) {
+      return metric;
+    }
+    T created = factory.get();
+    metric = metrics.putIfAbsent(name, created);
+    if (metric != null) {
+      return metric;
+    }
+    if (publishToJmx) {
+      register(type, name, created);
+    }
+    return created;
+  }
+
+  private static void register(String type, String name, Object metric) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = objectName(type, name);
+      if (!server.isRegistered(objectName)) {
+        server.registerMBean(metric, objectName);
+      }
+    } catch (JMException e) {
+      log.warn("Could not publish metric " + name + " over JMX: " + e);
+    }
+  }
+
+  static ObjectName objectName(String type, String name) throws JMException {
+    String value = name.matches("[\\w.\\-]+") ? name : ObjectName.quote(name);
+    return new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + value);
+  }
+
+  /**
+   * Current values of all metrics as one JSON object keyed by metric name, in name order.
+   * Durations are in milliseconds.
+   */
+  public ObjectNode toJson() {
+    JsonNodeFactory factory = JsonNodeFactory.instance;
+    ObjectNode json = factory.objectNode();
+    for (Map.Entry<String, Counter> counter : new TreeMap<>(counters).entrySet()) {
+      json.put(counter.getKey(), counter.getValue().getCount());
+    }
+    for (Map.Entry<String, Meter> entry : new TreeMap<>(meters).entrySet()) {
+      Meter meter = entry.getValue();
+      json.putObject(entry.getKey())
+          .put("count", meter.getCount())
+          .put("meanRate", meter.getMeanRatePerSecond())
+          .put("recentRate", meter.getRecentRatePerSecond());
+    }
+    for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(histograms).entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      json.putObject(entry.getKey())
+          .put("count", histogram.getCount())
+          .put("meanMs", histogram.getMeanMillis())
+          .put("p50Ms", histogram.getMedianMillis())
+          .put("p95Ms", histogram.get95thPercentileMillis())
+          .put("p99Ms", histogram.get99thPercentileMillis())
+          .put("maxMs", histogram.getMaxMillis());
+    }
+    return json;
+  }
+}
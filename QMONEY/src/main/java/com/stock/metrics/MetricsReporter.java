@@ -0,0 +1,57 @@
+package com.stock.metrics;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Periodically logs a {@link MetricsRegistry} as one JSON object at INFO. The log4j2
+ * configuration routes this logger to the JSON file appender only, so each dump becomes one line
+ * of the run log next to the {@code runId}. A last dump is written on {@link #close()}.
+ */
+public class MetricsReporter implements Closeable {
+
+  private static final Logger log = LogManager.getLogger(MetricsReporter.class);
+
+  /** System property with the dump interval in seconds; unset or 0 disables the reporter. */
+  public static final String INTERVAL_PROPERTY = "qmoney.metrics.dumpIntervalSeconds";
+
+  private final MetricsRegistry registry;
+  private final ScheduledExecutorService timer;
+
+  public MetricsReporter(MetricsRegistry registry, long intervalSeconds) {
+    if (intervalSeconds < 1) {
+      throw new IllegalArgumentException("intervalSeconds must be at least 1, was "
+          + intervalSeconds);
+    }
+    this.registry = registry;
+    this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "metrics-reporter");
+      thread.setDaemon(true);
+      return thread;
+    });
+    timer.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Starts a reporter for the global registry if {@value #INTERVAL_PROPERTY} is set to a positive
+   * number of seconds, and returns null otherwise.
+   */
+  public static MetricsReporter fromSystemProperties() {
+    long interval = Long.getLong(INTERVAL_PROPERTY, 0L);
+    return interval > 0 ? new MetricsReporter(MetricsRegistry.global(), interval) : null;
+  }
+
+  public void report() {
+    log.info(registry.toJson().toString());
+  }
+
+  @Override
+  public void close() {
+    timer.shutdownNow();
+    report();
+  }
+}
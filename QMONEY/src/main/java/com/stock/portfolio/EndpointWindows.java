@@ -0,0 +1,227 @@
+package com.stock.portfolio;
+
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.TradeBook;
+import com.stock.metrics.Counter;
+import com.stock.metrics.MetricsRegistry;
+import com.stock.quotes.QuoteTransport;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The candles needed to price every lot of one symbol, fetched as short windows rather than as
+ * the whole history between purchase and end date: a window from each purchase date for the
+ * opening price and one up to the end date for the closing price. The payload so stays the same
+ * whether a lot was bought last month or in 2010.
+ *
+ * <p>A window without a trading day, e.g. over a holiday run, a halt or a purchase before the
+ * listing, is widened by fetching the days next to it, twice as many each time, but never past
+ * what the whole-history fetch would have covered; prices found are therefore the same. Windows
+ * less than {@value #WINDOW_DAYS} days apart are merged, so a short holding is still one request,
+ * and a symbol that would need more than {@code maxWindows} windows is fetched whole, since every
+ * window costs a request of the quota.
+ */
+final class EndpointWindows {
+
+  /** System property overriding {@link #DEFAULT_MAX_WINDOWS}; less than 2 turns windows off. */
+  static final String MAX_WINDOWS_PROPERTY = "qmoney.pricing.maxWindows";
+  static final int DEFAULT_MAX_WINDOWS = 4;
+  /** Days in a window; any week but a rare holiday run has a trading day. */
+  static final int WINDOW_DAYS = 7;
+
+  private static final Counter WIDENED =
+      MetricsRegistry.global().counter("portfolio.endpointWindows.widened");
+
+  private final LocalDate firstPurchase;
+  private final LocalDate endDate;
+  private final List<Window> windows;
+
+  private static final class Window {
+    final LocalDate from;
+    final LocalDate to;
+    /** Latest purchase priced from this window, or null if it is only for the closing price. */
+    final LocalDate lastPurchase;
+
+    Window(LocalDate from, LocalDate to, LocalDate lastPurchase) {
+      this.from = from;
+      this.to = to;
+      this.lastPurchase = lastPurchase;
+    }
+  }
+
+  private EndpointWindows(LocalDate firstPurchase, LocalDate endDate, List<Window> windows) {
+    this.firstPurchase = firstPurchase;
+    this.endDate = endDate;
+    this.windows = windows;
+  }
+
+  /** The windows of every symbol in {@code trades}, in order of first occurrence. */
+  static Map<String, EndpointWindows> plan(List<PortfolioTrade> trades, LocalDate endDate,
+      int maxWindows) {
+    Map<String, SortedSet<LocalDate>> purchases = new LinkedHashMap<>();
+    for (PortfolioTrade trade : trades) {
+      purchases.computeIfAbsent(trade.getSymbol(), symbol -> new TreeSet<>())
+          .add(trade.getPurchaseDate());
+    }
+    Map<String, EndpointWindows> plan = new LinkedHashMap<>();
+    for (Map.Entry<String, SortedSet<LocalDate>> symbol : purchases.entrySet()) {
+      plan.put(symbol.getKey(), forPurchases(symbol.getValue(), endDate, maxWindows));
+    }
+    return plan;
+  }
+
+  /** The windows of the symbol with id {@code symbolId} in {@code book}. */
+  static EndpointWindows forLots(TradeBook book, int symbolId, LocalDate endDate,
+      int maxWindows) {
+    int[] days = new int[book.getLotCount(symbolId)];
+    for (int k = 0; k < days.length; k++) {
+      days[k] = book.getEpochDay(book.getLot(symbolId, k));
+    }
+    Arrays.sort(days);
+    SortedSet<LocalDate> purchaseDates = new TreeSet<>();
+    for (int k = 0; k < days.length; k++) {
+      if (k == 0 || days[k] != days[k - 1]) {
+        purchaseDates.add(LocalDate.ofEpochDay(days[k]));
+      }
+    }
+    return forPurchases(purchaseDates, endDate, maxWindows);
+  }
+
+  static EndpointWindows forPurchases(SortedSet<LocalDate> purchaseDates, LocalDate endDate,
+      int maxWindows) {
+    LocalDate first = purchaseDates.first();
+    LocalDate last = purchaseDates.last();
+    Window whole = new Window(first, endDate, last);
+    if (last.isAfter(endDate)) {
+      return new EndpointWindows(first, endDate, Collections.singletonList(whole));
+    }
+
+    List<Window> windows = new ArrayList<>();
+    for (LocalDate purchase : purchaseDates) {
+      LocalDate to = min(purchase.plusDays(WINDOW_DAYS - 1), endDate);
+      Window previous = windows.isEmpty() ? null : windows.get(windows.size() - 1);
+      if (previous != null && !purchase.isAfter(previous.to.plusDays(WINDOW_DAYS))) {
+        windows.set(windows.size() - 1, new Window(previous.from, to, purchase));
+      } else {
+        windows.add(new Window(purchase, to, purchase));
+      }
+    }
+    Window previous = windows.get(windows.size() - 1);
+    LocalDate closeFrom = endDate.minusDays(WINDOW_DAYS - 1);
+    if (!closeFrom.isAfter(previous.to.plusDays(WINDOW_DAYS))) {
+      windows.set(windows.size() - 1, new Window(previous.from, endDate, previous.lastPurchase));
+    } else {
+      windows.add(new Window(closeFrom, endDate, null));
+    }
+    return new EndpointWindows(first, endDate,
+        windows.size() > maxWindows ? Collections.singletonList(whole) : windows);
+  }
+
+  int getWindowCount() {
+    return windows.size();
+  }
+
+  /**
+   * Fetches every window from {@code source}, concurrently when it is asynchronous, and returns
+   * their candles as one series in date order.
+   */
+  CompletableFuture<CandleSeries> fetch(String symbol, QuoteTransport source) {
+    if (windows.size() == 1) {
+      return fetch(symbol, source, windows.get(0));
+    }
+    List<CompletableFuture<CandleSeries>> parts = new ArrayList<>(windows.size());
+    for (Window window : windows) {
+      parts.add(fetch(symbol, source, window));
+    }
+    return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]))
+        .thenApply(ignored -> {
+          List<CandleSeries> fetched = new ArrayList<>(parts.size());
+          for (CompletableFuture<CandleSeries> part : parts) {
+            fetched.add(part.join());
+          }
+          return merge(fetched);
+        });
+  }
+
+  private CompletableFuture<CandleSeries> fetch(String symbol, QuoteTransport source,
+      Window window) {
+    return source.fetchAsync(symbol, window.from, window.to)
+        .thenCompose(series -> widenForward(symbol, source, series, window.to,
+            window.lastPurchase, WINDOW_DAYS))
+        .thenCompose(series -> window.to.equals(endDate)
+            ? widenBack(symbol, source, series, window.from, WINDOW_DAYS)
+            : CompletableFuture.completedFuture(series));
+  }
+
+  /** Extends {@code series}, fetched up to {@code to}, until it has a day from {@code purchase}. */
+  private CompletableFuture<CandleSeries> widenForward(String symbol, QuoteTransport source,
+      CandleSeries series, LocalDate to, LocalDate purchase, int days) {
+    if (purchase == null || series.indexAtOrAfter(purchase) >= 0 || !to.isBefore(endDate)) {
+      return CompletableFuture.completedFuture(series);
+    }
+    WIDENED.increment();
+    LocalDate next = min(to.plusDays(2L * days), endDate);
+    return source.fetchAsync(symbol, to.plusDays(1), next)
+        .thenCompose(more -> widenForward(symbol, source, CandleSeries.concat(series, more), next,
+            purchase, 2 * days));
+  }
+
+  /** Extends {@code series}, fetched from {@code from}, back until it has a closing price. */
+  private CompletableFuture<CandleSeries> widenBack(String symbol, QuoteTransport source,
+      CandleSeries series, LocalDate from, int days) {
+    if (!series.isEmpty() || !from.isAfter(firstPurchase)) {
+      return CompletableFuture.completedFuture(series);
+    }
+    WIDENED.increment();
+    LocalDate previous = max(from.minusDays(2L * days), firstPurchase);
+    return source.fetchAsync(symbol, previous, from.minusDays(1))
+        .thenCompose(more -> widenBack(symbol, source, CandleSeries.concat(more, series), previous,
+            2 * days));
+  }
+
+  /**
+   * Joins the windows into one series. A window widened into the next one overlaps it, so each
+   * part keeps only the days after those already taken.
+   */
+  private static CandleSeries merge(List<CandleSeries> parts) {
+    List<CandleSeries> ordered = new ArrayList<>(parts.size());
+    for (CandleSeries part : parts) {
+      if (!part.isEmpty()) {
+        ordered.add(part);
+      }
+    }
+    ordered.sort(Comparator.comparingInt(part -> part.getEpochDay(0)));
+    List<CandleSeries> disjoint = new ArrayList<>(ordered.size());
+    LocalDate taken = null;
+    for (CandleSeries part : ordered) {
+      LocalDate last = part.getDate(part.size() - 1);
+      if (taken == null) {
+        disjoint.add(part);
+      } else if (last.isAfter(taken)) {
+        disjoint.add(part.between(taken.plusDays(1), last));
+      } else {
+        continue;
+      }
+      taken = last;
+    }
+    return CandleSeries.concat(disjoint.toArray(new CandleSeries[0]));
+  }
+
+  private static LocalDate min(LocalDate a, LocalDate b) {
+    return a.isBefore(b) ? a : b;
+  }
+
+  private static LocalDate max(LocalDate a, LocalDate b) {
+    return a.isAfter(b) ? a : b;
+  }
+}
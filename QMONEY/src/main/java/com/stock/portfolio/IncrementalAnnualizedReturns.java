@@ -0,0 +1,148 @@
+package com.stock.portfolio;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.metrics.Counter;
+import com.stock.metrics.MetricsRegistry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Annualized returns of a fixed portfolio that are kept up to date as the end date rolls forward,
+ * e.g. by a nightly job.
+ *
+ * <p>Only two prices matter for a lot: the open of its purchase day, which never changes, and the
+ * close of the last trading day up to the end date. Both are kept between calls, so
+ * {@link #advanceTo} fetches just the candles after the date it last saw and updates each lot in
+ * constant time. Moving the end date backwards starts over from the full history.
+ *
+ * <p>Results match {@link PortfolioManager#calculateAnnualizedReturn} for the same end date. A
+ * symbol whose fetch fails is left out of that call's result and fetched again on the next one.
+ */
+public class IncrementalAnnualizedReturns {
+
+  private static final Logger log = LogManager.getLogger(IncrementalAnnualizedReturns.class);
+
+  private static final Counter CANDLES_FETCHED =
+      MetricsRegistry.global().counter("portfolio.incremental.candlesFetched");
+
+  private final PortfolioManagerImpl portfolioManager;
+  private final List<PortfolioTrade> trades;
+  /** Purchase-day open of each trade, by position; NaN until its purchase day has been seen. */
+  private final double[] buyPrices;
+  private final Map<String, SymbolState> symbols = new HashMap<>();
+  private LocalDate endDate;
+
+  IncrementalAnnualizedReturns(PortfolioManagerImpl portfolioManager,
+      List<PortfolioTrade> portfolioTrades) {
+    this.portfolioManager = portfolioManager;
+    this.trades = new ArrayList<>(portfolioTrades);
+    this.buyPrices = new double[trades.size()];
+    reset();
+  }
+
+  private static final class SymbolState {
+    final LocalDate firstPurchase;
+    /** Positions of this symbol's lots in {@link #trades}. */
+    final List<Integer> lots = new ArrayList<>();
+    /** Lots whose purchase day has not been seen yet. */
+    int pendingLots;
+    /** Candles are known up to and including this date; null before the first fetch. */
+    LocalDate coveredThrough;
+    double lastClose = Double.NaN;
+
+    SymbolState(LocalDate firstPurchase) {
+      this.firstPurchase = firstPurchase;
+    }
+  }
+
+  private void reset() {
+    Arrays.fill(buyPrices, Double.NaN);
+    symbols.clear();
+    for (Map.Entry<String, LocalDate> request :
+        PortfolioManagerImpl.planQuoteRequests(trades).entrySet()) {
+      symbols.put(request.getKey(), new SymbolState(request.getValue()));
+    }
+    for (int i = 0; i < trades.size(); i++) {
+      SymbolState state = symbols.get(trades.get(i).getSymbol());
+      state.lots.add(i);
+      state.pendingLots++;
+    }
+    endDate = null;
+  }
+
+  /**
+   * Moves the end date to {@code newEndDate}, fetching only the candles not seen yet, and returns
+   * the annualized returns as of that date, sorted like
+   * {@link PortfolioManager#calculateAnnualizedReturn}.
+   */
+  public synchronized List<AnnualizedReturn> advanceTo(LocalDate newEndDate) {
+    if (endDate != null && newEndDate.isBefore(endDate)) {
+      reset();
+    }
+    for (Map.Entry<String, SymbolState> entry : symbols.entrySet()) {
+      catchUp(entry.getKey(), entry.getValue(), newEndDate);
+    }
+    endDate = newEndDate;
+
+    List<AnnualizedReturn> list = new ArrayList<>(trades.size());
+    for (int i = 0; i < trades.size(); i++) {
+      PortfolioTrade trade = trades.get(i);
+      SymbolState state = symbols.get(trade.getSymbol());
+      if (!newEndDate.equals(state.coveredThrough) || Double.isNaN(buyPrices[i])
+          || Double.isNaN(state.lastClose)) {
+        continue;
+      }
+      list.add(PortfolioManagerImpl.calculateAnnualizedReturns(newEndDate, trade, buyPrices[i],
+          state.lastClose));
+    }
+    list.sort(PortfolioManagerImpl.getComparator());
+    return list;
+  }
+
+  /** Fetches the candles of one symbol after its covered date and folds them into the state. */
+  private void catchUp(String symbol, SymbolState state, LocalDate newEndDate) {
+    LocalDate from = state.coveredThrough == null ? state.firstPurchase
+        : state.coveredThrough.plusDays(1);
+    if (from.isAfter(newEndDate)) {
+      state.coveredThrough = newEndDate;
+      return;
+    }
+    CandleSeries candles;
+    try {
+      candles = portfolioManager.getCandleSeries(symbol, from, newEndDate);
+    } catch (RuntimeException e) {
+      log.warn("Skipping " + symbol + " until the next update: " + e, e);
+      return;
+    }
+    CANDLES_FETCHED.add(candles.size());
+
+    for (int i = 0; state.pendingLots > 0 && i < state.lots.size(); i++) {
+      int lot = state.lots.get(i);
+      if (Double.isNaN(buyPrices[lot])) {
+        int index = candles.indexAtOrAfter(trades.get(lot).getPurchaseDate());
+        if (index >= 0) {
+          buyPrices[lot] = candles.getOpen(index);
+          state.pendingLots--;
+        }
+      }
+    }
+    int last = candles.indexAtOrBefore(newEndDate);
+    if (last >= 0) {
+      state.lastClose = candles.getClose(last);
+    }
+    state.coveredThrough = newEndDate;
+  }
+
+  /** The end date of the last {@link #advanceTo}, or null before the first. */
+  public synchronized LocalDate getEndDate() {
+    return endDate;
+  }
+}
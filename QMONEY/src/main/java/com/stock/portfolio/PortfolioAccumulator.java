@@ -0,0 +1,47 @@
+package com.stock.portfolio;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.PortfolioReturns;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.TradeType;
+import java.util.List;
+
+/**
+ * Running totals of a portfolio, fed one priced lot at a time while the per-lot returns are
+ * computed, so that the aggregate costs no second pass and no per-lot allocation beyond the
+ * {@link AnnualizedReturn} itself.
+ */
+final class PortfolioAccumulator {
+
+  private int lots;
+  private double invested;
+  private double value;
+  private double bought;
+  private double weightedAnnualized;
+
+  /**
+   * Adds a priced lot to the totals. Only a buy is weighted into the annualized return: a sell
+   * has no capital of its own at stake, and weighting it negatively would let the rate run off
+   * to any value as the net invested capital nears zero.
+   *
+   * @return whether the lot is a holding, i.e. a buy
+   */
+  boolean add(PortfolioTrade trade, double buyPrice, double sellPrice, double annualizedReturn) {
+    boolean sell = trade.getTradeType() == TradeType.SELL;
+    double quantity = sell ? -trade.getQuantity() : trade.getQuantity();
+    double cost = quantity * buyPrice;
+    lots++;
+    invested += cost;
+    value += quantity * sellPrice;
+    if (!sell) {
+      bought += cost;
+      weightedAnnualized += cost * annualizedReturn;
+    }
+    return !sell;
+  }
+
+  PortfolioReturns toReturns(List<AnnualizedReturn> annualizedReturns) {
+    double annualized = bought == 0 ? Double.NaN : weightedAnnualized / bought;
+    return new PortfolioReturns(annualizedReturns, lots, invested, value, annualized);
+  }
+}
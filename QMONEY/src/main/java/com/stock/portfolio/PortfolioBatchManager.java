@@ -0,0 +1,38 @@
+package com.stock.portfolio;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.PortfolioTrade;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Evaluates many portfolios against one end date, e.g. every client of an advisor, fetching the
+ * quotes of a symbol held by several of them only once.
+ */
+public interface PortfolioBatchManager {
+
+  /**
+   * Annualized returns of every portfolio, keyed and ordered like {@code portfolios}, each list
+   * sorted like {@link PortfolioManager#calculateAnnualizedReturn}. A symbol whose quotes cannot
+   * be fetched is skipped in every portfolio that holds it, and a lot that cannot be priced, e.g.
+   * one bought after {@code endDate}, only in its own portfolio.
+   */
+  Map<String, List<AnnualizedReturn>> calculateAnnualizedReturns(
+      Map<String, List<PortfolioTrade>> portfolios, LocalDate endDate, ExecutorService executor)
+      throws InterruptedException;
+
+  /** As above, on a pool of {@code numThreads} threads that is shut down before returning. */
+  Map<String, List<AnnualizedReturn>> calculateAnnualizedReturns(
+      Map<String, List<PortfolioTrade>> portfolios, LocalDate endDate, int numThreads)
+      throws InterruptedException;
+
+  /**
+   * {@link PortfolioManager#calculateXirr} of every portfolio, keyed and ordered like
+   * {@code portfolios}, with each symbol fetched once across all of them. A portfolio whose rate
+   * cannot be computed is logged and left out rather than failing the batch.
+   */
+  Map<String, Double> calculateXirr(Map<String, List<PortfolioTrade>> portfolios,
+      LocalDate endDate, ExecutorService executor) throws InterruptedException;
+}
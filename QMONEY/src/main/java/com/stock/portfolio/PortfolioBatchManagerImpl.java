@@ -0,0 +1,162 @@
+package com.stock.portfolio;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.metrics.Counter;
+import com.stock.metrics.LatencyHistogram;
+import com.stock.metrics.MetricsRegistry;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Plans one request per symbol across all portfolios, from the earliest purchase date of any of
+ * its lots, fetches them through a {@link PortfolioManagerImpl}, and then evaluates each
+ * portfolio as its own task from the shared candles.
+ */
+public class PortfolioBatchManagerImpl implements PortfolioBatchManager {
+
+  private static final Logger log = LogManager.getLogger(PortfolioBatchManagerImpl.class);
+
+  private static final MetricsRegistry METRICS = MetricsRegistry.global();
+  private static final Counter SYMBOLS_FETCHED = METRICS.counter("portfolio.batch.symbolsFetched");
+  private static final Counter FAILURES = METRICS.counter("portfolio.batch.failures");
+  private static final LatencyHistogram LATENCY = METRICS.histogram("portfolio.batch.latency");
+  private static final LatencyHistogram XIRR_LATENCY =
+      METRICS.histogram("portfolio.batch.xirr.latency");
+
+  private final PortfolioManagerImpl portfolioManager;
+
+  protected PortfolioBatchManagerImpl(PortfolioManagerImpl portfolioManager) {
+    this.portfolioManager = portfolioManager;
+  }
+
+  @Override
+  public Map<String, List<AnnualizedReturn>> calculateAnnualizedReturns(
+      Map<String, List<PortfolioTrade>> portfolios, LocalDate endDate, int numThreads)
+      throws InterruptedException {
+    if (numThreads < 1) {
+      throw new IllegalArgumentException("numThreads must be at least 1, was " + numThreads);
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      return calculateAnnualizedReturns(portfolios, endDate, executor);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  public Map<String, List<AnnualizedReturn>> calculateAnnualizedReturns(
+      Map<String, List<PortfolioTrade>> portfolios, LocalDate endDate, ExecutorService executor)
+      throws InterruptedException {
+    long start = System.nanoTime();
+    Map<String, CandleSeries> quotes = fetch(portfolios, endDate, executor);
+    Map<String, List<AnnualizedReturn>> results =
+        perPortfolio(portfolios, executor, trades -> price(trades, quotes, endDate));
+    LATENCY.recordSince(start);
+    return results;
+  }
+
+  @Override
+  public Map<String, Double> calculateXirr(Map<String, List<PortfolioTrade>> portfolios,
+      LocalDate endDate, ExecutorService executor) throws InterruptedException {
+    long start = System.nanoTime();
+    Map<String, CandleSeries> quotes = fetch(portfolios, endDate, executor);
+    Map<String, Double> results = perPortfolio(portfolios, executor,
+        trades -> PortfolioCashFlows.xirr(trades, quotes, endDate));
+    XIRR_LATENCY.recordSince(start);
+    return results;
+  }
+
+  /**
+   * Fetches every symbol of every portfolio once, from the earliest purchase date of any of its
+   * lots. Symbols that fail are logged and left out.
+   */
+  private Map<String, CandleSeries> fetch(Map<String, List<PortfolioTrade>> portfolios,
+      LocalDate endDate, ExecutorService executor) throws InterruptedException {
+    Map<String, LocalDate> plan = new LinkedHashMap<>();
+    for (List<PortfolioTrade> trades : portfolios.values()) {
+      PortfolioManagerImpl.addQuoteRequests(plan, trades);
+    }
+
+    Map<String, Future<CandleSeries>> fetches = new HashMap<>();
+    for (Map.Entry<String, LocalDate> request : plan.entrySet()) {
+      String symbol = request.getKey();
+      LocalDate from = request.getValue();
+      fetches.put(symbol, executor.submit(
+          () -> portfolioManager.getCandleSeries(symbol, from, endDate)));
+    }
+    SYMBOLS_FETCHED.add(plan.size());
+
+    // Collected before pricing starts, so that a failed symbol is logged once rather than once
+    // per portfolio, and pricing tasks never block on a fetch queued behind them.
+    Map<String, CandleSeries> quotes = new HashMap<>();
+    for (Map.Entry<String, Future<CandleSeries>> fetch : fetches.entrySet()) {
+      try {
+        quotes.put(fetch.getKey(), fetch.getValue().get());
+      } catch (ExecutionException e) {
+        FAILURES.increment();
+        log.warn("Skipping " + fetch.getKey() + " in every portfolio: " + e.getCause(),
+            e.getCause());
+      }
+    }
+    return quotes;
+  }
+
+  /**
+   * Applies {@code evaluation} to every portfolio as its own task. A portfolio whose evaluation
+   * fails is logged, counted and left out, so that it does not fail the rest of the batch.
+   */
+  private static <T> Map<String, T> perPortfolio(Map<String, List<PortfolioTrade>> portfolios,
+      ExecutorService executor, Function<List<PortfolioTrade>, T> evaluation)
+      throws InterruptedException {
+    Map<String, Future<T>> pending = new LinkedHashMap<>();
+    for (Map.Entry<String, List<PortfolioTrade>> portfolio : portfolios.entrySet()) {
+      List<PortfolioTrade> trades = portfolio.getValue();
+      pending.put(portfolio.getKey(), executor.submit(() -> evaluation.apply(trades)));
+    }
+
+    Map<String, T> results = new LinkedHashMap<>();
+    for (Map.Entry<String, Future<T>> portfolio : pending.entrySet()) {
+      try {
+        results.put(portfolio.getKey(), portfolio.getValue().get());
+      } catch (ExecutionException e) {
+        FAILURES.increment();
+        log.warn("Skipping portfolio " + portfolio.getKey() + ": " + e.getCause(), e.getCause());
+      }
+    }
+    return results;
+  }
+
+  private static List<AnnualizedReturn> price(List<PortfolioTrade> trades,
+      Map<String, CandleSeries> quotes, LocalDate endDate) {
+    List<AnnualizedReturn> list = new ArrayList<>(trades.size());
+    for (PortfolioTrade trade : trades) {
+      CandleSeries candles = quotes.get(trade.getSymbol());
+      if (candles == null) {
+        continue;
+      }
+      try {
+        list.add(PortfolioManagerImpl.priceTrade(trade, candles, endDate));
+      } catch (RuntimeException e) {
+        FAILURES.increment();
+        log.warn("Skipping " + trade.getSymbol() + " bought " + trade.getPurchaseDate() + ": " + e,
+            e);
+      }
+    }
+    list.sort(PortfolioManagerImpl.getComparator());
+    return list;
+  }
+}
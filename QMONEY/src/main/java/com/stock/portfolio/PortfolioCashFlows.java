@@ -0,0 +1,75 @@
+package com.stock.portfolio;
+
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.TradeType;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns trades into the dated cash flows of a portfolio. Every trade is executed at the opening
+ * price of the first trading day on or after its date, the buy price used by
+ * {@link PortfolioManagerImpl#calculateAnnualizedReturn}: a buy pays {@code quantity * open}, a
+ * sell receives it. Whatever is still held at the end date is valued at the closing price and
+ * counted as received on that date.
+ */
+final class PortfolioCashFlows {
+
+  private static final ThreadLocal<XirrSolver> SOLVERS = ThreadLocal.withInitial(XirrSolver::new);
+
+  private PortfolioCashFlows() {
+  }
+
+  /**
+   * XIRR of {@code trades} on a solver reused by the calling thread.
+   *
+   * @return the rate, or NaN if there is none
+   */
+  static double xirr(List<PortfolioTrade> trades, Map<String, CandleSeries> quotes,
+      LocalDate endDate) {
+    return load(SOLVERS.get(), trades, quotes, endDate).solve();
+  }
+
+  /**
+   * Replaces the flows of {@code solver} with those of {@code trades}. Trades after
+   * {@code endDate}, and symbols missing from {@code quotes}, are left out.
+   *
+   * @return {@code solver}
+   * @throws IllegalStateException if a symbol has no trading day at a trade date or the end date
+   */
+  static XirrSolver load(XirrSolver solver, List<PortfolioTrade> trades,
+      Map<String, CandleSeries> quotes, LocalDate endDate) {
+    solver.reset();
+    Map<String, Integer> holdings = new HashMap<>();
+    for (PortfolioTrade trade : trades) {
+      CandleSeries candles = quotes.get(trade.getSymbol());
+      if (candles == null || trade.getPurchaseDate().isAfter(endDate)) {
+        continue;
+      }
+      int index = candles.indexAtOrAfter(trade.getPurchaseDate());
+      if (index < 0 || candles.getEpochDay(index) > endDate.toEpochDay()) {
+        throw new IllegalStateException("No trading day for " + trade.getSymbol() + " between "
+            + trade.getPurchaseDate() + " and " + endDate);
+      }
+      int quantity = trade.getTradeType() == TradeType.SELL ? -trade.getQuantity()
+          : trade.getQuantity();
+      solver.add(-quantity * candles.getOpen(index), trade.getPurchaseDate());
+      holdings.merge(trade.getSymbol(), quantity, Integer::sum);
+    }
+    for (Map.Entry<String, Integer> holding : holdings.entrySet()) {
+      if (holding.getValue() == 0) {
+        continue;
+      }
+      CandleSeries candles = quotes.get(holding.getKey());
+      int index = candles.indexAtOrBefore(endDate);
+      if (index < 0) {
+        throw new IllegalStateException("No trading day for " + holding.getKey() + " on or before "
+            + endDate);
+      }
+      solver.add(holding.getValue() * candles.getClose(index), endDate);
+    }
+    return solver;
+  }
+}
@@ -3,12 +3,126 @@ package com.stock.portfolio;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 
 import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.PortfolioReturns;
 import com.stock.dto.PortfolioTrade;
+import com.stock.dto.ReturnSweep;
+import com.stock.dto.TradeBook;
 
 public interface PortfolioManager {
 
 	List<AnnualizedReturn> calculateAnnualizedReturn(List<PortfolioTrade> portfolioTrades, LocalDate endDate);
 
+	/**
+	 * The part of the result of {@link #calculateAnnualizedReturn(List, LocalDate)} kept by
+	 * {@code ranking}, in the same order. A bounded ranking never holds more than its limit of
+	 * returns, however many trades there are.
+	 */
+	List<AnnualizedReturn> calculateAnnualizedReturn(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, Ranking ranking);
+
+	/**
+	 * Same result as {@link #calculateAnnualizedReturn(List, LocalDate)}, but the quotes for all
+	 * symbols are fetched concurrently on a pool of {@code numThreads} threads. A trade whose quote
+	 * cannot be fetched is left out of the result instead of failing the whole portfolio.
+	 */
+	List<AnnualizedReturn> calculateAnnualizedReturnParallel(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, int numThreads) throws InterruptedException;
+
+	/**
+	 * Variant of {@link #calculateAnnualizedReturnParallel(List, LocalDate, int)} running on a
+	 * caller-owned executor. The executor is not shut down.
+	 */
+	List<AnnualizedReturn> calculateAnnualizedReturnParallel(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, ExecutorService executor) throws InterruptedException;
+
+	/**
+	 * Variant of {@link #calculateAnnualizedReturnParallel(List, LocalDate, ExecutorService)}
+	 * keeping only the part of the result chosen by {@code ranking}. Lots are ranked on the pool as
+	 * each symbol's quote arrives.
+	 */
+	List<AnnualizedReturn> calculateAnnualizedReturnParallel(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, ExecutorService executor, Ranking ranking) throws InterruptedException;
+
+	/**
+	 * Same result as {@link #calculateAnnualizedReturnParallel(List, LocalDate, int)}, without
+	 * blocking the caller. The future completes once every symbol's fetch has settled. As in
+	 * {@link #calculateAnnualizedReturn(List, LocalDate)}, a lot without a trading day to price it
+	 * is left out on its own rather than with the rest of its symbol.
+	 */
+	CompletableFuture<List<AnnualizedReturn>> calculateAnnualizedReturnAsync(
+			List<PortfolioTrade> portfolioTrades, LocalDate endDate);
+
+	/**
+	 * Variant of {@link #calculateAnnualizedReturnAsync(List, LocalDate)} keeping only the part of
+	 * the result chosen by {@code ranking}.
+	 */
+	CompletableFuture<List<AnnualizedReturn>> calculateAnnualizedReturnAsync(
+			List<PortfolioTrade> portfolioTrades, LocalDate endDate, Ranking ranking);
+
+	/**
+	 * Same result as {@link #calculateAnnualizedReturn(List, LocalDate, Ranking)} for the trades
+	 * of {@code trades}, with symbols grouped and lots priced over the book's columns. As in the
+	 * parallel form, a symbol whose quote cannot be fetched or priced is left out.
+	 */
+	List<AnnualizedReturn> calculateAnnualizedReturn(TradeBook trades, LocalDate endDate,
+			Ranking ranking);
+
+	/**
+	 * Non-blocking form of {@link #calculateAnnualizedReturn(TradeBook, LocalDate, Ranking)}. Each
+	 * symbol's lots are ranked as soon as its quote arrives.
+	 */
+	CompletableFuture<List<AnnualizedReturn>> calculateAnnualizedReturnAsync(TradeBook trades,
+			LocalDate endDate, Ranking ranking);
+
+	/**
+	 * Passes each lot's annualized return to {@code onResult} as soon as its symbol's quote
+	 * arrives, instead of collecting and sorting them all. Results therefore come in arrival order;
+	 * lots of one symbol keep their trade order. {@code onResult} is never called concurrently with
+	 * itself, but may be called on any thread. A symbol whose quote cannot be fetched, or a lot
+	 * without a trading day to price it, is left out; only an exception from {@code onResult}
+	 * stops the stream and fails the future.
+	 *
+	 * @return the number of results passed on, once every symbol has been handled
+	 */
+	CompletableFuture<Long> streamAnnualizedReturn(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, Consumer<? super AnnualizedReturn> onResult);
+
+	/**
+	 * The annualized returns of the bought lots, as {@link #calculateAnnualizedReturn} computes
+	 * them, together with the portfolio's invested capital, current value, profit and loss, and
+	 * annualized return weighted by purchase cost, all computed in the same pass. Sells reduce
+	 * the capital and value but are not reported as lots of their own. A symbol whose quote
+	 * cannot be fetched, or a lot without trading days to price it, is logged and left out.
+	 */
+	PortfolioReturns calculatePortfolioReturns(List<PortfolioTrade> portfolioTrades, LocalDate endDate);
+
+	/**
+	 * Internal rate of return of the whole portfolio up to {@code endDate}, from the cash flows of
+	 * its trades: quantities count, sells return cash, and what is still held is valued at the end
+	 * date. A symbol whose quote cannot be fetched is left out.
+	 *
+	 * @return the annual rate, or NaN if the flows have none
+	 */
+	double calculateXirr(List<PortfolioTrade> portfolioTrades, LocalDate endDate);
+
+	/**
+	 * Annualized and total return of every lot at every trading day from {@code from} to
+	 * {@code to}, with each symbol fetched once. Each entry equals what
+	 * {@link #calculateAnnualizedReturn} gives for that end date. A symbol whose quote cannot be
+	 * fetched has NaN returns throughout.
+	 */
+	ReturnSweep calculateAnnualizedReturnSweep(List<PortfolioTrade> portfolioTrades, LocalDate from,
+			LocalDate to);
+
+	/**
+	 * Starts tracking {@code portfolioTrades} for repeated evaluation at later and later end dates,
+	 * fetching only the candles each new date adds. Nothing is fetched until the first
+	 * {@link IncrementalAnnualizedReturns#advanceTo}.
+	 */
+	IncrementalAnnualizedReturns trackAnnualizedReturn(List<PortfolioTrade> portfolioTrades);
 }
@@ -1,6 +1,8 @@
 package com.stock.portfolio;
 
 
+import com.stock.quotes.CandleCache;
+import com.stock.quotes.QuoteTransport;
 import org.springframework.web.client.RestTemplate;
 
 public class PortfolioManagerFactory {
@@ -9,4 +11,32 @@ public class PortfolioManagerFactory {
     return new PortfolioManagerImpl(restTemplate);
   }
 
+  /**
+   * Builds a manager whose quotes go through the given cache. Passing the same cache to several
+   * managers lets them share fetched candles; passing null disables caching.
+   */
+  public static PortfolioManager getPortfolioManager(RestTemplate restTemplate,
+      CandleCache candleCache) {
+    return new PortfolioManagerImpl(restTemplate, candleCache);
+  }
+
+  /**
+   * Builds a manager that fetches quotes through {@code quoteTransport}, e.g. a
+   * {@link com.stock.quotes.PooledHttpQuoteTransport}. The caller closes the transport.
+   */
+  public static PortfolioManager getPortfolioManager(QuoteTransport quoteTransport,
+      CandleCache candleCache) {
+    return PortfolioManagerImpl.forTransport(quoteTransport, candleCache);
+  }
+
+  /**
+   * Builds a manager that evaluates many portfolios at once, fetching each symbol they hold once
+   * through {@code quoteTransport}. The caller closes the transport.
+   */
+  public static PortfolioBatchManager getPortfolioBatchManager(QuoteTransport quoteTransport,
+      CandleCache candleCache) {
+    return new PortfolioBatchManagerImpl(
+        PortfolioManagerImpl.forTransport(quoteTransport, candleCache));
+  }
+
 }
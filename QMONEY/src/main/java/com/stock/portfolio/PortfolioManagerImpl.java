@@ -3,48 +3,211 @@ package com.stock.portfolio;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.springframework.web.client.RestTemplate;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.stock.PortfolioManagerApplication;
 import com.stock.dto.AnnualizedReturn;
 import com.stock.dto.Candle;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioReturns;
 import com.stock.dto.PortfolioTrade;
-import com.stock.dto.TiingoCandle;
+import com.stock.dto.ReturnSweep;
+import com.stock.dto.TradeBook;
+import com.stock.metrics.Counter;
+import com.stock.metrics.LatencyHistogram;
+import com.stock.metrics.Meter;
+import com.stock.metrics.MetricsRegistry;
+import com.stock.quotes.CandleCache;
+import com.stock.quotes.Futures;
+import com.stock.quotes.QuoteTransport;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.RestTemplateQuoteTransport;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.quotes.TiingoEndpoints;
 
 public class PortfolioManagerImpl implements PortfolioManager {
 
+	private static final Logger log = LogManager.getLogger(PortfolioManagerImpl.class);
+
+	private static final MetricsRegistry METRICS = MetricsRegistry.global();
+	private static final Meter TRADES_PRICED = METRICS.meter("portfolio.tradesPriced");
+	// Lots left out of a result, whether their symbol failed to fetch or the lot failed to price.
+	private static final Counter CALCULATION_FAILURES = METRICS.counter("portfolio.calculate.failures");
+	private static final LatencyHistogram CALCULATE_LATENCY =
+			METRICS.histogram("portfolio.calculateAnnualizedReturn.latency");
+	private static final LatencyHistogram PARALLEL_LATENCY =
+			METRICS.histogram("portfolio.calculateAnnualizedReturnParallel.latency");
+	private static final LatencyHistogram ASYNC_LATENCY =
+			METRICS.histogram("portfolio.calculateAnnualizedReturnAsync.latency");
+	private static final LatencyHistogram BOOK_LATENCY =
+			METRICS.histogram("portfolio.calculateAnnualizedReturn.tradeBook.latency");
+	private static final LatencyHistogram STREAM_LATENCY =
+			METRICS.histogram("portfolio.streamAnnualizedReturn.latency");
+	private static final LatencyHistogram PORTFOLIO_LATENCY =
+			METRICS.histogram("portfolio.calculatePortfolioReturns.latency");
+	private static final LatencyHistogram SWEEP_LATENCY =
+			METRICS.histogram("portfolio.calculateAnnualizedReturnSweep.latency");
+	private static final LatencyHistogram XIRR_LATENCY =
+			METRICS.histogram("portfolio.calculateXirr.latency");
+
 	RestTemplate restTemplate;
+	private final QuoteTransport quoteTransport;
+	private final CandleCache candleCache;
+	// Annualized returns are priced from endpoint windows when this is 2 or more; see EndpointWindows.
+	private final int maxEndpointWindows;
 
 	// This is necessary for backward compatibility
 	protected PortfolioManagerImpl(RestTemplate restTemplate) {
+		this(restTemplate, new CandleCache());
+	}
+
+	/**
+	 * @param candleCache cache consulted before every quote fetch, or null to always go to Tiingo
+	 */
+	protected PortfolioManagerImpl(RestTemplate restTemplate, CandleCache candleCache) {
 		this.restTemplate = restTemplate;
+		this.quoteTransport = throttled(new RestTemplateQuoteTransport(restTemplate, this::buildUri));
+		this.candleCache = candleCache;
+		this.maxEndpointWindows = 0;
 	}
 
-	private Comparator<AnnualizedReturn> getComparator() {
+	/**
+	 * Annualized returns are priced from a few days after each purchase date and before the end
+	 * date rather than from the whole history in between, with up to the number of windows per
+	 * symbol set by the {@code qmoney.pricing.maxWindows} system property; see
+	 * {@link EndpointWindows}.
+	 *
+	 * <p>A factory rather than a constructor: Mockito's {@code @InjectMocks} builds through the
+	 * constructor with the most parameters, and a second two-argument constructor would make which
+	 * one it picks depend on the JVM.
+	 *
+	 * @param quoteTransport transport used for every quote fetch; the caller owns and closes it.
+	 *        Unless it is already {@linkplain QuoteTransport#isPaced() paced}, e.g. a
+	 *        {@link ThrottledQuoteTransport}, fetches are paced by {@link RequestScheduler#shared()}.
+	 * @param candleCache cache consulted before every quote fetch, or null to always go to Tiingo
+	 */
+	static PortfolioManagerImpl forTransport(QuoteTransport quoteTransport, CandleCache candleCache) {
+		Objects.requireNonNull(quoteTransport, "quoteTransport");
+		int maxEndpointWindows = Integer.getInteger(EndpointWindows.MAX_WINDOWS_PROPERTY,
+				EndpointWindows.DEFAULT_MAX_WINDOWS);
+		return new PortfolioManagerImpl(new QuoteSource(throttled(quoteTransport), candleCache,
+				maxEndpointWindows));
+	}
+
+	private PortfolioManagerImpl(QuoteSource source) {
+		this.quoteTransport = source.quoteTransport;
+		this.candleCache = source.candleCache;
+		this.maxEndpointWindows = source.maxEndpointWindows;
+	}
+
+	private static final class QuoteSource {
+		final QuoteTransport quoteTransport;
+		final CandleCache candleCache;
+		final int maxEndpointWindows;
+
+		QuoteSource(QuoteTransport quoteTransport, CandleCache candleCache, int maxEndpointWindows) {
+			this.quoteTransport = quoteTransport;
+			this.candleCache = candleCache;
+			this.maxEndpointWindows = maxEndpointWindows;
+		}
+	}
+
+	private static QuoteTransport throttled(QuoteTransport quoteTransport) {
+		if (quoteTransport.isPaced()) {
+			return quoteTransport;
+		}
+		return new ThrottledQuoteTransport(quoteTransport, RequestScheduler.shared());
+	}
+
+	static Comparator<AnnualizedReturn> getComparator() {
 		return Comparator.comparing(AnnualizedReturn::getAnnualizedReturn).reversed();
 	}
 
 	public List<Candle> getStockQuote(String symbol, LocalDate from, LocalDate to)
 			throws JsonProcessingException {
-		TiingoCandle[] candle = restTemplate.getForObject(buildUri(symbol,from,to), TiingoCandle[].class);
-		return Arrays.stream(candle).collect(Collectors.toList());
+		return getCandleSeries(symbol, from, to).asCandles();
 	}
 
-	protected String buildUri(String symbol, LocalDate startDate, LocalDate endDate) {
-		String uriTemplate = "https:api.tiingo.com/tiingo/daily/$SYMBOL/prices?"
-				+ "startDate=$STARTDATE&endDate=$ENDDATE&token=$APIKEY";
+	/**
+	 * Columnar form of {@link #getStockQuote}, going through the candle cache when one is set.
+	 */
+	public CandleSeries getCandleSeries(String symbol, LocalDate from, LocalDate to) {
+		if (candleCache == null) {
+			return quoteTransport.fetch(symbol, from, to);
+		}
+		return candleCache.get(symbol, from, to, quoteTransport::fetch);
+	}
+
+	/**
+	 * Non-blocking form of {@link #getCandleSeries}. An unknown ticker fails the future with
+	 * {@link com.stock.quotes.UnknownSymbolException}.
+	 */
+	public CompletableFuture<CandleSeries> getCandleSeriesAsync(String symbol, LocalDate from,
+			LocalDate to) {
+		if (candleCache == null) {
+			return quoteTransport.fetchAsync(symbol, from, to);
+		}
+		return candleCache.getAsync(symbol, from, to, quoteTransport::fetchAsync);
+	}
+
+	/**
+	 * Candles enough to price every lot of {@code symbol}: its endpoint windows when
+	 * {@code windows} is set, otherwise the whole history from {@code from}.
+	 */
+	private CandleSeries getReturnQuotes(String symbol, LocalDate from, LocalDate endDate,
+			Map<String, EndpointWindows> windows) throws JsonProcessingException {
+		if (windows == null) {
+			return CandleSeries.of(getStockQuote(symbol, from, endDate));
+		}
+		QuoteTransport blocking = (s, f, t) -> {
+			try {
+				return CompletableFuture.completedFuture(getCandleSeries(s, f, t));
+			} catch (RuntimeException e) {
+				return Futures.failed(e);
+			}
+		};
+		return Futures.join(windows.get(symbol).fetch(symbol, blocking));
+	}
 
-		String urlString = uriTemplate.replace("$APIKEY", getToken()).replace("$SYMBOL", symbol)
-				.replace("$STARTDATE", startDate.toString())
-				.replace("$ENDDATE", endDate.toString());
+	private CompletableFuture<CandleSeries> getReturnQuotesAsync(String symbol, LocalDate from,
+			LocalDate endDate, Map<String, EndpointWindows> windows) {
+		if (windows == null) {
+			return getCandleSeriesAsync(symbol, from, endDate);
+		}
+		return windows.get(symbol).fetch(symbol, this::getCandleSeriesAsync);
+	}
+
+	/** The endpoint windows of every symbol, or null when returns are priced from whole histories. */
+	private Map<String, EndpointWindows> planEndpointWindows(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate) {
+		if (maxEndpointWindows < 2) {
+			return null;
+		}
+		return EndpointWindows.plan(portfolioTrades, endDate, maxEndpointWindows);
+	}
+
+	public CandleCache getCandleCache() {
+		return candleCache;
+	}
 
-		return urlString;
+	protected String buildUri(String symbol, LocalDate startDate, LocalDate endDate) {
+		return TiingoEndpoints.dailyPrices(symbol, startDate, endDate, getToken());
 	}
 
 	private static String getToken() {
@@ -55,32 +218,452 @@ public class PortfolioManagerImpl implements PortfolioManager {
 	@Override
 	public List<AnnualizedReturn> 
 	calculateAnnualizedReturn(List<PortfolioTrade> portfolioTrades, LocalDate endDate) {
+		return calculateAnnualizedReturn(portfolioTrades, endDate, Ranking.all());
+	}
+
+	@Override
+	public List<AnnualizedReturn> calculateAnnualizedReturn(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, Ranking ranking) {
 
-		List<AnnualizedReturn> list = new ArrayList<>();
-		try{
-			for (PortfolioTrade tradesObj : portfolioTrades) { 
-				Double buyPrice = PortfolioManagerApplication.getOpeningPriceOnStartDate(getStockQuote(tradesObj.getSymbol(),tradesObj.getPurchaseDate(), endDate));
-				Double sellPrice = PortfolioManagerApplication.getClosingPriceOnEndDate(getStockQuote(tradesObj.getSymbol(),tradesObj.getPurchaseDate(), endDate));
-				list.add(PortfolioManagerApplication.calculateAnnualizedReturns(endDate, tradesObj, buyPrice, sellPrice));
+		long start = System.nanoTime();
+		RankedSelection<AnnualizedReturn> selection = ranking.newSelection(getComparator());
+		Map<String, CandleSeries> quotes = new HashMap<>();
+		Map<String, EndpointWindows> windows = planEndpointWindows(portfolioTrades, endDate);
+		for (Map.Entry<String, LocalDate> request : planQuoteRequests(portfolioTrades).entrySet()) {
+			String symbol = request.getKey();
+			try {
+				quotes.put(symbol, getReturnQuotes(symbol, request.getValue(), endDate, windows));
+			} catch (Exception e) {
+				// Its lots are counted and skipped below, like those of a symbol that fails to price.
+				log.warn("Skipping " + symbol + ": " + e, e);
 			}
 		}
-		catch(Exception e){
-			System.out.println(e);
+		for (PortfolioTrade trade : portfolioTrades) {
+			CandleSeries candles = quotes.get(trade.getSymbol());
+			if (candles == null) {
+				CALCULATION_FAILURES.increment();
+				continue;
+			}
+			try {
+				selection.offer(priceTrade(trade, candles, endDate));
+			} catch (RuntimeException e) {
+				CALCULATION_FAILURES.increment();
+				log.warn("Skipping " + trade.getSymbol() + ": " + e, e);
+			}
 		}
-		list.sort(getComparator());
+		List<AnnualizedReturn> list = selection.toList();
+		CALCULATE_LATENCY.recordSince(start);
 		return list;
 	}
 
+	@Override
+	public List<AnnualizedReturn> calculateAnnualizedReturnParallel(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, int numThreads) throws InterruptedException {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("numThreads must be at least 1, was " + numThreads);
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			return calculateAnnualizedReturnParallel(portfolioTrades, endDate, executor);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Override
+	public List<AnnualizedReturn> calculateAnnualizedReturnParallel(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, ExecutorService executor) throws InterruptedException {
+		return calculateAnnualizedReturnParallel(portfolioTrades, endDate, executor, Ranking.all());
+	}
+
+	@Override
+	public List<AnnualizedReturn> calculateAnnualizedReturnParallel(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, ExecutorService executor, Ranking ranking) throws InterruptedException {
+		long start = System.nanoTime();
+		Map<String, List<Integer>> positions = new HashMap<>();
+		for (int i = 0; i < portfolioTrades.size(); i++) {
+			positions.computeIfAbsent(portfolioTrades.get(i).getSymbol(), symbol -> new ArrayList<>()).add(i);
+		}
+
+		// Each symbol's lots are priced on the worker that fetched it, as soon as its quote arrives;
+		// positions keep ties in the same order as the sequential path.
+		RankedSelection<AnnualizedReturn> selection = ranking.newSelection(getComparator());
+		Map<String, EndpointWindows> windows = planEndpointWindows(portfolioTrades, endDate);
+		Map<String, Future<?>> pricings = new HashMap<>();
+		for (Map.Entry<String, LocalDate> request : planQuoteRequests(portfolioTrades).entrySet()) {
+			String symbol = request.getKey();
+			LocalDate from = request.getValue();
+			pricings.put(symbol, executor.submit(() -> {
+				CandleSeries candles = getReturnQuotes(symbol, from, endDate, windows);
+				List<Integer> lots = positions.get(symbol);
+				AnnualizedReturn[] priced = new AnnualizedReturn[lots.size()];
+				for (int i = 0; i < priced.length; i++) {
+					priced[i] = priceTrade(portfolioTrades.get(lots.get(i)), candles, endDate);
+				}
+				// Offered only once every lot is priced, so a failed symbol leaves nothing behind.
+				for (int i = 0; i < priced.length; i++) {
+					selection.offer(priced[i], lots.get(i));
+				}
+				return null;
+			}));
+		}
+
+		for (Map.Entry<String, Future<?>> pricing : pricings.entrySet()) {
+			try {
+				pricing.getValue().get();
+			} catch (ExecutionException e) {
+				CALCULATION_FAILURES.add(positions.get(pricing.getKey()).size());
+				log.warn("Skipping " + pricing.getKey() + ": " + e.getCause(), e.getCause());
+			}
+		}
+		List<AnnualizedReturn> list = selection.toList();
+		PARALLEL_LATENCY.recordSince(start);
+		return list;
+	}
+
+	@Override
+	public CompletableFuture<List<AnnualizedReturn>> calculateAnnualizedReturnAsync(
+			List<PortfolioTrade> portfolioTrades, LocalDate endDate) {
+		return calculateAnnualizedReturnAsync(portfolioTrades, endDate, Ranking.all());
+	}
+
+	@Override
+	public CompletableFuture<List<AnnualizedReturn>> calculateAnnualizedReturnAsync(
+			List<PortfolioTrade> portfolioTrades, LocalDate endDate, Ranking ranking) {
+		long start = System.nanoTime();
+		Map<String, CompletableFuture<CandleSeries>> quotes = new HashMap<>();
+		Map<String, EndpointWindows> windows = planEndpointWindows(portfolioTrades, endDate);
+		for (Map.Entry<String, LocalDate> request : planQuoteRequests(portfolioTrades).entrySet()) {
+			String symbol = request.getKey();
+			quotes.put(symbol, getReturnQuotesAsync(symbol, request.getValue(), endDate, windows));
+		}
+
+		// Failures are handled per symbol and per trade below, so allOf only waits for every fetch
+		// to settle.
+		CompletableFuture<?>[] pending = quotes.values().toArray(new CompletableFuture<?>[0]);
+		return CompletableFuture.allOf(pending).handle((ignored, failure) -> {
+			Map<String, CandleSeries> fetched = new HashMap<>();
+			for (Map.Entry<String, CompletableFuture<CandleSeries>> quote : quotes.entrySet()) {
+				try {
+					fetched.put(quote.getKey(), quote.getValue().join());
+				} catch (RuntimeException e) {
+					// Its lots are counted and skipped below, like those of a symbol that fails to price.
+					Throwable cause = Futures.unwrap(e);
+					log.warn("Skipping " + quote.getKey() + ": " + cause, cause);
+				}
+			}
+			RankedSelection<AnnualizedReturn> selection = ranking.newSelection(getComparator());
+			for (PortfolioTrade trade : portfolioTrades) {
+				CandleSeries candles = fetched.get(trade.getSymbol());
+				if (candles == null) {
+					CALCULATION_FAILURES.increment();
+					continue;
+				}
+				try {
+					selection.offer(priceTrade(trade, candles, endDate));
+				} catch (RuntimeException e) {
+					CALCULATION_FAILURES.increment();
+					log.warn("Skipping " + trade.getSymbol() + ": " + e, e);
+				}
+			}
+			List<AnnualizedReturn> list = selection.toList();
+			ASYNC_LATENCY.recordSince(start);
+			return list;
+		});
+	}
+
+	@Override
+	public List<AnnualizedReturn> calculateAnnualizedReturn(TradeBook trades, LocalDate endDate,
+			Ranking ranking) {
+		return Futures.join(calculateAnnualizedReturnAsync(trades, endDate, ranking));
+	}
+
+	@Override
+	public CompletableFuture<List<AnnualizedReturn>> calculateAnnualizedReturnAsync(TradeBook trades,
+			LocalDate endDate, Ranking ranking) {
+		long start = System.nanoTime();
+		RankedSelection<AnnualizedReturn> selection = ranking.newSelection(getComparator());
+		CompletableFuture<?>[] pending = new CompletableFuture<?>[trades.getSymbolCount()];
+		for (int symbolId = 0; symbolId < pending.length; symbolId++) {
+			int id = symbolId;
+			pending[id] = getBookQuotesAsync(trades, id, endDate).thenAccept(candles ->
+					priceLots(trades, id, candles, endDate, selection)).exceptionally(failure -> {
+				Throwable cause = Futures.unwrap(failure);
+				CALCULATION_FAILURES.add(trades.getLotCount(id));
+				log.warn("Skipping " + trades.getSymbolById(id) + ": " + cause, cause);
+				return null;
+			});
+		}
+		return CompletableFuture.allOf(pending).thenApply(ignored -> {
+			List<AnnualizedReturn> list = selection.toList();
+			BOOK_LATENCY.recordSince(start);
+			return list;
+		});
+	}
+
+	/** Candles enough to price every lot of one symbol of a trade book, as in getReturnQuotesAsync. */
+	private CompletableFuture<CandleSeries> getBookQuotesAsync(TradeBook trades, int symbolId,
+			LocalDate endDate) {
+		String symbol = trades.getSymbolById(symbolId);
+		if (maxEndpointWindows >= 2) {
+			return EndpointWindows.forLots(trades, symbolId, endDate, maxEndpointWindows)
+					.fetch(symbol, this::getCandleSeriesAsync);
+		}
+		int earliest = Integer.MAX_VALUE;
+		for (int k = 0; k < trades.getLotCount(symbolId); k++) {
+			earliest = Math.min(earliest, trades.getEpochDay(trades.getLot(symbolId, k)));
+		}
+		return getCandleSeriesAsync(symbol, LocalDate.ofEpochDay(earliest), endDate);
+	}
+
+	/**
+	 * Prices every lot of one symbol of a trade book and offers it at its position in the book.
+	 * The sell price is looked up once, and the symbol fails as a whole, before anything is
+	 * offered, if some lot has no trading day to buy at.
+	 */
+	private static void priceLots(TradeBook trades, int symbolId, CandleSeries candles,
+			LocalDate endDate, RankedSelection<AnnualizedReturn> selection) {
+		int sellIndex = candles.indexAtOrBefore(endDate);
+		if (sellIndex < 0) {
+			throw new RuntimeException("No trading day on or before " + endDate);
+		}
+		int lots = trades.getLotCount(symbolId);
+		int latest = Integer.MIN_VALUE;
+		for (int k = 0; k < lots; k++) {
+			latest = Math.max(latest, trades.getEpochDay(trades.getLot(symbolId, k)));
+		}
+		if (candles.indexAtOrAfter(LocalDate.ofEpochDay(latest)) < 0) {
+			throw new RuntimeException("No trading day on or after " + LocalDate.ofEpochDay(latest));
+		}
+		String symbol = trades.getSymbolById(symbolId);
+		double sellPrice = candles.getClose(sellIndex);
+		long endDay = endDate.toEpochDay();
+		for (int k = 0; k < lots; k++) {
+			int lot = trades.getLot(symbolId, k);
+			int purchaseDay = trades.getEpochDay(lot);
+			double buyPrice = candles.getOpen(candles.indexAtOrAfter(LocalDate.ofEpochDay(purchaseDay)));
+			selection.offer(annualizedReturn(symbol, endDay - purchaseDay, buyPrice, sellPrice), lot);
+		}
+		TRADES_PRICED.mark(lots);
+	}
+
+	@Override
+	public CompletableFuture<Long> streamAnnualizedReturn(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate, Consumer<? super AnnualizedReturn> onResult) {
+		long start = System.nanoTime();
+		Map<String, List<PortfolioTrade>> lots = new HashMap<>();
+		for (PortfolioTrade trade : portfolioTrades) {
+			lots.computeIfAbsent(trade.getSymbol(), symbol -> new ArrayList<>()).add(trade);
+		}
+
+		CompletableFuture<Long> done = new CompletableFuture<>();
+		AtomicLong emitted = new AtomicLong();
+		Object emitting = new Object();
+		List<CompletableFuture<?>> pending = new ArrayList<>();
+		Map<String, EndpointWindows> windows = planEndpointWindows(portfolioTrades, endDate);
+		for (Map.Entry<String, LocalDate> request : planQuoteRequests(portfolioTrades).entrySet()) {
+			String symbol = request.getKey();
+			CompletableFuture<CandleSeries> fetched =
+					getReturnQuotesAsync(symbol, request.getValue(), endDate, windows);
+			pending.add(fetched.handle((candles, failure) -> {
+				if (failure != null) {
+					Throwable cause = Futures.unwrap(failure);
+					CALCULATION_FAILURES.add(lots.get(symbol).size());
+					log.warn("Skipping " + symbol + ": " + cause, cause);
+					return null;
+				}
+				List<AnnualizedReturn> priced = new ArrayList<>(lots.get(symbol).size());
+				for (PortfolioTrade trade : lots.get(symbol)) {
+					try {
+						priced.add(priceTrade(trade, candles, endDate));
+					} catch (RuntimeException e) {
+						CALCULATION_FAILURES.increment();
+						log.warn("Skipping " + symbol + ": " + e, e);
+					}
+				}
+				// One symbol at a time, so the callback never runs concurrently with itself.
+				synchronized (emitting) {
+					for (AnnualizedReturn annualizedReturn : priced) {
+						if (done.isDone()) {
+							return null;
+						}
+						try {
+							onResult.accept(annualizedReturn);
+							emitted.incrementAndGet();
+						} catch (RuntimeException e) {
+							done.completeExceptionally(e);
+						}
+					}
+				}
+				return null;
+			}));
+		}
+
+		CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, failure) -> {
+			STREAM_LATENCY.recordSince(start);
+			if (failure != null) {
+				done.completeExceptionally(Futures.unwrap(failure));
+			}
+			done.complete(emitted.get());
+		});
+		return done;
+	}
+
+	@Override
+	public PortfolioReturns calculatePortfolioReturns(List<PortfolioTrade> portfolioTrades,
+			LocalDate endDate) {
+		long start = System.nanoTime();
+		Map<String, CandleSeries> quotes = new HashMap<>();
+		for (Map.Entry<String, LocalDate> request : planQuoteRequests(portfolioTrades).entrySet()) {
+			try {
+				quotes.put(request.getKey(), getCandleSeries(request.getKey(), request.getValue(), endDate));
+			} catch (RuntimeException e) {
+				// Its lots are counted and skipped below.
+				log.warn("Skipping " + request.getKey() + ": " + e, e);
+			}
+		}
+
+		List<AnnualizedReturn> list = new ArrayList<>(portfolioTrades.size());
+		PortfolioAccumulator totals = new PortfolioAccumulator();
+		int priced = 0;
+		for (PortfolioTrade trade : portfolioTrades) {
+			CandleSeries candles = quotes.get(trade.getSymbol());
+			if (candles == null) {
+				CALCULATION_FAILURES.increment();
+				continue;
+			}
+			int buyIndex = candles.indexAtOrAfter(trade.getPurchaseDate());
+			int sellIndex = candles.indexAtOrBefore(endDate);
+			if (buyIndex < 0 || sellIndex < 0) {
+				CALCULATION_FAILURES.increment();
+				log.warn("Skipping " + trade.getSymbol() + ": no trading days between "
+						+ trade.getPurchaseDate() + " and " + endDate);
+				continue;
+			}
+			double buyPrice = candles.getOpen(buyIndex);
+			double sellPrice = candles.getClose(sellIndex);
+			AnnualizedReturn annualizedReturn = calculateAnnualizedReturns(endDate, trade, buyPrice, sellPrice);
+			if (totals.add(trade, buyPrice, sellPrice, annualizedReturn.getAnnualizedReturn())) {
+				list.add(annualizedReturn);
+			}
+			priced++;
+		}
+		TRADES_PRICED.mark(priced);
+		list.sort(getComparator());
+		PORTFOLIO_LATENCY.recordSince(start);
+		return totals.toReturns(list);
+	}
+
+	@Override
+	public double calculateXirr(List<PortfolioTrade> portfolioTrades, LocalDate endDate) {
+		long start = System.nanoTime();
+		Map<String, CandleSeries> quotes = new HashMap<>();
+		for (Map.Entry<String, LocalDate> request : planQuoteRequests(portfolioTrades).entrySet()) {
+			try {
+				quotes.put(request.getKey(), getCandleSeries(request.getKey(), request.getValue(), endDate));
+			} catch (RuntimeException e) {
+				log.warn("Skipping " + request.getKey() + ": " + e, e);
+			}
+		}
+		countUnfetchedLots(portfolioTrades, quotes);
+		double xirr = PortfolioCashFlows.xirr(portfolioTrades, quotes, endDate);
+		XIRR_LATENCY.recordSince(start);
+		return xirr;
+	}
+
+	@Override
+	public ReturnSweep calculateAnnualizedReturnSweep(List<PortfolioTrade> portfolioTrades,
+			LocalDate from, LocalDate to) {
+		if (to.isBefore(from)) {
+			throw new IllegalArgumentException("Sweep ends before it starts: " + from + " to " + to);
+		}
+		long start = System.nanoTime();
+		Map<String, CandleSeries> quotes = new HashMap<>();
+		for (Map.Entry<String, LocalDate> request : planQuoteRequests(portfolioTrades).entrySet()) {
+			try {
+				// From the sweep's start at the latest, so that every day of the range is on the axis.
+				LocalDate fetchFrom = request.getValue().isAfter(from) ? from : request.getValue();
+				quotes.put(request.getKey(), getCandleSeries(request.getKey(), fetchFrom, to));
+			} catch (RuntimeException e) {
+				log.warn("Skipping " + request.getKey() + ": " + e, e);
+			}
+		}
+		countUnfetchedLots(portfolioTrades, quotes);
+		ReturnSweep sweep = ReturnSweeps.sweep(portfolioTrades, quotes, from, to);
+		TRADES_PRICED.mark((long) sweep.getLotCount() * sweep.getDayCount());
+		SWEEP_LATENCY.recordSince(start);
+		return sweep;
+	}
+
+	@Override
+	public IncrementalAnnualizedReturns trackAnnualizedReturn(List<PortfolioTrade> portfolioTrades) {
+		return new IncrementalAnnualizedReturns(this, portfolioTrades);
+	}
+
+	/** Counts the lots of every symbol missing from {@code quotes} because its fetch failed. */
+	private static void countUnfetchedLots(List<PortfolioTrade> portfolioTrades,
+			Map<String, CandleSeries> quotes) {
+		long lots = 0;
+		for (PortfolioTrade trade : portfolioTrades) {
+			if (!quotes.containsKey(trade.getSymbol())) {
+				lots++;
+			}
+		}
+		CALCULATION_FAILURES.add(lots);
+	}
+
+	/**
+	 * Groups the trades by symbol so that every symbol is fetched once, from the earliest purchase
+	 * date of any of its lots. Iteration order follows the first occurrence in the portfolio.
+	 */
+	static Map<String, LocalDate> planQuoteRequests(List<PortfolioTrade> portfolioTrades) {
+		Map<String, LocalDate> plan = new LinkedHashMap<>();
+		addQuoteRequests(plan, portfolioTrades);
+		return plan;
+	}
+
+	/** Widens {@code plan} so that it also covers every lot of {@code portfolioTrades}. */
+	static void addQuoteRequests(Map<String, LocalDate> plan, List<PortfolioTrade> portfolioTrades) {
+		for (PortfolioTrade trade : portfolioTrades) {
+			plan.merge(trade.getSymbol(), trade.getPurchaseDate(),
+					(current, candidate) -> candidate.isBefore(current) ? candidate : current);
+		}
+	}
+
+	/**
+	 * Prices one lot from a series shared by every lot of the same symbol, so the buy price is
+	 * looked up at the lot's own purchase date rather than at the start of the series. Both lookups
+	 * go through the series' date index, so the cost does not grow with the holding period, and
+	 * the series is built once per symbol rather than once per lot.
+	 */
+	static AnnualizedReturn priceTrade(PortfolioTrade trade, CandleSeries candles, LocalDate endDate) {
+		int buyIndex = candles.indexAtOrAfter(trade.getPurchaseDate());
+		if (buyIndex < 0) {
+			throw new RuntimeException("No trading day on or after " + trade.getPurchaseDate());
+		}
+		int sellIndex = candles.indexAtOrBefore(endDate);
+		if (sellIndex < 0) {
+			throw new RuntimeException("No trading day on or before " + endDate);
+		}
+		TRADES_PRICED.mark();
+		return calculateAnnualizedReturns(endDate, trade, candles.getOpen(buyIndex),
+				candles.getClose(sellIndex));
+	}
+
 	public static AnnualizedReturn calculateAnnualizedReturns(LocalDate endDate,
 			PortfolioTrade trade, Double buyPrice, Double sellPrice) {
 
-		Double totalReturns = (sellPrice - buyPrice) / buyPrice;
-
-		LocalDate currentDate = trade.getPurchaseDate(); 
-		double year = currentDate.until(endDate, ChronoUnit.DAYS)/365.24;
+		return annualizedReturn(trade.getSymbol(), trade.getPurchaseDate().until(endDate, ChronoUnit.DAYS),
+				buyPrice, sellPrice);
+	}
 
-		Double annualizedReturn = Math.pow(1+totalReturns, 1.0/year) - 1;
-		return new AnnualizedReturn(trade.getSymbol(), annualizedReturn, totalReturns);
+	/** The return formula behind {@link #calculateAnnualizedReturns}, over primitives. */
+	static AnnualizedReturn annualizedReturn(String symbol, long holdingDays, double buyPrice,
+			double sellPrice) {
+		double totalReturns = (sellPrice - buyPrice) / buyPrice;
+		double year = holdingDays / 365.24;
+		double annualizedReturn = Math.pow(1 + totalReturns, 1.0 / year) - 1;
+		return new AnnualizedReturn(symbol, annualizedReturn, totalReturns);
 	}
 
 
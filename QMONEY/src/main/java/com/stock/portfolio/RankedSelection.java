@@ -0,0 +1,99 @@
+package com.stock.portfolio;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the part of a ranking chosen by a {@link Ranking}, as results arrive from any number
+ * of threads.
+ *
+ * <p>Each result is offered with its position in the input, and ties in {@code order} are broken
+ * by that position, so the selection and its order are exactly those of a stable sort of the
+ * whole input, whatever order the results arrive in. A bounded selection keeps a heap whose root
+ * is the entry it would drop next: the worst kept entry for {@link Ranking#top} and the best for
+ * {@link Ranking#bottom}.
+ */
+public final class RankedSelection<T> {
+
+  private static final class Entry<T> {
+    final T value;
+    final long position;
+
+    Entry(T value, long position) {
+      this.value = value;
+      this.position = position;
+    }
+  }
+
+  private final Comparator<Entry<T>> ranked;
+  private final Ranking.Side side;
+  private final int limit;
+  private final List<Entry<T>> all;
+  private final PriorityQueue<Entry<T>> heap;
+  private long offered;
+
+  RankedSelection(Comparator<? super T> order, Ranking.Side side, int limit) {
+    Comparator<Entry<T>> byValue = (a, b) -> order.compare(a.value, b.value);
+    this.ranked = byValue.thenComparingLong(entry -> entry.position);
+    this.side = side;
+    this.limit = limit;
+    if (side == Ranking.Side.ALL) {
+      this.all = new ArrayList<>();
+      this.heap = null;
+    } else {
+      this.all = null;
+      this.heap = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+          side == Ranking.Side.TOP ? ranked.reversed() : ranked);
+    }
+  }
+
+  /**
+   * Offers {@code value}, the {@code position}-th result of the input. Positions should be
+   * distinct for the order of ties to be defined.
+   */
+  public synchronized void offer(T value, long position) {
+    offered++;
+    Entry<T> entry = new Entry<>(value, position);
+    if (all != null) {
+      all.add(entry);
+    } else if (heap.size() < limit) {
+      heap.add(entry);
+    } else if (heap.comparator().compare(entry, heap.peek()) > 0) {
+      // Kept only if it ranks ahead of the root in the direction being kept.
+      heap.poll();
+      heap.add(entry);
+    }
+  }
+
+  /** Offers {@code value} as the next result after every value offered so far. */
+  public synchronized void offer(T value) {
+    offer(value, offered);
+  }
+
+  /** Results offered so far, kept or not. */
+  public synchronized long getOfferedCount() {
+    return offered;
+  }
+
+  /** The selected results, in ranking order. */
+  public synchronized List<T> toList() {
+    List<Entry<T>> entries = new ArrayList<>(all != null ? all : heap);
+    entries.sort(ranked);
+    List<T> values = new ArrayList<>(entries.size());
+    for (Entry<T> entry : entries) {
+      values.add(entry.value);
+    }
+    return values;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "RankedSelection{side=" + side
+        + ", limit=" + limit
+        + ", offered=" + offered
+        + ", kept=" + (all != null ? all.size() : heap.size())
+        + '}';
+  }
+}
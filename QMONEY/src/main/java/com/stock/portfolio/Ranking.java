@@ -0,0 +1,103 @@
+package com.stock.portfolio;
+
+import java.util.Comparator;
+
+/**
+ * Which part of a ranked result to keep: all of it, the first {@code k} or the last {@code k}.
+ * Both bounded forms select with a heap of {@code k} entries as results arrive, so they take
+ * O(k) memory and O(n log k) time however many positions are ranked.
+ */
+public final class Ranking {
+
+  private static final Ranking ALL = new Ranking(Side.ALL, Integer.MAX_VALUE);
+
+  enum Side {
+    ALL, TOP, BOTTOM
+  }
+
+  private final Side side;
+  private final int limit;
+
+  private Ranking(Side side, int limit) {
+    this.side = side;
+    this.limit = limit;
+  }
+
+  public static Ranking all() {
+    return ALL;
+  }
+
+  /** The {@code k} best positions, best first. */
+  public static Ranking top(int k) {
+    return new Ranking(Side.TOP, checkLimit(k));
+  }
+
+  /** The {@code k} worst positions, in the same order as in the full ranking, so worst last. */
+  public static Ranking bottom(int k) {
+    return new Ranking(Side.BOTTOM, checkLimit(k));
+  }
+
+  /**
+   * Parses {@code all}, {@code top:K} or {@code bottom:K}, as given on the command line.
+   *
+   * @throws IllegalArgumentException if {@code spec} is none of these
+   */
+  public static Ranking parse(String spec) {
+    if ("all".equalsIgnoreCase(spec)) {
+      return ALL;
+    }
+    int colon = spec.indexOf(':');
+    String side = colon < 0 ? spec : spec.substring(0, colon);
+    try {
+      if (colon > 0 && "top".equalsIgnoreCase(side)) {
+        return top(Integer.parseInt(spec.substring(colon + 1)));
+      }
+      if (colon > 0 && "bottom".equalsIgnoreCase(side)) {
+        return bottom(Integer.parseInt(spec.substring(colon + 1)));
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid ranking " + spec, e);
+    }
+    throw new IllegalArgumentException("Invalid ranking " + spec
+        + ", expected all, top:K or bottom:K");
+  }
+
+  private static int checkLimit(int k) {
+    if (k < 1) {
+      throw new IllegalArgumentException("k must be at least 1, was " + k);
+    }
+    return k;
+  }
+
+  /** A new, empty selection of the part of {@code order} this ranking keeps. */
+  public <T> RankedSelection<T> newSelection(Comparator<? super T> order) {
+    return new RankedSelection<>(order, side, limit);
+  }
+
+  public boolean isBounded() {
+    return side != Side.ALL;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof Ranking)) {
+      return false;
+    }
+    Ranking other = (Ranking) obj;
+    return side == other.side && limit == other.limit;
+  }
+
+  @Override
+  public int hashCode() {
+    return side.hashCode() * 31 + limit;
+  }
+
+  @Override
+  public String toString() {
+    return side == Side.ALL ? "all" : side.name().toLowerCase() + ":" + limit;
+  }
+}
@@ -0,0 +1,90 @@
+package com.stock.portfolio;
+
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.ReturnSweep;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes a {@link ReturnSweep} from already fetched series. Every lot is priced with the same
+ * formula as {@link PortfolioManagerImpl#calculateAnnualizedReturns}, walking its series once in
+ * step with the end dates, so the cost is linear in lots times days.
+ */
+final class ReturnSweeps {
+
+  private ReturnSweeps() {
+  }
+
+  /**
+   * @param quotes series per symbol covering {@code from}, or each lot's purchase if earlier,
+   *     through {@code to}; lots whose symbol is missing get NaN returns
+   */
+  static ReturnSweep sweep(List<PortfolioTrade> trades, Map<String, CandleSeries> quotes,
+      LocalDate from, LocalDate to) {
+    int[] days = tradingDays(quotes, from, to);
+    String[] symbols = new String[trades.size()];
+    double[] annualized = new double[trades.size() * days.length];
+    double[] total = new double[annualized.length];
+    Arrays.fill(annualized, Double.NaN);
+    Arrays.fill(total, Double.NaN);
+
+    for (int lot = 0; lot < trades.size(); lot++) {
+      PortfolioTrade trade = trades.get(lot);
+      symbols[lot] = trade.getSymbol();
+      CandleSeries candles = quotes.get(trade.getSymbol());
+      int buyIndex = candles == null ? -1 : candles.indexAtOrAfter(trade.getPurchaseDate());
+      if (buyIndex < 0) {
+        continue;
+      }
+      double buyPrice = candles.getOpen(buyIndex);
+      long purchaseDay = trade.getPurchaseDate().toEpochDay();
+      int row = lot * days.length;
+      // The last candle on or before each end date, advanced monotonically with the dates.
+      int sell = buyIndex;
+      for (int day = 0; day < days.length; day++) {
+        if (days[day] < candles.getEpochDay(buyIndex)) {
+          continue;
+        }
+        while (sell + 1 < candles.size() && candles.getEpochDay(sell + 1) <= days[day]) {
+          sell++;
+        }
+        double totalReturn = (candles.getClose(sell) - buyPrice) / buyPrice;
+        double years = (days[day] - purchaseDay) / 365.24;
+        total[row + day] = totalReturn;
+        annualized[row + day] = Math.pow(1 + totalReturn, 1.0 / years) - 1;
+      }
+    }
+    return new ReturnSweep(symbols, days, annualized, total);
+  }
+
+  /** Every date in {@code [from, to]} on which any of the series has a candle, ascending. */
+  static int[] tradingDays(Map<String, CandleSeries> quotes, LocalDate from, LocalDate to) {
+    int count = 0;
+    CandleSeries[] windows = new CandleSeries[quotes.size()];
+    for (CandleSeries series : quotes.values()) {
+      windows[count++] = series.between(from, to);
+    }
+    int total = 0;
+    for (CandleSeries window : windows) {
+      total += window.size();
+    }
+    int[] days = new int[total];
+    int next = 0;
+    for (CandleSeries window : windows) {
+      for (int i = 0; i < window.size(); i++) {
+        days[next++] = window.getEpochDay(i);
+      }
+    }
+    Arrays.sort(days);
+    int distinct = 0;
+    for (int i = 0; i < days.length; i++) {
+      if (distinct == 0 || days[i] != days[distinct - 1]) {
+        days[distinct++] = days[i];
+      }
+    }
+    return Arrays.copyOf(days, distinct);
+  }
+}
@@ -0,0 +1,191 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Internal rate of return of irregularly dated cash flows: the annual rate {@code r} at which
+ * {@code sum(amount / (1 + r) ^ years)} is zero, with {@code years} counted in 365-day years from
+ * the earliest flow, the convention of {@code org.decampo.xirr.Xirr}.
+ *
+ * <p>Newton's method is tried first. If it leaves the domain {@code r > -1}, hits a flat spot or
+ * does not converge within the iteration limit, the root is bracketed and found by bisection.
+ *
+ * <p>Flows are kept in primitive arrays that are reused after {@link #reset()}, so a solver that
+ * has seen its largest portfolio allocates nothing more. It is not thread-safe; use one per
+ * thread.
+ */
+public final class XirrSolver {
+
+  public static final double DAYS_PER_YEAR = 365.0;
+  public static final double DEFAULT_GUESS = 0.1;
+  public static final double DEFAULT_TOLERANCE = 1e-10;
+  public static final int DEFAULT_MAX_ITERATIONS = 50;
+
+  private static final int MAX_BISECTIONS = 200;
+  private static final int MAX_BRACKET_EXPANSIONS = 60;
+
+  private final double tolerance;
+  private final int maxIterations;
+
+  private double[] amounts = new double[16];
+  private long[] days = new long[16];
+  private int size;
+  private long firstDay;
+  private int iterations;
+
+  public XirrSolver() {
+    this(DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+  }
+
+  /**
+   * @param tolerance relative change in the rate below which the solution is accepted
+   * @param maxIterations Newton steps before falling back to bisection
+   */
+  public XirrSolver(double tolerance, int maxIterations) {
+    if (!(tolerance > 0)) {
+      throw new IllegalArgumentException("tolerance must be positive, was " + tolerance);
+    }
+    if (maxIterations < 0) {
+      throw new IllegalArgumentException("maxIterations must not be negative, was "
+          + maxIterations);
+    }
+    this.tolerance = tolerance;
+    this.maxIterations = maxIterations;
+  }
+
+  /** Drops all flows, keeping the arrays for the next evaluation. */
+  public XirrSolver reset() {
+    size = 0;
+    return this;
+  }
+
+  /** Adds a flow; negative amounts are paid out, e.g. purchases, positive ones received. */
+  public XirrSolver add(double amount, LocalDate date) {
+    return add(amount, date.toEpochDay());
+  }
+
+  public XirrSolver add(double amount, long epochDay) {
+    if (size == amounts.length) {
+      amounts = Arrays.copyOf(amounts, size * 2);
+      days = Arrays.copyOf(days, size * 2);
+    }
+    if (size == 0 || epochDay < firstDay) {
+      firstDay = epochDay;
+    }
+    amounts[size] = amount;
+    days[size] = epochDay;
+    size++;
+    return this;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Newton steps and bisections taken by the last {@link #solve}. */
+  public int getIterations() {
+    return iterations;
+  }
+
+  public double solve() {
+    return solve(DEFAULT_GUESS);
+  }
+
+  /**
+   * Solves from {@code guess}.
+   *
+   * @return the rate, or NaN if there is none, e.g. because every flow has the same sign
+   */
+  public double solve(double guess) {
+    iterations = 0;
+    if (!hasBothSigns()) {
+      return Double.NaN;
+    }
+    double rate = guess > -1 ? guess : DEFAULT_GUESS;
+    while (iterations < maxIterations) {
+      iterations++;
+      double growth = Math.log1p(rate);
+      double value = 0;
+      double slope = 0;
+      for (int i = 0; i < size; i++) {
+        double years = (days[i] - firstDay) / DAYS_PER_YEAR;
+        double discounted = amounts[i] * Math.exp(-years * growth);
+        value += discounted;
+        slope -= years * discounted;
+      }
+      slope /= 1 + rate;
+      if (value == 0) {
+        return rate;
+      }
+      double next = rate - value / slope;
+      if (!(next > -1) || Double.isInfinite(next)) {
+        break;
+      }
+      if (Math.abs(next - rate) <= tolerance * Math.max(1, Math.abs(next))) {
+        return next;
+      }
+      rate = next;
+    }
+    return bisect();
+  }
+
+  /** Net present value of the flows at {@code rate}, as of the earliest flow. */
+  public double npv(double rate) {
+    double growth = Math.log1p(rate);
+    double value = 0;
+    for (int i = 0; i < size; i++) {
+      value += amounts[i] * Math.exp(-(days[i] - firstDay) / DAYS_PER_YEAR * growth);
+    }
+    return value;
+  }
+
+  private double bisect() {
+    double low = -0.99;
+    double high = 1;
+    double lowValue = npv(low);
+    double highValue = npv(high);
+    for (int i = 0; i < MAX_BRACKET_EXPANSIONS && sameSign(lowValue, highValue); i++) {
+      // Alternate between pushing the upper bound out and the lower bound towards -1.
+      if ((i & 1) == 0) {
+        high = high * 2 + 1;
+        highValue = npv(high);
+      } else {
+        low = -1 + (low + 1) / 10;
+        lowValue = npv(low);
+      }
+    }
+    if (sameSign(lowValue, highValue)) {
+      return Double.NaN;
+    }
+    for (int i = 0; i < MAX_BISECTIONS; i++) {
+      iterations++;
+      double middle = low + (high - low) / 2;
+      double middleValue = npv(middle);
+      if (middleValue == 0 || high - low <= tolerance * Math.max(1, Math.abs(middle))) {
+        return middle;
+      }
+      if (sameSign(middleValue, lowValue)) {
+        low = middle;
+        lowValue = middleValue;
+      } else {
+        high = middle;
+      }
+    }
+    return low + (high - low) / 2;
+  }
+
+  private static boolean sameSign(double a, double b) {
+    return (a > 0 && b > 0) || (a < 0 && b < 0) || Double.isNaN(a) || Double.isNaN(b);
+  }
+
+  private boolean hasBothSigns() {
+    boolean paid = false;
+    boolean received = false;
+    for (int i = 0; i < size; i++) {
+      paid |= amounts[i] < 0;
+      received |= amounts[i] > 0;
+    }
+    return paid && received;
+  }
+}
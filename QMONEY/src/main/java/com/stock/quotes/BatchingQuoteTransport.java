@@ -0,0 +1,288 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Collapses fetches of the current session's candle for many symbols into a few requests to
+ * Tiingo's multi-ticker IEX endpoint. Every other fetch, i.e. anything reaching back before today,
+ * goes to a per-symbol transport, since that endpoint has no history.
+ *
+ * <p>Session fetches arriving within {@code linger} of each other are queued and sent together,
+ * and a queue reaching {@code maxTickers} is sent at once. A queue is split into as few requests
+ * as fit {@code maxTickers} and {@code maxUrlLength}, each symbol is asked for once however many
+ * fetches wait on it, and every answer is demultiplexed back into one series per fetch. A symbol
+ * missing from the answer, or every symbol of a batch that fails, is fetched per symbol instead,
+ * so that an unknown ticker is still reported as an {@link UnknownSymbolException}.
+ *
+ * <p>A batch counts once against the quota of the scheduler. The per-symbol transport is paced by
+ * the same scheduler unless it is {@linkplain QuoteTransport#isPaced() paced} already.
+ */
+public class BatchingQuoteTransport implements QuoteTransport {
+
+  private static final Logger log = LogManager.getLogger(BatchingQuoteTransport.class);
+
+  public static final int DEFAULT_MAX_TICKERS = 100;
+  public static final int DEFAULT_MAX_URL_LENGTH = 2_000;
+  public static final Duration DEFAULT_LINGER = Duration.ofMillis(2);
+
+  /** Zone of the sessions Tiingo reports, deciding what "today" is. */
+  public static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        Thread thread = new Thread(runnable, "quote-batch-timer");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private static final class Request {
+    final String symbol;
+    final LocalDate from;
+    final LocalDate to;
+    final CompletableFuture<CandleSeries> future = new CompletableFuture<>();
+
+    Request(String symbol, LocalDate from, LocalDate to) {
+      this.symbol = symbol;
+      this.from = from;
+      this.to = to;
+    }
+  }
+
+  private final PooledHttpQuoteTransport http;
+  private final QuoteTransport perSymbol;
+  private final RequestScheduler scheduler;
+  private final int maxTickers;
+  private final int maxUrlLength;
+  private final long lingerNanos;
+  private final Clock clock;
+
+  private List<Request> queue = new ArrayList<>();
+  private ScheduledFuture<?> scheduledFlush;
+
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong batchedSymbols = new AtomicLong();
+  private final AtomicLong fallbacks = new AtomicLong();
+
+  public BatchingQuoteTransport(PooledHttpQuoteTransport http, QuoteTransport perSymbol,
+      RequestScheduler scheduler) {
+    this(http, perSymbol, scheduler, DEFAULT_MAX_TICKERS, DEFAULT_MAX_URL_LENGTH, DEFAULT_LINGER);
+  }
+
+  /**
+   * @param http client of the multi-ticker endpoint, usually the one behind {@code perSymbol}
+   * @param perSymbol transport for history and for symbols a batch cannot answer
+   * @param maxTickers most symbols per batch
+   * @param maxUrlLength longest batch URL, token included
+   * @param linger how long a session fetch waits for others to share its batch
+   */
+  public BatchingQuoteTransport(PooledHttpQuoteTransport http, QuoteTransport perSymbol,
+      RequestScheduler scheduler, int maxTickers, int maxUrlLength, Duration linger) {
+    this(http, perSymbol, scheduler, maxTickers, maxUrlLength, linger,
+        Clock.system(EXCHANGE_ZONE));
+  }
+
+  BatchingQuoteTransport(PooledHttpQuoteTransport http, QuoteTransport perSymbol,
+      RequestScheduler scheduler, int maxTickers, int maxUrlLength, Duration linger,
+      Clock clock) {
+    if (maxTickers < 1) {
+      throw new IllegalArgumentException("maxTickers must be at least 1, was " + maxTickers);
+    }
+    this.http = http;
+    this.perSymbol = perSymbol.isPaced() ? perSymbol
+        : new ThrottledQuoteTransport(perSymbol, scheduler);
+    this.scheduler = scheduler;
+    this.maxTickers = maxTickers;
+    this.maxUrlLength = maxUrlLength;
+    this.lingerNanos = linger.toNanos();
+    this.clock = clock;
+  }
+
+  @Override
+  public CompletableFuture<CandleSeries> fetchAsync(String symbol, LocalDate from, LocalDate to) {
+    if (!isBatchable(from, to)) {
+      return perSymbol.fetchAsync(symbol, from, to);
+    }
+    return enqueue(symbol, from, to).future;
+  }
+
+  /** Sends the fetch at once, with whatever is queued, rather than waiting out the linger. */
+  @Override
+  public CandleSeries fetch(String symbol, LocalDate from, LocalDate to) {
+    if (!isBatchable(from, to)) {
+      return perSymbol.fetch(symbol, from, to);
+    }
+    Request request = enqueue(symbol, from, to);
+    flush();
+    return Futures.join(request.future);
+  }
+
+  /** True if {@code [from, to]} lies within the current session, or after it. */
+  boolean isBatchable(LocalDate from, LocalDate to) {
+    return !to.isBefore(from) && !from.isBefore(LocalDate.now(clock));
+  }
+
+  private Request enqueue(String symbol, LocalDate from, LocalDate to) {
+    Request request = new Request(symbol, from, to);
+    List<Request> full = null;
+    synchronized (this) {
+      queue.add(request);
+      if (queue.size() >= maxTickers) {
+        full = drain();
+      } else if (scheduledFlush == null) {
+        scheduledFlush = TIMER.schedule(this::flush, lingerNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+    if (full != null) {
+      send(full);
+    }
+    return request;
+  }
+
+  private synchronized List<Request> drain() {
+    List<Request> drained = queue;
+    queue = new ArrayList<>();
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return drained;
+  }
+
+  /** Sends every queued fetch now. */
+  public void flush() {
+    List<Request> drained = drain();
+    if (!drained.isEmpty()) {
+      send(drained);
+    }
+  }
+
+  private void send(List<Request> requests) {
+    Map<String, List<Request>> bySymbol = new LinkedHashMap<>();
+    for (Request request : requests) {
+      bySymbol.computeIfAbsent(request.symbol.toUpperCase(Locale.ROOT), key -> new ArrayList<>())
+          .add(request);
+    }
+    for (List<String> batch : split(new ArrayList<>(bySymbol.keySet()))) {
+      List<String> tickers = new ArrayList<>(batch.size());
+      for (String key : batch) {
+        tickers.add(bySymbol.get(key).get(0).symbol);
+      }
+      batches.incrementAndGet();
+      batchedSymbols.addAndGet(batch.size());
+      QuoteMetrics.BATCHES.increment();
+      QuoteMetrics.BATCHED_SYMBOLS.add(batch.size());
+      scheduler.executeAsync(() -> http.getAsync(http.topOfBookUri(tickers),
+          TiingoResponseParser::parseTopOfBook)).whenComplete((quotes, failure) -> {
+            if (failure != null) {
+              log.warn("Batch of " + batch.size() + " tickers failed, fetching them one by one: "
+                  + Futures.unwrap(failure));
+            }
+            for (String key : batch) {
+              CandleSeries latest = failure == null ? quotes.get(key) : null;
+              for (Request request : bySymbol.get(key)) {
+                if (latest == null) {
+                  fallBack(request);
+                } else {
+                  request.future.complete(latest.between(request.from, request.to));
+                }
+              }
+            }
+          });
+    }
+  }
+
+  /** Packs {@code keys} in order into as few batches as fit the ticker and URL limits. */
+  List<List<String>> split(List<String> keys) {
+    int emptyLength = http.topOfBookUri(Collections.<String>emptyList()).length();
+    List<List<String>> split = new ArrayList<>();
+    List<String> batch = new ArrayList<>();
+    int length = emptyLength;
+    for (String key : keys) {
+      int added = batch.isEmpty() ? key.length() : key.length() + 1;
+      if (!batch.isEmpty() && (batch.size() >= maxTickers || length + added > maxUrlLength)) {
+        split.add(batch);
+        batch = new ArrayList<>();
+        length = emptyLength;
+        added = key.length();
+      }
+      batch.add(key);
+      length += added;
+    }
+    if (!batch.isEmpty()) {
+      split.add(batch);
+    }
+    return split;
+  }
+
+  private void fallBack(Request request) {
+    fallbacks.incrementAndGet();
+    QuoteMetrics.BATCH_FALLBACKS.increment();
+    CompletableFuture<CandleSeries> candles;
+    try {
+      candles = perSymbol.fetchAsync(request.symbol, request.from, request.to);
+    } catch (RuntimeException e) {
+      candles = Futures.failed(e);
+    }
+    candles.whenComplete((series, failure) -> {
+      if (failure == null) {
+        request.future.complete(series);
+      } else {
+        request.future.completeExceptionally(Futures.unwrap(failure));
+      }
+    });
+  }
+
+  @Override
+  public boolean isPaced() {
+    return true;
+  }
+
+  /** Multi-ticker requests sent. */
+  public long getBatchCount() {
+    return batches.get();
+  }
+
+  /** Symbols asked for in all batches together. */
+  public long getBatchedSymbolCount() {
+    return batchedSymbols.get();
+  }
+
+  /** Fetches a batch could not answer and that went per symbol instead. */
+  public long getFallbackCount() {
+    return fallbacks.get();
+  }
+
+  /** Sends what is still queued, then closes both transports. */
+  @Override
+  public void close() {
+    flush();
+    perSymbol.close();
+    http.close();
+  }
+
+  @Override
+  public String toString() {
+    return "BatchingQuoteTransport{batches=" + batches
+        + ", symbols=" + batchedSymbols
+        + ", fallbacks=" + fallbacks
+        + '}';
+  }
+}
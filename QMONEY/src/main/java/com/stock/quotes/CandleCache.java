@@ -0,0 +1,245 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import com.stock.metrics.Counter;
+import com.stock.metrics.MetricsRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache of daily candles, keyed by symbol.
+ *
+ * <p>Each symbol holds a few disjoint date ranges together with the candles inside them, so that
+ * the short endpoint windows of a symbol, years apart, are all kept. A request that is fully
+ * inside one cached range is answered without a fetch; otherwise only the days of the request no
+ * range holds are fetched, never the gaps between the request and ranges apart from it, and the
+ * request is merged with every range it overlaps or is next to. Past {@value #MAX_RANGES} ranges
+ * the shortest are dropped. Today is never recorded as covered because its candle is not final
+ * until the market closes.
+ *
+ * <p>The cache is bounded by the total number of candles held; once over the limit, the least
+ * recently used symbols are evicted. Symbols the provider reports as unknown are remembered for a
+ * while so that repeated lookups fail fast.
+ *
+ * <p>Thread-safe. Fetches happen outside the lock, so two threads missing on the same symbol at
+ * the same time may both fetch; each result is merged under the lock with whatever the symbol
+ * holds by then, so a narrower result never replaces a wider one.
+ */
+public class CandleCache {
+
+  public static final int DEFAULT_MAX_CANDLES = 1_000_000;
+  public static final Duration DEFAULT_NEGATIVE_TTL = Duration.ofHours(1);
+  /** Ranges kept per symbol; a few endpoint windows and a whole history fit. */
+  static final int MAX_RANGES = 16;
+
+  /**
+   * Fetches the candles of {@code symbol} for the inclusive range {@code [from, to]}, in date
+   * order.
+   */
+  @FunctionalInterface
+  public interface Loader {
+    CandleSeries load(String symbol, LocalDate from, LocalDate to);
+  }
+
+  /** Asynchronous counterpart of {@link Loader}. */
+  @FunctionalInterface
+  public interface AsyncLoader {
+    CompletableFuture<CandleSeries> load(String symbol, LocalDate from, LocalDate to);
+  }
+
+  // Totals over every cache instance, published with the other metrics.
+  private static final Counter GLOBAL_HITS = MetricsRegistry.global().counter("cache.hits");
+  private static final Counter GLOBAL_MISSES = MetricsRegistry.global().counter("cache.misses");
+  private static final Counter GLOBAL_NEGATIVE_HITS =
+      MetricsRegistry.global().counter("cache.negativeHits");
+  private static final Counter GLOBAL_EVICTIONS =
+      MetricsRegistry.global().counter("cache.evictions");
+
+  private final int maxCandles;
+  private final long negativeTtlMillis;
+  private final Clock clock;
+
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Long> unknownSymbols = new HashMap<>();
+  private long size;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong negativeHits = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public CandleCache() {
+    this(DEFAULT_MAX_CANDLES, DEFAULT_NEGATIVE_TTL);
+  }
+
+  public CandleCache(int maxCandles, Duration negativeTtl) {
+    this(maxCandles, negativeTtl, Clock.systemDefaultZone());
+  }
+
+  CandleCache(int maxCandles, Duration negativeTtl, Clock clock) {
+    if (maxCandles < 0) {
+      throw new IllegalArgumentException("maxCandles must not be negative, was " + maxCandles);
+    }
+    this.maxCandles = maxCandles;
+    this.negativeTtlMillis = negativeTtl.toMillis();
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the candles of {@code symbol} for {@code [from, to]}, fetching through
+   * {@code loader} only the part of the range that is not cached yet.
+   *
+   * @throws UnknownSymbolException if the symbol was recently reported as unknown, or the loader
+   *     reports it now
+   */
+  public CandleSeries get(String symbol, LocalDate from, LocalDate to, Loader loader) {
+    return Futures.join(getAsync(symbol, from, to, (s, f, t) -> {
+      try {
+        return CompletableFuture.completedFuture(loader.load(s, f, t));
+      } catch (RuntimeException e) {
+        return Futures.failed(e);
+      }
+    }));
+  }
+
+  /**
+   * Asynchronous form of {@link #get}. A hit completes immediately; otherwise the missing parts
+   * are loaded concurrently and merged when all have arrived.
+   */
+  public CompletableFuture<CandleSeries> getAsync(String symbol, LocalDate from, LocalDate to,
+      AsyncLoader loader) {
+    Entry cached;
+    synchronized (this) {
+      Long unknownSince = unknownSymbols.get(symbol);
+      if (unknownSince != null) {
+        if (clock.millis() - unknownSince < negativeTtlMillis) {
+          negativeHits.incrementAndGet();
+          GLOBAL_NEGATIVE_HITS.increment();
+          return Futures.failed(new UnknownSymbolException(symbol));
+        }
+        unknownSymbols.remove(symbol);
+      }
+      cached = entries.get(symbol);
+    }
+
+    if (cached != null && cached.ranges.covers(from, to)) {
+      hits.incrementAndGet();
+      GLOBAL_HITS.increment();
+      return CompletableFuture.completedFuture(cached.candles.between(from, to));
+    }
+    misses.incrementAndGet();
+    GLOBAL_MISSES.increment();
+
+    Entry held = cached == null ? Entry.EMPTY : cached;
+    return held.ranges.fill(held.candles, symbol, from, to, loader).thenApply(fetched -> {
+      LocalDate lastSettled = LocalDate.now(clock).minusDays(1);
+      if (!from.isAfter(lastSettled)) {
+        LocalDate through = to.isAfter(lastSettled) ? lastSettled : to;
+        store(symbol, from, through, fetched.between(from, through));
+      }
+      return fetched;
+    }).whenComplete((candles, failure) -> {
+      if (Futures.unwrap(failure) instanceof UnknownSymbolException) {
+        synchronized (this) {
+          unknownSymbols.put(symbol, clock.millis());
+        }
+      }
+    });
+  }
+
+  /**
+   * Records the candles of {@code [from, through]} for {@code symbol}, merged with the ranges held
+   * now, which another thread may have stored since this one looked.
+   */
+  private synchronized void store(String symbol, LocalDate from, LocalDate through,
+      CandleSeries candles) {
+    Entry current = entries.get(symbol);
+    Entry entry = (current == null ? Entry.EMPTY : current).with(from, through, candles);
+    Entry previous = entries.put(symbol, entry);
+    if (previous != null) {
+      size -= previous.candles.size();
+    }
+    size += entry.candles.size();
+
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (size > maxCandles && eldest.hasNext()) {
+      Entry evicted = eldest.next().getValue();
+      eldest.remove();
+      size -= evicted.candles.size();
+      evictions.incrementAndGet();
+      GLOBAL_EVICTIONS.increment();
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    unknownSymbols.clear();
+    size = 0;
+  }
+
+  public synchronized long size() {
+    return size;
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getNegativeHitCount() {
+    return negativeHits.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  @Override
+  public String toString() {
+    return "CandleCache{"
+        + "size=" + size()
+        + ", hits=" + hits.get()
+        + ", misses=" + misses.get()
+        + ", negativeHits=" + negativeHits.get()
+        + ", evictions=" + evictions.get()
+        + '}';
+  }
+
+  /** Immutable snapshot of the cached ranges of one symbol and the candles inside them. */
+  private static final class Entry {
+
+    static final Entry EMPTY = new Entry(DateRanges.EMPTY, CandleSeries.EMPTY);
+
+    private final DateRanges ranges;
+    private final CandleSeries candles;
+
+    Entry(DateRanges ranges, CandleSeries candles) {
+      this.ranges = ranges;
+      this.candles = candles;
+    }
+
+    /**
+     * This entry with {@code added} for {@code [from, through]}, replacing the candles held for
+     * those days. Past {@code MAX_RANGES} ranges, the shortest of the others are dropped.
+     */
+    Entry with(LocalDate from, LocalDate through, CandleSeries added) {
+      DateRanges merged = ranges.with(from, through);
+      CandleSeries all = CandleSeries.concat(
+          candles.between(LocalDate.MIN, from.minusDays(1)),
+          added,
+          candles.between(through.plusDays(1), LocalDate.MAX));
+      DateRanges kept = merged.limit(MAX_RANGES, from);
+      return new Entry(kept, kept == merged ? all : kept.select(all));
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package com.stock.quotes;
+
+import com.stock.metrics.Counter;
+import com.stock.metrics.MetricsRegistry;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Stops calling a host that keeps failing, so that fetches fail fast instead of each waiting out
+ * its own timeout.
+ *
+ * <p>After {@code failureThreshold} failures in a row the breaker opens and rejects every call
+ * for {@code openDuration}. It then lets a single trial call through: success closes it again,
+ * failure opens it for another period. Only the host's health counts as failure, i.e. timeouts,
+ * connection errors and 5xx responses; a 404 or 429 is a healthy answer.
+ */
+public class CircuitBreaker {
+
+  private static final Logger log = LogManager.getLogger(CircuitBreaker.class);
+
+  public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+  public static final Duration DEFAULT_OPEN_DURATION = Duration.ofSeconds(30);
+
+  private static final Counter OPENED = MetricsRegistry.global().counter("quote.circuit.opened");
+  private static final Counter REJECTED =
+      MetricsRegistry.global().counter("quote.circuit.rejected");
+
+  private static final ConcurrentMap<String, CircuitBreaker> HOSTS = new ConcurrentHashMap<>();
+
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final String name;
+  private final int failureThreshold;
+  private final long openNanos;
+  private final LongSupplier nanoTime;
+
+  private State state = State.CLOSED;
+  private int consecutiveFailures;
+  private long openedAt;
+  private long openedCount;
+  private long rejectedCount;
+
+  public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+    this(name, failureThreshold, openDuration, System::nanoTime);
+  }
+
+  CircuitBreaker(String name, int failureThreshold, Duration openDuration, LongSupplier nanoTime) {
+    if (failureThreshold < 1) {
+      throw new IllegalArgumentException("failureThreshold must be at least 1, was "
+          + failureThreshold);
+    }
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+    this.nanoTime = nanoTime;
+  }
+
+  /** The process-wide breaker of the host, and port if any, of {@code url}. */
+  public static CircuitBreaker forUrl(String url) {
+    URI uri = URI.create(url);
+    String host = uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+    return HOSTS.computeIfAbsent(String.valueOf(host), name -> new CircuitBreaker(name,
+        DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_DURATION));
+  }
+
+  /**
+   * Asks to make a call. Every call allowed must be followed by {@link #onSuccess} or
+   * {@link #onFailure}.
+   *
+   * @return false if the breaker is open and the call should fail fast
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN && nanoTime.getAsLong() - openedAt >= openNanos) {
+      state = State.HALF_OPEN;
+      return true;
+    }
+    if (state == State.CLOSED) {
+      return true;
+    }
+    // Open, or half open with the trial call still out.
+    rejectedCount++;
+    REJECTED.increment();
+    return false;
+  }
+
+  public synchronized void onSuccess() {
+    if (state != State.CLOSED) {
+      log.info("Circuit for " + name + " closed");
+    }
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+  }
+
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN
+        || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      state = State.OPEN;
+      openedAt = nanoTime.getAsLong();
+      openedCount++;
+      OPENED.increment();
+      log.warn("Circuit for " + name + " opened after " + consecutiveFailures
+          + " failures in a row");
+    }
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+
+  public synchronized long getOpenedCount() {
+    return openedCount;
+  }
+
+  public synchronized long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "CircuitBreaker{name=" + name
+        + ", state=" + state
+        + ", opened=" + openedCount
+        + ", rejected=" + rejectedCount
+        + '}';
+  }
+}
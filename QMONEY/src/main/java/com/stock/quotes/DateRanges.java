@@ -0,0 +1,248 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import com.stock.quotes.CandleCache.AsyncLoader;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The inclusive date ranges a symbol's candles are held for, in ascending order, none
+ * overlapping or adjacent to another. Endpoint windows leave a symbol with a few short ranges
+ * years apart; keeping them side by side rather than one contiguous range means neither is
+ * dropped for the other and the gap between them is never fetched. Instances are immutable.
+ */
+final class DateRanges {
+
+  static final DateRanges EMPTY = new DateRanges(new long[0]);
+
+  // From and through of each range in turn, as epoch days.
+  private final long[] days;
+
+  private DateRanges(long[] days) {
+    this.days = days;
+  }
+
+  static DateRanges of(LocalDate from, LocalDate through) {
+    if (through.isBefore(from)) {
+      throw new IllegalArgumentException("Range ends before it starts: " + from + " to " + through);
+    }
+    return new DateRanges(new long[] {from.toEpochDay(), through.toEpochDay()});
+  }
+
+  /**
+   * Ranges from epoch days given as from and through of each in turn.
+   *
+   * @throws IllegalArgumentException if a range ends before it starts, or is not after the
+   *     previous one with a day between them
+   */
+  static DateRanges ofEpochDays(long... days) {
+    if (days.length % 2 != 0) {
+      throw new IllegalArgumentException("Odd number of range ends: " + days.length);
+    }
+    for (int i = 0; i < days.length; i += 2) {
+      if (days[i + 1] < days[i] || (i > 0 && days[i] <= days[i - 1] + 1)) {
+        throw new IllegalArgumentException("Ranges out of order at " + LocalDate.ofEpochDay(days[i])
+            + " to " + LocalDate.ofEpochDay(days[i + 1]));
+      }
+    }
+    return new DateRanges(days.clone());
+  }
+
+  int size() {
+    return days.length / 2;
+  }
+
+  boolean isEmpty() {
+    return days.length == 0;
+  }
+
+  LocalDate from(int range) {
+    return LocalDate.ofEpochDay(days[2 * range]);
+  }
+
+  LocalDate through(int range) {
+    return LocalDate.ofEpochDay(days[2 * range + 1]);
+  }
+
+  long fromEpochDay(int range) {
+    return days[2 * range];
+  }
+
+  long throughEpochDay(int range) {
+    return days[2 * range + 1];
+  }
+
+  long days(int range) {
+    return days[2 * range + 1] - days[2 * range] + 1;
+  }
+
+  /** True if a single range holds every day of {@code [from, through]}. */
+  boolean covers(LocalDate from, LocalDate through) {
+    int range = rangeAtOrAfter(from.toEpochDay());
+    return range < size() && days[2 * range] <= from.toEpochDay()
+        && through.toEpochDay() <= days[2 * range + 1];
+  }
+
+  /** The days of {@code [from, through]} that no range holds, in order. */
+  DateRanges gaps(LocalDate from, LocalDate through) {
+    long[] gaps = new long[days.length + 2];
+    int length = 0;
+    long next = from.toEpochDay();
+    long last = through.toEpochDay();
+    for (int range = rangeAtOrAfter(next); range < size() && next <= last; range++) {
+      if (days[2 * range] > next) {
+        gaps[length++] = next;
+        gaps[length++] = Math.min(days[2 * range] - 1, last);
+      }
+      next = Math.max(next, days[2 * range + 1] + 1);
+    }
+    if (next <= last) {
+      gaps[length++] = next;
+      gaps[length++] = last;
+    }
+    return new DateRanges(Arrays.copyOf(gaps, length));
+  }
+
+  /**
+   * These ranges and {@code [from, through]}, which is merged with every range it overlaps or is
+   * next to.
+   */
+  DateRanges with(LocalDate from, LocalDate through) {
+    long start = from.toEpochDay();
+    long end = through.toEpochDay();
+    // Ranges before first end before the day ahead of start; those from last on start after the
+    // day past end. The ones in between touch [start, end] and are merged with it.
+    int first = 0;
+    while (first < size() && days[2 * first + 1] < start - 1) {
+      first++;
+    }
+    int last = first;
+    while (last < size() && days[2 * last] <= end + 1) {
+      start = Math.min(start, days[2 * last]);
+      end = Math.max(end, days[2 * last + 1]);
+      last++;
+    }
+    long[] merged = new long[days.length - 2 * (last - first) + 2];
+    System.arraycopy(days, 0, merged, 0, 2 * first);
+    merged[2 * first] = start;
+    merged[2 * first + 1] = end;
+    System.arraycopy(days, 2 * last, merged, 2 * first + 2, days.length - 2 * last);
+    return new DateRanges(merged);
+  }
+
+  /**
+   * At most {@code max} of these ranges, dropping the shortest first, but never the one holding
+   * {@code keep}.
+   */
+  DateRanges limit(int max, LocalDate keep) {
+    if (size() <= max) {
+      return this;
+    }
+    boolean[] dropped = new boolean[size()];
+    for (int excess = size() - max; excess > 0; excess--) {
+      int shortest = -1;
+      for (int range = 0; range < size(); range++) {
+        boolean holdsKeep = days[2 * range] <= keep.toEpochDay()
+            && keep.toEpochDay() <= days[2 * range + 1];
+        if (!dropped[range] && !holdsKeep
+            && (shortest < 0 || days(range) < days(shortest))) {
+          shortest = range;
+        }
+      }
+      dropped[shortest] = true;
+    }
+    long[] kept = new long[2 * max];
+    int length = 0;
+    for (int range = 0; range < size(); range++) {
+      if (!dropped[range]) {
+        kept[length++] = days[2 * range];
+        kept[length++] = days[2 * range + 1];
+      }
+    }
+    return new DateRanges(kept);
+  }
+
+  /**
+   * The candles of {@code symbol} for {@code [from, to]}: those of {@code held}, which holds the
+   * candles of these ranges, for the days a range holds, and ones loaded through {@code loader}
+   * for the gaps, all gaps at once.
+   */
+  CompletableFuture<CandleSeries> fill(CandleSeries held, String symbol, LocalDate from,
+      LocalDate to, AsyncLoader loader) {
+    DateRanges gaps = gaps(from, to);
+    CompletableFuture<?>[] parts = new CompletableFuture<?>[2 * gaps.size() + 1];
+    LocalDate next = from;
+    for (int gap = 0; gap < gaps.size(); gap++) {
+      LocalDate gapFrom = gaps.from(gap);
+      LocalDate gapThrough = gaps.through(gap);
+      parts[2 * gap] = CompletableFuture.completedFuture(
+          held.between(next, gapFrom.minusDays(1)));
+      parts[2 * gap + 1] = loader.load(symbol, gapFrom, gapThrough)
+          .thenApply(loaded -> loaded.between(gapFrom, gapThrough));
+      next = gapThrough.plusDays(1);
+    }
+    parts[parts.length - 1] = CompletableFuture.completedFuture(held.between(next, to));
+    return CompletableFuture.allOf(parts).thenApply(ignored -> {
+      CandleSeries[] candles = new CandleSeries[parts.length];
+      for (int part = 0; part < parts.length; part++) {
+        candles[part] = (CandleSeries) parts[part].join();
+      }
+      return CandleSeries.concat(candles);
+    });
+  }
+
+  /**
+   * True if these ranges are {@code previous} with only the last one ending later, so that
+   * candles for them can be appended after those of {@code previous}.
+   */
+  boolean extendsLast(DateRanges previous) {
+    int last = days.length - 1;
+    return days.length == previous.days.length && last > 0
+        && Arrays.equals(Arrays.copyOf(days, last), Arrays.copyOf(previous.days, last))
+        && days[last] > previous.days[last];
+  }
+
+  /** The candles of {@code candles} inside these ranges. */
+  CandleSeries select(CandleSeries candles) {
+    CandleSeries[] parts = new CandleSeries[size()];
+    for (int range = 0; range < size(); range++) {
+      parts[range] = candles.between(from(range), through(range));
+    }
+    return CandleSeries.concat(parts);
+  }
+
+  /** Index of the first range ending on or after {@code day}, or size() if there is none. */
+  private int rangeAtOrAfter(long day) {
+    int low = 0;
+    int high = size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (days[2 * middle + 1] < day) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof DateRanges && Arrays.equals(days, ((DateRanges) other).days);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(days);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder("[");
+    for (int range = 0; range < size(); range++) {
+      text.append(range == 0 ? "" : ", ").append(from(range)).append("..").append(through(range));
+    }
+    return text.append(']').toString();
+  }
+}
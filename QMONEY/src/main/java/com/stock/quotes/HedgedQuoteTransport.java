@@ -0,0 +1,253 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import com.stock.metrics.LatencyHistogram;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cuts the tail latency of a {@link QuoteTransport} with hedged requests: a fetch that has not
+ * answered after the {@code percentile} latency seen so far is sent a second time, and whichever
+ * answer arrives first is used. A fetch fails only once every copy of it has failed.
+ *
+ * <p>Every hedge is an extra request against the provider's quota, so hedges are limited to
+ * {@code maxHedgeRate} of all fetches, and each takes a permit from the {@link RequestScheduler}
+ * without waiting: a hedge the quota has no room for right now is not sent. A 429 to a copy whose
+ * answer is not the one used drains the scheduler's buckets, as the scheduler does for its own
+ * requests. Until enough fetches have been timed the delay is {@link #DEFAULT_INITIAL_DELAY}.
+ * Put this below the {@link ThrottledQuoteTransport}, so that the latencies it learns from do not
+ * include waits for quota.
+ */
+public class HedgedQuoteTransport implements QuoteTransport {
+
+  public static final double DEFAULT_PERCENTILE = 0.95;
+  public static final double DEFAULT_MAX_HEDGE_RATE = 0.05;
+  public static final Duration DEFAULT_INITIAL_DELAY = Duration.ofSeconds(1);
+  public static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(50);
+
+  /** System properties read by {@link #fromSystemProperties}. */
+  public static final String PERCENTILE_PROPERTY = "qmoney.tiingo.hedge.percentile";
+  public static final String MAX_HEDGE_RATE_PROPERTY = "qmoney.tiingo.hedge.maxRate";
+
+  static final int MIN_SAMPLES = 20;
+
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        Thread thread = new Thread(runnable, "quote-hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final QuoteTransport delegate;
+  private final RequestScheduler scheduler;
+  private final double percentile;
+  private final double maxHedgeRate;
+  private final long initialDelayNanos;
+  private final long minDelayNanos;
+  private final LatencyHistogram latencies = new LatencyHistogram();
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong hedges = new AtomicLong();
+  private final AtomicLong hedgeWins = new AtomicLong();
+  private final AtomicLong hedgesWithoutQuota = new AtomicLong();
+
+  public HedgedQuoteTransport(QuoteTransport delegate, RequestScheduler scheduler) {
+    this(delegate, scheduler, DEFAULT_PERCENTILE, DEFAULT_MAX_HEDGE_RATE, DEFAULT_INITIAL_DELAY,
+        DEFAULT_MIN_DELAY);
+  }
+
+  /**
+   * @param scheduler scheduler pacing {@code delegate}, which hedges take their permits from
+   * @param percentile share of fetches, 0 to 1, expected to answer before a hedge is sent
+   * @param maxHedgeRate most hedges per fetch, 0 to disable hedging
+   * @param initialDelay delay until {@value #MIN_SAMPLES} fetches have been timed
+   * @param minDelay shortest delay, however fast fetches have been
+   */
+  public HedgedQuoteTransport(QuoteTransport delegate, RequestScheduler scheduler,
+      double percentile, double maxHedgeRate, Duration initialDelay, Duration minDelay) {
+    if (!(percentile > 0 && percentile <= 1)) {
+      throw new IllegalArgumentException("percentile must be in (0, 1], was " + percentile);
+    }
+    if (!(maxHedgeRate >= 0)) {
+      throw new IllegalArgumentException("maxHedgeRate must not be negative, was "
+          + maxHedgeRate);
+    }
+    this.delegate = delegate;
+    this.scheduler = scheduler;
+    this.percentile = percentile;
+    this.maxHedgeRate = maxHedgeRate;
+    this.initialDelayNanos = initialDelay.toNanos();
+    this.minDelayNanos = minDelay.toNanos();
+  }
+
+  /**
+   * {@code delegate} hedged at the percentile and rate named by {@value #PERCENTILE_PROPERTY}
+   * and {@value #MAX_HEDGE_RATE_PROPERTY}, or the defaults, with hedges paced by
+   * {@code scheduler}. A rate of 0 returns {@code delegate} unchanged.
+   */
+  public static QuoteTransport fromSystemProperties(QuoteTransport delegate,
+      RequestScheduler scheduler) {
+    double maxHedgeRate = Double.parseDouble(System.getProperty(MAX_HEDGE_RATE_PROPERTY,
+        String.valueOf(DEFAULT_MAX_HEDGE_RATE)));
+    if (maxHedgeRate == 0) {
+      return delegate;
+    }
+    double percentile = Double.parseDouble(System.getProperty(PERCENTILE_PROPERTY,
+        String.valueOf(DEFAULT_PERCENTILE)));
+    return new HedgedQuoteTransport(delegate, scheduler, percentile, maxHedgeRate,
+        DEFAULT_INITIAL_DELAY, DEFAULT_MIN_DELAY);
+  }
+
+  @Override
+  public CompletableFuture<CandleSeries> fetchAsync(String symbol, LocalDate from, LocalDate to) {
+    requests.incrementAndGet();
+    Fetch fetch = new Fetch();
+    attempt(symbol, from, to).whenComplete((candles, failure) ->
+        fetch.settle(candles, failure, false));
+
+    ScheduledFuture<?> hedge = TIMER.schedule(() -> {
+      if (fetch.result.isDone() || !reserveHedge()) {
+        return;
+      }
+      if (!scheduler.tryAcquire()) {
+        hedges.decrementAndGet();
+        hedgesWithoutQuota.incrementAndGet();
+        return;
+      }
+      if (!fetch.addCopy()) {
+        return;
+      }
+      QuoteMetrics.HEDGES.increment();
+      attempt(symbol, from, to).whenComplete((candles, failure) ->
+          fetch.settle(candles, failure, true));
+    }, hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+    fetch.result.whenComplete((candles, failure) -> hedge.cancel(false));
+    return fetch.result;
+  }
+
+  private CompletableFuture<CandleSeries> attempt(String symbol, LocalDate from, LocalDate to) {
+    try {
+      return delegate.fetchAsync(symbol, from, to);
+    } catch (RuntimeException e) {
+      return Futures.failed(e);
+    }
+  }
+
+  /** One fetch and the copies of it that are out. */
+  private final class Fetch {
+
+    final CompletableFuture<CandleSeries> result = new CompletableFuture<>();
+    private final long start = System.nanoTime();
+    private final AtomicBoolean answered = new AtomicBoolean();
+    // Copies still out; none is added once the last one has failed.
+    private final AtomicInteger outstanding = new AtomicInteger(1);
+    private final AtomicReference<Throwable> firstFailure = new AtomicReference<>();
+
+    boolean addCopy() {
+      return outstanding.getAndUpdate(n -> n == 0 ? 0 : n + 1) != 0;
+    }
+
+    void settle(CandleSeries candles, Throwable failure, boolean isHedge) {
+      if (failure == null) {
+        if (answered.compareAndSet(false, true)) {
+          latencies.recordSince(start);
+          if (isHedge) {
+            hedgeWins.incrementAndGet();
+            QuoteMetrics.HEDGE_WINS.increment();
+          }
+          result.complete(candles);
+        }
+        return;
+      }
+      Throwable cause = Futures.unwrap(failure);
+      if (!firstFailure.compareAndSet(null, cause)) {
+        lost(cause);
+      } else {
+        // Lost too if another copy answers; if not, the fetch fails with it and the caller sees it.
+        result.thenRun(() -> lost(cause));
+      }
+      if (outstanding.decrementAndGet() == 0) {
+        result.completeExceptionally(firstFailure.get());
+      }
+    }
+  }
+
+  /** Reports a 429 that the caller will not see to the scheduler. */
+  private void lost(Throwable failure) {
+    if (failure instanceof QuoteServiceException
+        && ((QuoteServiceException) failure).isThrottled()) {
+      scheduler.recordThrottled();
+    }
+  }
+
+  private boolean reserveHedge() {
+    while (true) {
+      long sent = hedges.get();
+      if (sent + 1 > maxHedgeRate * requests.get()) {
+        return false;
+      }
+      if (hedges.compareAndSet(sent, sent + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /** The current hedge delay: the configured percentile of successful fetch latencies. */
+  long hedgeDelayNanos() {
+    if (latencies.getCount() < MIN_SAMPLES) {
+      return initialDelayNanos;
+    }
+    return Math.max(minDelayNanos, latencies.valueAtQuantile(percentile));
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  public long getHedgeCount() {
+    return hedges.get();
+  }
+
+  /** Fetches answered by their hedge rather than by the original request. */
+  public long getHedgeWinCount() {
+    return hedgeWins.get();
+  }
+
+  /** Hedges not sent because the scheduler had no permit to spare. */
+  public long getHedgesWithoutQuotaCount() {
+    return hedgesWithoutQuota.get();
+  }
+
+  /** Hedges sent per fetch. */
+  public double getHedgeRate() {
+    long total = requests.get();
+    return total == 0 ? 0 : (double) hedges.get() / total;
+  }
+
+  public LatencyHistogram getLatencies() {
+    return latencies;
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+
+  @Override
+  public String toString() {
+    return "HedgedQuoteTransport{requests=" + requests
+        + ", hedges=" + hedges
+        + ", hedgeWins=" + hedgeWins
+        + ", delayMs=" + TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos())
+        + '}';
+  }
+}
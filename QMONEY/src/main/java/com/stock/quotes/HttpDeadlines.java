@@ -0,0 +1,40 @@
+package com.stock.quotes;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+
+/**
+ * Connect and read deadlines for every HTTP call to Tiingo, so that a stuck socket fails the
+ * fetch instead of hanging the run. Read from the {@value #CONNECT_TIMEOUT_PROPERTY} and
+ * {@value #READ_TIMEOUT_PROPERTY} system properties, in milliseconds, on every call.
+ */
+public final class HttpDeadlines {
+
+  public static final String CONNECT_TIMEOUT_PROPERTY = "qmoney.tiingo.connectTimeoutMillis";
+  public static final String READ_TIMEOUT_PROPERTY = "qmoney.tiingo.readTimeoutMillis";
+  public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+  public static final Duration DEFAULT_READ_TIMEOUT = Duration.ofSeconds(30);
+
+  private HttpDeadlines() {
+  }
+
+  public static Duration connectTimeout() {
+    return Duration.ofMillis(Long.getLong(CONNECT_TIMEOUT_PROPERTY,
+        DEFAULT_CONNECT_TIMEOUT.toMillis()));
+  }
+
+  /** Longest wait for the next bytes of a response, not for the whole response. */
+  public static Duration readTimeout() {
+    return Duration.ofMillis(Long.getLong(READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT.toMillis()));
+  }
+
+  /** True if {@code failure} or one of its causes is a connect or read timeout. */
+  public static boolean isTimeout(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof InterruptedIOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
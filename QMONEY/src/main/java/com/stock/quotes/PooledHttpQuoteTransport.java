@@ -0,0 +1,281 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import com.stock.metrics.Counter;
+import com.stock.metrics.CountingInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * {@link QuoteTransport} over a pooled Apache HttpClient. Connections are kept alive and reused
+ * across requests, so TCP and TLS setup is paid once per connection instead of once per symbol.
+ *
+ * <p>Requests run on a dedicated pool with one thread per connection and the response body is
+ * parsed straight off the socket by {@link TiingoResponseParser}. The build targets Java 8, so
+ * the JDK's HTTP/2 client is not available; callers only see {@link CompletableFuture}s, so the
+ * client can be swapped without changing them.
+ *
+ * <p>Every request has a connect and a read deadline, from {@link HttpDeadlines} unless given,
+ * and goes through the {@link CircuitBreaker} of its host, so a host that keeps failing is not
+ * waited on by every remaining symbol.
+ *
+ * <p>To keep transfers small, daily prices are asked for with only the columns of
+ * {@link TiingoEndpoints#columns()}, and every request accepts gzip, which is inflated while the
+ * body is parsed. Bytes on the wire and after inflation are counted per request.
+ */
+public class PooledHttpQuoteTransport implements QuoteTransport {
+
+  private static final Logger log = LogManager.getLogger(PooledHttpQuoteTransport.class);
+
+  public static final int DEFAULT_MAX_CONNECTIONS = 16;
+
+  private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+  /** Reads a successful response body. */
+  @FunctionalInterface
+  public interface BodyReader<T> {
+    T read(InputStream body) throws IOException;
+  }
+
+  private final String baseUrl;
+  private final String token;
+  private final String columns;
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient client;
+  private final ExecutorService executor;
+
+  private final AtomicLong bodiesRead = new AtomicLong();
+  private final AtomicLong wireBytes = new AtomicLong();
+  private final AtomicLong decodedBytes = new AtomicLong();
+
+  /** A transport to the base URL configured in {@link TiingoEndpoints}. */
+  public PooledHttpQuoteTransport(String token) {
+    this(TiingoEndpoints.baseUrl(), token, DEFAULT_MAX_CONNECTIONS);
+  }
+
+  public PooledHttpQuoteTransport(String baseUrl, String token, int maxConnections) {
+    this(baseUrl, token, maxConnections, HttpDeadlines.connectTimeout(),
+        HttpDeadlines.readTimeout());
+  }
+
+  /**
+   * @param connectTimeout longest wait for a connection, including one from the pool
+   * @param readTimeout longest wait for the next bytes of a response
+   */
+  public PooledHttpQuoteTransport(String baseUrl, String token, int maxConnections,
+      Duration connectTimeout, Duration readTimeout) {
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("maxConnections must be at least 1, was "
+          + maxConnections);
+    }
+    this.baseUrl = TiingoEndpoints.stripTrailingSlash(baseUrl);
+    this.token = token;
+    this.columns = TiingoEndpoints.columns();
+    this.connectionManager = new PoolingHttpClientConnectionManager(5, TimeUnit.MINUTES);
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnections);
+    this.client = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+        .evictIdleConnections(30, TimeUnit.SECONDS)
+        // Inflated by readBody instead, so that the compressed size can be counted.
+        .disableContentCompression()
+        .setDefaultRequestConfig(RequestConfig.custom()
+            .setConnectTimeout(Math.toIntExact(connectTimeout.toMillis()))
+            .setConnectionRequestTimeout(Math.toIntExact(connectTimeout.toMillis()))
+            .setSocketTimeout(Math.toIntExact(readTimeout.toMillis()))
+            .build())
+        .build();
+    this.executor = Executors.newFixedThreadPool(maxConnections, daemonThreads());
+  }
+
+  private static ThreadFactory daemonThreads() {
+    String prefix = "quote-http-" + POOL_NUMBER.incrementAndGet() + "-";
+    AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  public String getBaseUrl() {
+    return baseUrl;
+  }
+
+  /**
+   * URI of the daily-prices endpoint for {@code symbol} over {@code [from, to]}, with the
+   * transport's column projection.
+   */
+  public String pricesUri(String symbol, LocalDate from, LocalDate to) {
+    return TiingoEndpoints.dailyPrices(baseUrl, symbol, from, to, token, columns);
+  }
+
+  /** URI of the IEX top-of-book endpoint for all of {@code tickers}. */
+  public String topOfBookUri(Iterable<String> tickers) {
+    return TiingoEndpoints.iexTopOfBook(baseUrl, tickers, token);
+  }
+
+  @Override
+  public CompletableFuture<CandleSeries> fetchAsync(String symbol, LocalDate from, LocalDate to) {
+    return getAsync(pricesUri(symbol, from, to), TiingoResponseParser::parseSeries)
+        .handle((candles, failure) -> {
+          Throwable cause = Futures.unwrap(failure);
+          if (cause instanceof QuoteServiceException
+              && ((QuoteServiceException) cause).getStatusCode() == 404) {
+            throw new UnknownSymbolException(symbol, cause);
+          }
+          if (cause != null) {
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                : new QuoteServiceException("Tiingo request for " + symbol + " failed", cause);
+          }
+          return candles;
+        });
+  }
+
+  /**
+   * GETs {@code url} on the transport's pool and reads a 2xx body with {@code reader}. Any other
+   * status fails the future with a {@link QuoteServiceException} carrying that status.
+   */
+  public <T> CompletableFuture<T> getAsync(String url, BodyReader<T> reader) {
+    return CompletableFuture.supplyAsync(() -> get(url, reader), executor);
+  }
+
+  /**
+   * Blocking form of {@link #getAsync}, running on the calling thread. Fails at once, without a
+   * request, while the circuit of the URL's host is open.
+   */
+  public <T> T get(String url, BodyReader<T> reader) {
+    CircuitBreaker circuit = CircuitBreaker.forUrl(url);
+    if (!circuit.tryAcquire()) {
+      throw new QuoteServiceException("Circuit open for " + circuit.getName()
+          + ", not requesting " + redact(url), QuoteServiceException.NO_STATUS);
+    }
+    boolean healthy = false;
+    HttpGet request = new HttpGet(url);
+    request.setHeader("Accept-Encoding", "gzip");
+    try (CloseableHttpResponse response = client.execute(request)) {
+      int status = response.getStatusLine().getStatusCode();
+      HttpEntity entity = response.getEntity();
+      healthy = status < 500;
+      if (status < 200 || status >= 300) {
+        String body = entity == null ? ""
+            : EntityUtils.toString(isGzip(entity) ? new GzipDecompressingEntity(entity) : entity);
+        Header retryAfter = response.getFirstHeader("Retry-After");
+        throw new QuoteServiceException("HTTP " + status + " from " + redact(url) + ": " + body,
+            status, QuoteServiceException.parseRetryAfter(
+                retryAfter == null ? null : retryAfter.getValue()), null);
+      }
+      if (entity == null) {
+        throw new QuoteServiceException("Empty response from " + redact(url), status);
+      }
+      return readBody(url, entity, reader);
+    } catch (IOException e) {
+      healthy = false;
+      if (HttpDeadlines.isTimeout(e)) {
+        QuoteMetrics.TIMEOUTS.increment();
+        throw new QuoteServiceException("Request to " + redact(url) + " timed out", e);
+      }
+      throw new QuoteServiceException("Request to " + redact(url) + " failed", e);
+    } finally {
+      if (healthy) {
+        circuit.onSuccess();
+      } else {
+        circuit.onFailure();
+      }
+    }
+  }
+
+  private <T> T readBody(String url, HttpEntity entity, BodyReader<T> reader) throws IOException {
+    Counter wire = new Counter();
+    Counter decoded = new Counter();
+    try (InputStream raw = new CountingInputStream(entity.getContent(), wire);
+        InputStream body = new CountingInputStream(
+            isGzip(entity) ? new GZIPInputStream(raw, 8192) : raw, decoded)) {
+      return reader.read(body);
+    } finally {
+      bodiesRead.incrementAndGet();
+      wireBytes.addAndGet(wire.getCount());
+      decodedBytes.addAndGet(decoded.getCount());
+      QuoteMetrics.WIRE_BYTES.add(wire.getCount());
+      QuoteMetrics.BYTES_RECEIVED.add(decoded.getCount());
+      log.debug("Read " + wire.getCount() + " bytes, " + decoded.getCount() + " inflated, from "
+          + redact(url));
+    }
+  }
+
+  private static boolean isGzip(HttpEntity entity) {
+    Header encoding = entity.getContentEncoding();
+    return encoding != null && "gzip".equalsIgnoreCase(encoding.getValue().trim());
+  }
+
+  /** Keeps the API token out of exception messages and logs. */
+  static String redact(String url) {
+    return url.replaceAll("token=[^&]*", "token=***");
+  }
+
+  /** The columns asked of the daily-prices endpoint, or null for every column. */
+  public String getColumns() {
+    return columns;
+  }
+
+  /** Successful response bodies read. */
+  public long getBodyCount() {
+    return bodiesRead.get();
+  }
+
+  /** Bytes of successful response bodies as transferred, i.e. compressed when gzip was used. */
+  public long getWireBytes() {
+    return wireBytes.get();
+  }
+
+  /** Bytes of successful response bodies after inflation. */
+  public long getDecodedBytes() {
+    return decodedBytes.get();
+  }
+
+  /** Mean bytes on the wire per successful response. */
+  public double getWireBytesPerRequest() {
+    long bodies = bodiesRead.get();
+    return bodies == 0 ? 0 : (double) wireBytes.get() / bodies;
+  }
+
+  /** Connections currently open, leased or idle. */
+  public int getOpenConnections() {
+    return connectionManager.getTotalStats().getLeased()
+        + connectionManager.getTotalStats().getAvailable();
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    try {
+      client.close();
+    } catch (IOException e) {
+      throw new QuoteServiceException("Failed to close HTTP client", e);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.stock.quotes;
+
+import com.stock.metrics.Counter;
+import com.stock.metrics.LatencyHistogram;
+import com.stock.metrics.MetricsRegistry;
+
+/** Quote-fetching metrics recorded into {@link MetricsRegistry#global()}. */
+public final class QuoteMetrics {
+
+  private static final MetricsRegistry REGISTRY = MetricsRegistry.global();
+
+  public static final LatencyHistogram FETCH_LATENCY = REGISTRY.histogram("quote.fetch.latency");
+  public static final Counter IN_FLIGHT = REGISTRY.counter("quote.fetch.inFlight");
+  public static final Counter FAILURES = REGISTRY.counter("quote.fetch.failures");
+  public static final Counter RETRIES = REGISTRY.counter("quote.fetch.retries");
+  public static final Counter BYTES_RECEIVED = REGISTRY.counter("quote.fetch.bytesReceived");
+  /** Response bytes as transferred, i.e. before decompression. */
+  public static final Counter WIRE_BYTES = REGISTRY.counter("quote.fetch.wireBytes");
+  public static final Counter TIMEOUTS = REGISTRY.counter("quote.fetch.timeouts");
+  public static final Counter HEDGES = REGISTRY.counter("quote.hedge.sent");
+  public static final Counter HEDGE_WINS = REGISTRY.counter("quote.hedge.wins");
+  public static final Counter BATCHES = REGISTRY.counter("quote.batch.requests");
+  public static final Counter BATCHED_SYMBOLS = REGISTRY.counter("quote.batch.symbols");
+  public static final Counter BATCH_FALLBACKS = REGISTRY.counter("quote.batch.fallbacks");
+
+  private QuoteMetrics() {
+  }
+
+  /** Marks a fetch as in flight and returns its start time for {@link #endFetch}. */
+  public static long startFetch() {
+    IN_FLIGHT.increment();
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the latency of a fetch of {@code symbol}, overall and per symbol.
+   *
+   * @param failure the failure of the fetch, or null if it succeeded
+   */
+  public static void endFetch(String symbol, long startNanos, Throwable failure) {
+    long elapsed = System.nanoTime() - startNanos;
+    IN_FLIGHT.decrement();
+    FETCH_LATENCY.record(elapsed);
+    REGISTRY.histogram("quote.fetch.latency." + symbol).record(elapsed);
+    if (failure != null) {
+      FAILURES.increment();
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.stock.quotes;
+
+import java.time.Duration;
+
+/**
+ * A quote request that failed, carrying the HTTP status when the provider answered at all.
+ */
+public class QuoteServiceException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  /** Status used when no HTTP response was received. */
+  public static final int NO_STATUS = -1;
+
+  /** Status the provider answers with once the request quota is used up. */
+  public static final int TOO_MANY_REQUESTS = 429;
+
+  private final int statusCode;
+  private final Duration retryAfter;
+
+  public QuoteServiceException(String message, int statusCode) {
+    this(message, statusCode, null);
+  }
+
+  public QuoteServiceException(String message, Throwable cause) {
+    this(message, NO_STATUS, cause);
+  }
+
+  public QuoteServiceException(String message, int statusCode, Throwable cause) {
+    this(message, statusCode, null, cause);
+  }
+
+  /**
+   * @param retryAfter delay requested by the provider's {@code Retry-After} header, or null
+   */
+  public QuoteServiceException(String message, int statusCode, Duration retryAfter,
+      Throwable cause) {
+    super(message, cause);
+    this.statusCode = statusCode;
+    this.retryAfter = retryAfter;
+  }
+
+  public int getStatusCode() {
+    return statusCode;
+  }
+
+  /** True when the provider rejected the request because the quota is used up. */
+  public boolean isThrottled() {
+    return statusCode == TOO_MANY_REQUESTS;
+  }
+
+  /** Delay requested by the provider before retrying, or null if it did not say. */
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+
+  /**
+   * Parses a {@code Retry-After} header given in seconds. The HTTP-date form is not used by
+   * Tiingo and yields null, as does a missing or malformed header.
+   */
+  public static Duration parseRetryAfter(String header) {
+    if (header == null) {
+      return null;
+    }
+    try {
+      long seconds = Long.parseLong(header.trim());
+      return seconds < 0 ? null : Duration.ofSeconds(seconds);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,643 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import com.stock.metrics.Counter;
+import com.stock.metrics.MetricsRegistry;
+import com.stock.quotes.CandleCache.AsyncLoader;
+import com.stock.quotes.CandleCache.Loader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Daily candles kept on local disk across runs, one file per symbol.
+ *
+ * <p>A file is a 32-byte header, a table of the date ranges it covers and fixed-width records in
+ * ascending date order, each an epoch day and the open, high, low and close. The header holds the
+ * number of records and of ranges; a range can extend past its last record over weekends and
+ * holidays. Newer candles for the last range are appended after the last record and only then
+ * counted in the header, so a write that is cut short leaves trailing bytes that {@link #verify}
+ * reports and {@link #compact} drops. Version 1 files, with a single range in the header and no
+ * table, are still read and are rewritten in the current version on their next change. Files are read through memory-mapped buffers and so come from the page cache once warm.
+ *
+ * <p>Records are either {@link Encoding#RAW} doubles or, with {@link Encoding#FIXED_POINT},
+ * integers scaled by the smallest power of ten that represents every price of the file exactly,
+ * which takes a little over half the space. A file falls back to raw doubles when some price has
+ * no such scale.
+ *
+ * <p>Like {@link CandleCache}, a file keeps up to {@value CandleCache#MAX_RANGES} disjoint ranges,
+ * a request fetches only the days no range covers, never the gaps between ranges, and today is
+ * never stored because its candle is not final until the market closes.
+ * Thread-safe within one process; several processes must not share a directory.
+ */
+public class QuoteStore {
+
+  private static final Logger log = LogManager.getLogger(QuoteStore.class);
+
+  /** System properties read by {@link #fromSystemProperties()}. */
+  public static final String DIRECTORY_PROPERTY = "qmoney.store.dir";
+  public static final String ENCODING_PROPERTY = "qmoney.store.encoding";
+
+  static final String SUFFIX = ".qms";
+  static final int MAGIC = 0x514D5153;
+  static final byte VERSION = 2;
+  static final int HEADER_BYTES = 32;
+  private static final int MAX_DECIMALS = 6;
+
+  public enum Encoding {
+    /** Epoch day and four doubles, 36 bytes a candle. */
+    RAW(36),
+    /** Epoch day and four scaled integers, 20 bytes a candle. */
+    FIXED_POINT(20);
+
+    final int recordBytes;
+
+    Encoding(int recordBytes) {
+      this.recordBytes = recordBytes;
+    }
+  }
+
+  private static final Counter HITS = MetricsRegistry.global().counter("store.hits");
+  private static final Counter MISSES = MetricsRegistry.global().counter("store.misses");
+  private static final Counter CANDLES_WRITTEN =
+      MetricsRegistry.global().counter("store.candlesWritten");
+  private static final Counter CORRUPT_FILES =
+      MetricsRegistry.global().counter("store.corruptFiles");
+
+  private final Path directory;
+  private final Encoding encoding;
+  private final Clock clock;
+  private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<>();
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public QuoteStore(Path directory) throws IOException {
+    this(directory, Encoding.FIXED_POINT);
+  }
+
+  /** @param encoding encoding of files written from now on; existing files keep theirs */
+  public QuoteStore(Path directory, Encoding encoding) throws IOException {
+    this(directory, encoding, Clock.systemDefaultZone());
+  }
+
+  QuoteStore(Path directory, Encoding encoding, Clock clock) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.encoding = encoding;
+    this.clock = clock;
+  }
+
+  /**
+   * A store in the directory named by {@value #DIRECTORY_PROPERTY}, with the encoding named by
+   * {@value #ENCODING_PROPERTY}, or null if no directory is configured.
+   */
+  public static QuoteStore fromSystemProperties() throws IOException {
+    String directory = System.getProperty(DIRECTORY_PROPERTY);
+    if (directory == null || directory.isEmpty()) {
+      return null;
+    }
+    return new QuoteStore(Paths.get(directory),
+        Encoding.valueOf(System.getProperty(ENCODING_PROPERTY, Encoding.FIXED_POINT.name())));
+  }
+
+  /**
+   * Returns the candles of {@code symbol} for {@code [from, to]}, fetching through
+   * {@code loader} only the part of the range that is not on disk yet and storing it.
+   */
+  public CandleSeries get(String symbol, LocalDate from, LocalDate to, Loader loader) {
+    return Futures.join(getAsync(symbol, from, to, (s, f, t) -> {
+      try {
+        return CompletableFuture.completedFuture(loader.load(s, f, t));
+      } catch (RuntimeException e) {
+        return Futures.failed(e);
+      }
+    }));
+  }
+
+  /**
+   * Asynchronous form of {@link #get}. Reading the file happens on the calling thread; the
+   * missing days are loaded concurrently and written once all have arrived.
+   */
+  public CompletableFuture<CandleSeries> getAsync(String symbol, LocalDate from, LocalDate to,
+      AsyncLoader loader) {
+    StoredSeries stored;
+    synchronized (lockFor(symbol)) {
+      stored = readOrDiscard(symbol);
+    }
+    if (stored != null && stored.ranges.covers(from, to)) {
+      hits.incrementAndGet();
+      HITS.increment();
+      return CompletableFuture.completedFuture(stored.candles.between(from, to));
+    }
+    misses.incrementAndGet();
+    MISSES.increment();
+
+    StoredSeries held = stored == null ? StoredSeries.EMPTY : stored;
+    return held.ranges.fill(held.candles, symbol, from, to, loader).thenApply(fetched -> {
+      try {
+        save(symbol, from, to, fetched);
+      } catch (IOException | RuntimeException e) {
+        log.warn("Could not store quotes of " + symbol + ": " + e, e);
+      }
+      return fetched;
+    });
+  }
+
+  /**
+   * Writes the settled part of {@code fetched}, the candles of {@code [from, to]}, to disk,
+   * merged with the ranges there now, which another thread may have written since this one read.
+   */
+  private void save(String symbol, LocalDate from, LocalDate to, CandleSeries fetched)
+      throws IOException {
+    LocalDate lastSettled = LocalDate.now(clock).minusDays(1);
+    if (from.isAfter(lastSettled)) {
+      return;
+    }
+    LocalDate through = to.isAfter(lastSettled) ? lastSettled : to;
+    CandleSeries settled = fetched.between(from, through);
+
+    synchronized (lockFor(symbol)) {
+      StoredSeries current = readOrDiscard(symbol);
+      if (current == null) {
+        write(symbol, StoredSeries.EMPTY.with(from, through, settled), encoding);
+        return;
+      }
+      if (current.ranges.covers(from, through)) {
+        return;
+      }
+      StoredSeries merged = current.with(from, through, settled);
+      if (current.header.version == VERSION && merged.ranges.extendsLast(current.ranges)
+          && append(symbol, current, merged.candles.between(
+              current.ranges.through(current.ranges.size() - 1).plusDays(1), LocalDate.MAX),
+              merged.ranges)) {
+        return;
+      }
+      write(symbol, merged, current.header.encoding);
+    }
+  }
+
+  /**
+   * Appends records after the last one and then updates the header and the last range, which
+   * leaves the records where they are because the number of ranges stays the same.
+   *
+   * @return false if the file's fixed-point scale cannot represent the new prices
+   */
+  private boolean append(String symbol, StoredSeries current, CandleSeries newer,
+      DateRanges ranges) throws IOException {
+    Header header = current.header;
+    if (header.encoding == Encoding.FIXED_POINT && !fitsScale(newer, header.decimals)) {
+      return false;
+    }
+    ByteBuffer records = ByteBuffer.allocate(newer.size() * header.encoding.recordBytes);
+    putRecords(records, newer, header.encoding, header.decimals);
+    records.flip();
+    try (FileChannel channel = FileChannel.open(pathOf(symbol), StandardOpenOption.WRITE)) {
+      long position = header.recordsOffset() + (long) header.count * header.encoding.recordBytes;
+      while (records.hasRemaining()) {
+        position += channel.write(records, position);
+      }
+      Header updated = new Header(header.encoding, header.decimals, ranges,
+          header.count + newer.size());
+      ByteBuffer bytes = updated.toBytes();
+      while (bytes.hasRemaining()) {
+        channel.write(bytes, bytes.position());
+      }
+    }
+    CANDLES_WRITTEN.add(newer.size());
+    return true;
+  }
+
+  /** Replaces the file of {@code symbol} atomically with {@code series}. */
+  private void write(String symbol, StoredSeries series, Encoding preferred) throws IOException {
+    Encoding chosen = preferred;
+    int decimals = 0;
+    if (preferred == Encoding.FIXED_POINT) {
+      decimals = decimalsFor(series.candles);
+      if (decimals < 0) {
+        chosen = Encoding.RAW;
+        decimals = 0;
+      }
+    }
+    Header header = new Header(chosen, decimals, series.ranges, series.candles.size());
+    ByteBuffer bytes = ByteBuffer.allocate(header.recordsOffset() + series.candles.size()
+        * chosen.recordBytes);
+    bytes.put(header.toBytes());
+    putRecords(bytes, series.candles, chosen, decimals);
+    bytes.flip();
+
+    Path path = pathOf(symbol);
+    Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      while (bytes.hasRemaining()) {
+        channel.write(bytes);
+      }
+    }
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    CANDLES_WRITTEN.add(series.candles.size());
+  }
+
+  private StoredSeries readOrDiscard(String symbol) {
+    Path path = pathOf(symbol);
+    if (!Files.exists(path)) {
+      return null;
+    }
+    try {
+      return read(path);
+    } catch (IOException e) {
+      CORRUPT_FILES.increment();
+      log.warn("Discarding unreadable quote file " + path + ": " + e.getMessage());
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException ignored) {
+        // Overwritten by the next save anyway.
+      }
+      return null;
+    }
+  }
+
+  static StoredSeries read(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < HEADER_BYTES) {
+        throw new IOException("Truncated header, " + size + " bytes");
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      Header header = Header.read(buffer);
+      long end = header.recordsOffset() + (long) header.count * header.encoding.recordBytes;
+      if (end > size) {
+        throw new IOException("Header counts " + header.count + " candles but the file holds "
+            + Math.max(0, size - header.recordsOffset()) / header.encoding.recordBytes);
+      }
+      buffer.position(header.recordsOffset());
+      double scale = Math.pow(10, header.decimals);
+      CandleSeries.Builder candles = CandleSeries.builder(header.count);
+      for (int i = 0; i < header.count; i++) {
+        int day = buffer.getInt();
+        if (header.encoding == Encoding.RAW) {
+          candles.add(day, buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+              buffer.getDouble());
+        } else {
+          candles.add(day, buffer.getInt() / scale, buffer.getInt() / scale,
+              buffer.getInt() / scale, buffer.getInt() / scale);
+        }
+      }
+      return new StoredSeries(header.ranges, candles.build(), header);
+    }
+  }
+
+  private static void putRecords(ByteBuffer buffer, CandleSeries candles, Encoding encoding,
+      int decimals) {
+    double scale = Math.pow(10, decimals);
+    for (int i = 0; i < candles.size(); i++) {
+      buffer.putInt(candles.getEpochDay(i));
+      if (encoding == Encoding.RAW) {
+        buffer.putDouble(candles.getOpen(i));
+        buffer.putDouble(candles.getHigh(i));
+        buffer.putDouble(candles.getLow(i));
+        buffer.putDouble(candles.getClose(i));
+      } else {
+        buffer.putInt((int) Math.rint(candles.getOpen(i) * scale));
+        buffer.putInt((int) Math.rint(candles.getHigh(i) * scale));
+        buffer.putInt((int) Math.rint(candles.getLow(i) * scale));
+        buffer.putInt((int) Math.rint(candles.getClose(i) * scale));
+      }
+    }
+  }
+
+  /** The fewest decimals that represent every price exactly, or -1 if there are none. */
+  static int decimalsFor(CandleSeries candles) {
+    for (int decimals = 0; decimals <= MAX_DECIMALS; decimals++) {
+      if (fitsScale(candles, decimals)) {
+        return decimals;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean fitsScale(CandleSeries candles, int decimals) {
+    double scale = Math.pow(10, decimals);
+    for (int i = 0; i < candles.size(); i++) {
+      if (!fitsScale(candles.getOpen(i), scale) || !fitsScale(candles.getHigh(i), scale)
+          || !fitsScale(candles.getLow(i), scale) || !fitsScale(candles.getClose(i), scale)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean fitsScale(double price, double scale) {
+    double scaled = Math.rint(price * scale);
+    // Decoded exactly as read() does, so a price that passes comes back bit for bit.
+    return Math.abs(scaled) <= Integer.MAX_VALUE && (int) scaled / scale == price;
+  }
+
+  /**
+   * Checks the file of {@code symbol}: header and range table, record count against file length,
+   * ascending dates inside the covered ranges, and finite prices.
+   *
+   * @return the problems found, empty if the file is sound
+   */
+  public List<String> verify(String symbol) throws IOException {
+    Path path = pathOf(symbol);
+    List<String> problems = new ArrayList<>();
+    StoredSeries stored;
+    synchronized (lockFor(symbol)) {
+      try {
+        stored = read(path);
+      } catch (IOException e) {
+        problems.add(e.getMessage());
+        return problems;
+      }
+      long trailing = Files.size(path) - stored.header.recordsOffset()
+          - (long) stored.header.count * stored.header.encoding.recordBytes;
+      if (trailing > 0) {
+        problems.add(trailing + " bytes after the last counted record");
+      }
+    }
+    CandleSeries candles = stored.candles;
+    for (int i = 0; i < candles.size(); i++) {
+      LocalDate date = candles.getDate(i);
+      if (i > 0 && candles.getEpochDay(i) <= candles.getEpochDay(i - 1)) {
+        problems.add("Candle " + i + " on " + date + " is not after " + candles.getDate(i - 1));
+      }
+      if (!stored.ranges.covers(date, date)) {
+        problems.add("Candle " + i + " on " + date + " is outside " + stored.ranges);
+      }
+      if (!Double.isFinite(candles.getOpen(i) + candles.getHigh(i) + candles.getLow(i)
+          + candles.getClose(i))) {
+        problems.add("Candle " + i + " on " + date + " has a missing price");
+      }
+    }
+    return problems;
+  }
+
+  /**
+   * Rewrites the file of {@code symbol} in the most compact encoding that keeps every price
+   * exact, dropping bytes after the last counted record.
+   *
+   * @return bytes saved
+   */
+  public long compact(String symbol) throws IOException {
+    Path path = pathOf(symbol);
+    synchronized (lockFor(symbol)) {
+      long before = Files.size(path);
+      write(symbol, read(path), Encoding.FIXED_POINT);
+      return before - Files.size(path);
+    }
+  }
+
+  /** Symbols with a file in the store, in name order. */
+  public List<String> symbols() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.map(file -> file.getFileName().toString())
+          .filter(name -> name.endsWith(SUFFIX))
+          .map(name -> decodeSymbol(name.substring(0, name.length() - SUFFIX.length())))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  Path pathOf(String symbol) {
+    return directory.resolve(encodeSymbol(symbol) + SUFFIX);
+  }
+
+  private Object lockFor(String symbol) {
+    return locks.computeIfAbsent(symbol, ignored -> new Object());
+  }
+
+  /** File name of a symbol: letters, digits, '.', '-' and '_' as is, other bytes as %XX. */
+  static String encodeSymbol(String symbol) {
+    StringBuilder name = new StringBuilder(symbol.length());
+    for (byte b : symbol.getBytes(StandardCharsets.UTF_8)) {
+      char c = (char) (b & 0xFF);
+      if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+          || c == '.' || c == '-' || c == '_') {
+        name.append(c);
+      } else {
+        name.append('%').append(String.format("%02X", b & 0xFF));
+      }
+    }
+    return name.toString();
+  }
+
+  static String decodeSymbol(String name) {
+    byte[] bytes = new byte[name.length()];
+    int length = 0;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '%' && i + 2 < name.length()) {
+        bytes[length++] = (byte) Integer.parseInt(name.substring(i + 1, i + 3), 16);
+        i += 2;
+      } else {
+        bytes[length++] = (byte) c;
+      }
+    }
+    return new String(bytes, 0, length, StandardCharsets.UTF_8);
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return "QuoteStore{directory=" + directory
+        + ", hits=" + hits.get()
+        + ", misses=" + misses.get()
+        + '}';
+  }
+
+  /**
+   * Verifies or compacts every file of a store directory.
+   *
+   * <pre>
+   * QuoteStore verify|compact DIRECTORY
+   * </pre>
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2 || !("verify".equals(args[0]) || "compact".equals(args[0]))) {
+      System.err.println("Usage: QuoteStore verify|compact DIRECTORY");
+      System.exit(2);
+    }
+    QuoteStore store = new QuoteStore(Paths.get(args[1]));
+    int failed = 0;
+    long saved = 0;
+    for (String symbol : store.symbols()) {
+      List<String> problems = store.verify(symbol);
+      for (String problem : problems) {
+        System.out.println(symbol + ": " + problem);
+      }
+      if ("compact".equals(args[0])) {
+        try {
+          saved += store.compact(symbol);
+        } catch (IOException e) {
+          System.out.println(symbol + ": not compacted, " + e.getMessage());
+          failed++;
+        }
+      } else if (!problems.isEmpty()) {
+        failed++;
+      }
+    }
+    System.out.println(store.symbols().size() + " files, " + failed + " failed"
+        + ("compact".equals(args[0]) ? ", " + saved + " bytes saved" : ""));
+    if (failed > 0) {
+      System.exit(1);
+    }
+  }
+
+  /**
+   * File header, all fields big-endian: magic, version, encoding and decimals, then the first
+   * and last covered day, the number of records and, from version 2, the number of ranges, whose
+   * first and last days follow the 32 header bytes as a table.
+   */
+  static final class Header {
+
+    final byte version;
+    final Encoding encoding;
+    final int decimals;
+    final DateRanges ranges;
+    final int count;
+
+    Header(Encoding encoding, int decimals, DateRanges ranges, int count) {
+      this(VERSION, encoding, decimals, ranges, count);
+    }
+
+    private Header(byte version, Encoding encoding, int decimals, DateRanges ranges, int count) {
+      this.version = version;
+      this.encoding = encoding;
+      this.decimals = decimals;
+      this.ranges = ranges;
+      this.count = count;
+    }
+
+    /** Bytes before the first record. */
+    int recordsOffset() {
+      return HEADER_BYTES + (version == 1 ? 0 : 8 * ranges.size());
+    }
+
+    static Header read(ByteBuffer buffer) throws IOException {
+      int magic = buffer.getInt(0);
+      if (magic != MAGIC) {
+        throw new IOException("Not a quote file, magic " + Integer.toHexString(magic));
+      }
+      byte version = buffer.get(4);
+      if (version != 1 && version != VERSION) {
+        throw new IOException("Unsupported version " + version);
+      }
+      int encoding = buffer.get(5);
+      int decimals = buffer.get(6);
+      if (encoding < 0 || encoding >= Encoding.values().length || decimals < 0
+          || decimals > MAX_DECIMALS) {
+        throw new IOException("Unsupported encoding " + encoding + " with " + decimals
+            + " decimals");
+      }
+      int count = buffer.getInt(16);
+      if (count < 0) {
+        throw new IOException("Negative candle count " + count);
+      }
+      long[] days;
+      if (version == 1) {
+        days = new long[] {buffer.getInt(8), buffer.getInt(12)};
+      } else {
+        int ranges = buffer.getInt(20);
+        if (ranges < 1 || ranges > CandleCache.MAX_RANGES) {
+          throw new IOException("Unsupported range count " + ranges);
+        }
+        if (buffer.limit() < HEADER_BYTES + 8 * ranges) {
+          throw new IOException("Truncated range table, " + buffer.limit() + " bytes");
+        }
+        days = new long[2 * ranges];
+        for (int i = 0; i < days.length; i++) {
+          days[i] = buffer.getInt(HEADER_BYTES + 4 * i);
+        }
+      }
+      try {
+        return new Header(version, Encoding.values()[encoding], decimals,
+            DateRanges.ofEpochDays(days), count);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid covered ranges: " + e.getMessage());
+      }
+    }
+
+    ByteBuffer toBytes() {
+      ByteBuffer bytes = ByteBuffer.allocate(recordsOffset());
+      bytes.putInt(0, MAGIC);
+      bytes.put(4, version);
+      bytes.put(5, (byte) encoding.ordinal());
+      bytes.put(6, (byte) decimals);
+      bytes.putInt(8, (int) ranges.fromEpochDay(0));
+      bytes.putInt(12, (int) ranges.throughEpochDay(ranges.size() - 1));
+      bytes.putInt(16, count);
+      if (version != 1) {
+        bytes.putInt(20, ranges.size());
+        for (int range = 0; range < ranges.size(); range++) {
+          bytes.putInt(HEADER_BYTES + 8 * range, (int) ranges.fromEpochDay(range));
+          bytes.putInt(HEADER_BYTES + 8 * range + 4, (int) ranges.throughEpochDay(range));
+        }
+      }
+      return bytes;
+    }
+  }
+
+  /** Candles of one symbol for its covered date ranges, with the header they were read with. */
+  static final class StoredSeries {
+
+    static final StoredSeries EMPTY =
+        new StoredSeries(DateRanges.EMPTY, CandleSeries.EMPTY, null);
+
+    final DateRanges ranges;
+    final CandleSeries candles;
+    /** Null for series that have not been written yet. */
+    final Header header;
+
+    StoredSeries(DateRanges ranges, CandleSeries candles, Header header) {
+      this.ranges = ranges;
+      this.candles = candles;
+      this.header = header;
+    }
+
+    /**
+     * This series with {@code added} for {@code [from, through]}, replacing the candles stored
+     * for those days. Past {@code MAX_RANGES} ranges, the shortest of the others are dropped.
+     */
+    StoredSeries with(LocalDate from, LocalDate through, CandleSeries added) {
+      DateRanges merged = ranges.with(from, through);
+      CandleSeries all = CandleSeries.concat(
+          candles.between(LocalDate.MIN, from.minusDays(1)),
+          added,
+          candles.between(through.plusDays(1), LocalDate.MAX));
+      DateRanges kept = merged.limit(CandleCache.MAX_RANGES, from);
+      return new StoredSeries(kept, kept == merged ? all : kept.select(all), header);
+    }
+  }
+
+}
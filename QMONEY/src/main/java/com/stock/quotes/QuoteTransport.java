@@ -0,0 +1,35 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import java.io.Closeable;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Fetches Tiingo daily prices. Implementations report an unknown ticker with
+ * {@link UnknownSymbolException} and any other failed response with
+ * {@link QuoteServiceException}, through the returned future.
+ */
+public interface QuoteTransport extends Closeable {
+
+  /** Candles of {@code symbol} for the inclusive range {@code [from, to]}, in date order. */
+  CompletableFuture<CandleSeries> fetchAsync(String symbol, LocalDate from, LocalDate to);
+
+  /** Blocking form of {@link #fetchAsync}. */
+  default CandleSeries fetch(String symbol, LocalDate from, LocalDate to) {
+    return Futures.join(fetchAsync(symbol, from, to));
+  }
+
+  /**
+   * True if fetches are already kept within the provider's quota, so that callers do not pace
+   * them a second time. The default is false.
+   */
+  default boolean isPaced() {
+    return false;
+  }
+
+  /** Releases pooled connections and threads. The default does nothing. */
+  @Override
+  default void close() {
+  }
+}
@@ -0,0 +1,288 @@
+package com.stock.quotes;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Paces quote requests so that they stay within the provider's quota.
+ *
+ * <p>Every request reserves one permit from each {@link TokenBucket}, e.g. one per hour and one
+ * per day, and waits until the slowest of them allows it; bursts are queued and spread out
+ * instead of failing. A response with status 429 drains the buckets, since the provider knows
+ * better than our count how much quota is left, and the request is retried after an exponential
+ * backoff with jitter, or after the provider's {@code Retry-After} if that is longer. Any other
+ * failure is passed through unchanged.
+ *
+ * <p>The quota is per account, so one process should normally use {@link #shared()}.
+ */
+public class RequestScheduler {
+
+  private static final Logger log = LogManager.getLogger(RequestScheduler.class);
+
+  public static final int DEFAULT_REQUESTS_PER_HOUR = 500;
+  public static final int DEFAULT_REQUESTS_PER_DAY = 20_000;
+  public static final int DEFAULT_MAX_RETRIES = 5;
+  public static final Duration DEFAULT_BASE_BACKOFF = Duration.ofSeconds(1);
+  public static final Duration DEFAULT_MAX_BACKOFF = Duration.ofMinutes(5);
+
+  /** System properties overriding the quota of {@link #shared()}. */
+  public static final String REQUESTS_PER_HOUR_PROPERTY = "qmoney.tiingo.requestsPerHour";
+  public static final String REQUESTS_PER_DAY_PROPERTY = "qmoney.tiingo.requestsPerDay";
+
+  private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+      runnable -> {
+        Thread thread = new Thread(runnable, "quote-scheduler-timer");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private static volatile RequestScheduler shared;
+
+  private final List<TokenBucket> buckets;
+  private final int maxRetries;
+  private final long baseBackoffNanos;
+  private final long maxBackoffNanos;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong delayedRequests = new AtomicLong();
+  private final AtomicLong throttledResponses = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+
+  public RequestScheduler(List<TokenBucket> buckets, int maxRetries, Duration baseBackoff,
+      Duration maxBackoff) {
+    if (maxRetries < 0) {
+      throw new IllegalArgumentException("maxRetries must not be negative, was " + maxRetries);
+    }
+    this.buckets = Collections.unmodifiableList(new ArrayList<>(buckets));
+    this.maxRetries = maxRetries;
+    this.baseBackoffNanos = baseBackoff.toNanos();
+    this.maxBackoffNanos = maxBackoff.toNanos();
+  }
+
+  /** A scheduler with Tiingo's per-hour and per-day limits and the default retry policy. */
+  public static RequestScheduler forQuota(int requestsPerHour, int requestsPerDay) {
+    return new RequestScheduler(Arrays.asList(
+        new TokenBucket("hourly", requestsPerHour, Duration.ofHours(1)),
+        new TokenBucket("daily", requestsPerDay, Duration.ofDays(1))),
+        DEFAULT_MAX_RETRIES, DEFAULT_BASE_BACKOFF, DEFAULT_MAX_BACKOFF);
+  }
+
+  /** A scheduler that never waits or retries, for canned or local quote sources. */
+  public static RequestScheduler unlimited() {
+    return new RequestScheduler(Collections.emptyList(), 0, Duration.ZERO, Duration.ZERO);
+  }
+
+  /**
+   * The process-wide scheduler, created on first use with the limits from the
+   * {@value #REQUESTS_PER_HOUR_PROPERTY} and {@value #REQUESTS_PER_DAY_PROPERTY} system
+   * properties, or the defaults.
+   */
+  public static RequestScheduler shared() {
+    RequestScheduler scheduler = shared;
+    if (scheduler == null) {
+      synchronized (RequestScheduler.class) {
+        scheduler = shared;
+        if (scheduler == null) {
+          scheduler = forQuota(
+              Integer.getInteger(REQUESTS_PER_HOUR_PROPERTY, DEFAULT_REQUESTS_PER_HOUR),
+              Integer.getInteger(REQUESTS_PER_DAY_PROPERTY, DEFAULT_REQUESTS_PER_DAY));
+          shared = scheduler;
+        }
+      }
+    }
+    return scheduler;
+  }
+
+  /**
+   * Runs {@code request} on the calling thread once the quota allows it, retrying while the
+   * provider answers 429.
+   *
+   * @throws QuoteServiceException if the request still fails, or if the thread is interrupted
+   *     while waiting
+   */
+  public <T> T execute(Supplier<T> request) {
+    for (int attempt = 0; ; attempt++) {
+      sleep(acquire());
+      try {
+        return request.get();
+      } catch (QuoteServiceException e) {
+        if (!shouldRetry(e, attempt)) {
+          throw e;
+        }
+        sleep(throttled(e, attempt));
+      }
+    }
+  }
+
+  /**
+   * Asynchronous form of {@link #execute}. Waiting happens on a timer rather than on a pooled
+   * thread; {@code request} is started on the calling thread when no wait is needed and on the
+   * common pool otherwise.
+   */
+  public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> request) {
+    return attempt(request, 0);
+  }
+
+  private <T> CompletableFuture<T> attempt(Supplier<CompletableFuture<T>> request, int attempt) {
+    long wait = acquire();
+    CompletableFuture<T> response = wait == 0 ? start(request)
+        : delay(wait).thenComposeAsync(ignored -> start(request));
+    return response.handle((value, failure) -> {
+      if (failure == null) {
+        return CompletableFuture.completedFuture(value);
+      }
+      Throwable cause = Futures.unwrap(failure);
+      if (cause instanceof QuoteServiceException
+          && shouldRetry((QuoteServiceException) cause, attempt)) {
+        long backoff = throttled((QuoteServiceException) cause, attempt);
+        return delay(backoff).thenCompose(ignored -> attempt(request, attempt + 1));
+      }
+      return Futures.<T>failed(cause);
+    }).thenCompose(Function.identity());
+  }
+
+  private static <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> request) {
+    try {
+      return request.get();
+    } catch (RuntimeException e) {
+      return Futures.failed(e);
+    }
+  }
+
+  /** Reserves a permit from every bucket and returns the nanoseconds until all allow it. */
+  private long acquire() {
+    requests.incrementAndGet();
+    long wait = 0;
+    for (TokenBucket bucket : buckets) {
+      wait = Math.max(wait, bucket.reserve());
+    }
+    if (wait > 0) {
+      delayedRequests.incrementAndGet();
+      waitNanos.addAndGet(wait);
+    }
+    return wait;
+  }
+
+  /**
+   * Takes a permit from every bucket if all of them have one to spare right now, and otherwise
+   * none, for requests that are only worth sending when they cost no wait, such as hedges; they
+   * then use unspent quota and never delay requests that are queued.
+   */
+  public synchronized boolean tryAcquire() {
+    for (TokenBucket bucket : buckets) {
+      if (bucket.available() < 1) {
+        return false;
+      }
+    }
+    requests.incrementAndGet();
+    for (TokenBucket bucket : buckets) {
+      bucket.reserve();
+    }
+    return true;
+  }
+
+  /**
+   * Drains the buckets after a 429 to a request that was not sent through {@link #execute} or
+   * {@link #executeAsync}, e.g. a hedge, as the scheduler does for its own requests.
+   */
+  public void recordThrottled() {
+    throttledResponses.incrementAndGet();
+    for (TokenBucket bucket : buckets) {
+      bucket.drain();
+    }
+  }
+
+  private boolean shouldRetry(QuoteServiceException e, int attempt) {
+    return e.isThrottled() && attempt < maxRetries;
+  }
+
+  /** Records a 429 and returns the nanoseconds to back off before the next attempt. */
+  private long throttled(QuoteServiceException e, int attempt) {
+    recordThrottled();
+    QuoteMetrics.RETRIES.increment();
+    long backoff = backoffNanos(attempt, e.getRetryAfter());
+    log.warn("Quota exceeded, retrying in " + TimeUnit.NANOSECONDS.toMillis(backoff) + " ms ("
+        + (attempt + 1) + "/" + maxRetries + "): " + e.getMessage());
+    waitNanos.addAndGet(backoff);
+    return backoff;
+  }
+
+  /**
+   * Exponential backoff with "equal jitter": half of the exponential delay plus a random share of
+   * the other half, so concurrent callers that were throttled together do not retry together.
+   */
+  long backoffNanos(int attempt, Duration retryAfter) {
+    long exponential = baseBackoffNanos << Math.min(attempt, 30);
+    if (exponential <= 0 || exponential > maxBackoffNanos) {
+      exponential = maxBackoffNanos;
+    }
+    long half = exponential / 2;
+    long jittered = half + ThreadLocalRandom.current().nextLong(half + 1);
+    return retryAfter == null ? jittered : Math.max(jittered, retryAfter.toNanos());
+  }
+
+  private static CompletableFuture<Void> delay(long nanos) {
+    CompletableFuture<Void> timer = new CompletableFuture<>();
+    TIMER.schedule(() -> timer.complete(null), nanos, TimeUnit.NANOSECONDS);
+    return timer;
+  }
+
+  private static void sleep(long nanos) {
+    if (nanos <= 0) {
+      return;
+    }
+    try {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new QuoteServiceException("Interrupted while waiting for request quota", e);
+    }
+  }
+
+  public List<TokenBucket> getBuckets() {
+    return buckets;
+  }
+
+  /** Requests and retries that went through the scheduler. */
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /** Requests that had to wait for a permit. */
+  public long getDelayedRequestCount() {
+    return delayedRequests.get();
+  }
+
+  public long getThrottledResponseCount() {
+    return throttledResponses.get();
+  }
+
+  /** Total time requests were held back, for quota waits and backoff together. */
+  public Duration getTotalWait() {
+    return Duration.ofNanos(waitNanos.get());
+  }
+
+  @Override
+  public String toString() {
+    return "RequestScheduler{"
+        + "buckets=" + buckets
+        + ", requests=" + requests
+        + ", delayed=" + delayedRequests
+        + ", throttled=" + throttledResponses
+        + ", totalWait=" + getTotalWait()
+        + '}';
+  }
+}
@@ -0,0 +1,66 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Adapts a blocking {@link RestTemplate} to {@link QuoteTransport}. The request runs on the
+ * calling thread, so the returned future is already complete.
+ */
+public class RestTemplateQuoteTransport implements QuoteTransport {
+
+  private final RestTemplate restTemplate;
+  private final UriBuilder uriBuilder;
+
+  /** Builds the request URI for a symbol and an inclusive date range. */
+  @FunctionalInterface
+  public interface UriBuilder {
+    String build(String symbol, LocalDate from, LocalDate to);
+  }
+
+  public RestTemplateQuoteTransport(RestTemplate restTemplate, UriBuilder uriBuilder) {
+    this.restTemplate = restTemplate;
+    this.uriBuilder = uriBuilder;
+  }
+
+  @Override
+  public CompletableFuture<CandleSeries> fetchAsync(String symbol, LocalDate from, LocalDate to) {
+    try {
+      return CompletableFuture.completedFuture(fetch(symbol, from, to));
+    } catch (RuntimeException e) {
+      return Futures.failed(e);
+    }
+  }
+
+  @Override
+  public CandleSeries fetch(String symbol, LocalDate from, LocalDate to) {
+    CandleSeries candles;
+    try {
+      candles = restTemplate.getForObject(uriBuilder.build(symbol, from, to), CandleSeries.class);
+    } catch (HttpClientErrorException e) {
+      if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+        throw new UnknownSymbolException(symbol, e);
+      }
+      throw failed(symbol, e);
+    } catch (RestClientResponseException e) {
+      throw failed(symbol, e);
+    } catch (RestClientException e) {
+      throw new QuoteServiceException("Tiingo request for " + symbol + " failed", e);
+    }
+    return candles == null ? CandleSeries.EMPTY : candles;
+  }
+
+  private static QuoteServiceException failed(String symbol, RestClientResponseException e) {
+    HttpHeaders headers = e.getResponseHeaders();
+    return new QuoteServiceException("Tiingo request for " + symbol + " failed",
+        e.getRawStatusCode(), QuoteServiceException.parseRetryAfter(
+            headers == null ? null : headers.getFirst(HttpHeaders.RETRY_AFTER)), e);
+  }
+}
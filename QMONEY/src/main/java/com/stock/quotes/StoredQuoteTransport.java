@@ -0,0 +1,48 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Answers fetches from a {@link QuoteStore} and goes to the remote transport only for the
+ * candles the store does not hold yet. Only those remote fetches count against the quota: a
+ * remote transport that is not {@linkplain QuoteTransport#isPaced() paced} already is paced by
+ * {@link RequestScheduler#shared()}.
+ */
+public class StoredQuoteTransport implements QuoteTransport {
+
+  private final QuoteStore store;
+  private final QuoteTransport remote;
+
+  public StoredQuoteTransport(QuoteStore store, QuoteTransport remote) {
+    this.store = store;
+    this.remote = remote.isPaced() ? remote
+        : new ThrottledQuoteTransport(remote, RequestScheduler.shared());
+  }
+
+  @Override
+  public CompletableFuture<CandleSeries> fetchAsync(String symbol, LocalDate from, LocalDate to) {
+    return store.getAsync(symbol, from, to, remote::fetchAsync);
+  }
+
+  @Override
+  public CandleSeries fetch(String symbol, LocalDate from, LocalDate to) {
+    return store.get(symbol, from, to, remote::fetch);
+  }
+
+  @Override
+  public boolean isPaced() {
+    return true;
+  }
+
+  public QuoteStore getStore() {
+    return store;
+  }
+
+  /** Closes the remote transport; the store holds no open files between calls. */
+  @Override
+  public void close() {
+    remote.close();
+  }
+}
@@ -0,0 +1,66 @@
+package com.stock.quotes;
+
+import com.stock.dto.CandleSeries;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends every fetch of a {@link QuoteTransport} through a {@link RequestScheduler}, and records
+ * its latency, excluding the wait for quota, in {@link QuoteMetrics}.
+ */
+public class ThrottledQuoteTransport implements QuoteTransport {
+
+  private final QuoteTransport delegate;
+  private final RequestScheduler scheduler;
+
+  public ThrottledQuoteTransport(QuoteTransport delegate, RequestScheduler scheduler) {
+    this.delegate = delegate;
+    this.scheduler = scheduler;
+  }
+
+  @Override
+  public CompletableFuture<CandleSeries> fetchAsync(String symbol, LocalDate from, LocalDate to) {
+    return scheduler.executeAsync(() -> {
+      long start = QuoteMetrics.startFetch();
+      CompletableFuture<CandleSeries> candles;
+      try {
+        candles = delegate.fetchAsync(symbol, from, to);
+      } catch (RuntimeException e) {
+        QuoteMetrics.endFetch(symbol, start, e);
+        throw e;
+      }
+      return candles.whenComplete(
+          (ignored, failure) -> QuoteMetrics.endFetch(symbol, start, failure));
+    });
+  }
+
+  @Override
+  public CandleSeries fetch(String symbol, LocalDate from, LocalDate to) {
+    return scheduler.execute(() -> {
+      long start = QuoteMetrics.startFetch();
+      Throwable failure = null;
+      try {
+        return delegate.fetch(symbol, from, to);
+      } catch (RuntimeException | Error e) {
+        failure = e;
+        throw e;
+      } finally {
+        QuoteMetrics.endFetch(symbol, start, failure);
+      }
+    });
+  }
+
+  @Override
+  public boolean isPaced() {
+    return true;
+  }
+
+  public RequestScheduler getScheduler() {
+    return scheduler;
+  }
+
+  @Override
+  public void close() {
+    delegate.close();
+  }
+}
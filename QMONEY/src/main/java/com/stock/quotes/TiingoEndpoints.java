@@ -0,0 +1,79 @@
+package com.stock.quotes;
+
+import java.time.LocalDate;
+
+/**
+ * Tiingo URLs, built in one place so that every caller can be pointed at another server, such as
+ * {@link com.stock.standin.TiingoStandInServer}, through the {@value #BASE_URL_PROPERTY} system
+ * property.
+ */
+public final class TiingoEndpoints {
+
+  public static final String BASE_URL_PROPERTY = "qmoney.tiingo.baseUrl";
+  public static final String DEFAULT_BASE_URL = "https://api.tiingo.com";
+
+  /**
+   * Columns asked of the daily-prices endpoint, comma-separated; the date always comes with them.
+   * Empty asks for every column.
+   */
+  public static final String COLUMNS_PROPERTY = "qmoney.tiingo.columns";
+  /** The prices a candle needs, out of the 13 fields Tiingo sends by default. */
+  public static final String CANDLE_COLUMNS = "open,high,low,close";
+
+  private static final String DAILY_PATH = "/tiingo/daily/";
+  private static final String IEX_PATH = "/iex/";
+
+  private TiingoEndpoints() {
+  }
+
+  /** The configured base URL, without a trailing slash. Read on every call. */
+  public static String baseUrl() {
+    return stripTrailingSlash(System.getProperty(BASE_URL_PROPERTY, DEFAULT_BASE_URL));
+  }
+
+  /** The configured column projection, or null for every column. Read on every call. */
+  public static String columns() {
+    String columns = System.getProperty(COLUMNS_PROPERTY, CANDLE_COLUMNS).trim();
+    return columns.isEmpty() ? null : columns;
+  }
+
+  /** Daily prices of {@code symbol} for {@code [from, to]} on the configured server. */
+  public static String dailyPrices(String symbol, LocalDate from, LocalDate to, String token) {
+    return dailyPrices(baseUrl(), symbol, from, to, token);
+  }
+
+  public static String dailyPrices(String baseUrl, String symbol, LocalDate from, LocalDate to,
+      String token) {
+    return dailyPrices(baseUrl, symbol, from, to, token, null);
+  }
+
+  /**
+   * Daily prices with only {@code columns}, such as {@link #CANDLE_COLUMNS}, in each candle, or
+   * every column if null.
+   */
+  public static String dailyPrices(String baseUrl, String symbol, LocalDate from, LocalDate to,
+      String token, String columns) {
+    return stripTrailingSlash(baseUrl) + DAILY_PATH + symbol + "/prices?startDate=" + from
+        + "&endDate=" + to + (columns == null ? "" : "&columns=" + columns) + "&token=" + token;
+  }
+
+  /**
+   * Latest IEX top-of-book prices of every ticker in {@code tickers}, one request for all of them.
+   * The current session only; there is no history on this endpoint.
+   */
+  public static String iexTopOfBook(String baseUrl, Iterable<String> tickers, String token) {
+    return stripTrailingSlash(baseUrl) + IEX_PATH + "?tickers=" + String.join(",", tickers)
+        + "&token=" + token;
+  }
+
+  /** Symbol of a daily-prices URL built by {@link #dailyPrices}, or "unknown". */
+  public static String symbolOf(String url) {
+    int start = url.indexOf(DAILY_PATH);
+    int end = url.indexOf('/', start + DAILY_PATH.length());
+    return start < 0 || end < 0 ? "unknown" : url.substring(start + DAILY_PATH.length(), end);
+  }
+
+  static String stripTrailingSlash(String url) {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+}
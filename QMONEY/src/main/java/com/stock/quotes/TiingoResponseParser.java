@@ -0,0 +1,216 @@
+package com.stock.quotes;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.stock.dto.CandleSeries;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Token-level parser for the Tiingo daily-prices payload ({@code /tiingo/daily/{symbol}/prices}).
+ *
+ * <p>Unlike binding the body to {@code TiingoCandle[]}, nothing but the date and OHLC prices is
+ * materialized, and the body is consumed straight from the stream. {@link #parseSeries} fills a
+ * {@link CandleSeries}; {@link #parseEndpoints} keeps only the first and the last candle, so its
+ * memory use does not depend on the length of the history. {@link #parseTopOfBook} reads the
+ * multi-ticker IEX payload ({@code /iex/?tickers=...}).
+ */
+public final class TiingoResponseParser {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private TiingoResponseParser() {
+  }
+
+  /** Reads the whole payload into a columnar series. The stream is closed. */
+  public static CandleSeries parseSeries(InputStream body) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      expectArray(parser);
+      return CandleSeries.Deserializer.readTiingoArray(parser);
+    }
+  }
+
+  /**
+   * Reads only the first and the last candle of the payload. Candles in between are tokenized
+   * but not retained. The stream is closed.
+   */
+  public static Endpoints parseEndpoints(InputStream body) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      expectArray(parser);
+      Endpoints endpoints = new Endpoints();
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+        boolean first = endpoints.count == 0;
+        endpoints.lastOpen = Double.NaN;
+        endpoints.lastClose = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          JsonToken value = parser.nextToken();
+          if (value == JsonToken.VALUE_NULL) {
+            continue;
+          }
+          switch (field) {
+            case "date":
+              endpoints.lastEpochDay = CandleSeries.Deserializer.parseEpochDay(parser.getText());
+              break;
+            case "open":
+              endpoints.lastOpen = parser.getDoubleValue();
+              break;
+            case "close":
+              endpoints.lastClose = parser.getDoubleValue();
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+        if (first) {
+          endpoints.firstEpochDay = endpoints.lastEpochDay;
+          endpoints.firstOpen = endpoints.lastOpen;
+          endpoints.firstClose = endpoints.lastClose;
+        }
+        endpoints.count++;
+      }
+      if (token != JsonToken.END_ARRAY) {
+        throw new JsonParseException(parser, "Expected a Tiingo candle object, got " + token);
+      }
+      return endpoints;
+    }
+  }
+
+  /**
+   * Reads a multi-ticker IEX top-of-book payload into one series per ticker, keyed by the
+   * upper-case ticker. Each series holds the current session's candle, closing at the latest
+   * price, or nothing if the session has no trades yet. Tickers Tiingo does not know are absent.
+   * The stream is closed.
+   */
+  public static Map<String, CandleSeries> parseTopOfBook(InputStream body) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      expectArray(parser);
+      Map<String, CandleSeries> quotes = new HashMap<>();
+      JsonToken token;
+      while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+        String ticker = null;
+        long epochDay = 0;
+        double open = Double.NaN;
+        double high = Double.NaN;
+        double low = Double.NaN;
+        double tngoLast = Double.NaN;
+        double last = Double.NaN;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String field = parser.getCurrentName();
+          JsonToken value = parser.nextToken();
+          if (value == JsonToken.VALUE_NULL) {
+            continue;
+          }
+          switch (field) {
+            case "ticker":
+              ticker = parser.getText().toUpperCase(Locale.ROOT);
+              break;
+            case "timestamp":
+              // Exchange-local time with an offset, so the date is the session's date.
+              epochDay = CandleSeries.Deserializer.parseEpochDay(parser.getText());
+              break;
+            case "open":
+              open = parser.getDoubleValue();
+              break;
+            case "high":
+              high = parser.getDoubleValue();
+              break;
+            case "low":
+              low = parser.getDoubleValue();
+              break;
+            case "tngoLast":
+              tngoLast = parser.getDoubleValue();
+              break;
+            case "last":
+              last = parser.getDoubleValue();
+              break;
+            default:
+              parser.skipChildren();
+          }
+        }
+        if (ticker == null) {
+          throw new JsonParseException(parser, "IEX quote without a ticker");
+        }
+        double close = Double.isNaN(tngoLast) ? last : tngoLast;
+        if (Double.isNaN(open) || Double.isNaN(close)) {
+          quotes.put(ticker, CandleSeries.EMPTY);
+        } else {
+          quotes.put(ticker, CandleSeries.builder(1).add(epochDay, open,
+              Double.isNaN(high) ? Math.max(open, close) : high,
+              Double.isNaN(low) ? Math.min(open, close) : low, close).build());
+        }
+      }
+      if (token != JsonToken.END_ARRAY) {
+        throw new JsonParseException(parser, "Expected an IEX quote object, got " + token);
+      }
+      return quotes;
+    }
+  }
+
+  private static void expectArray(JsonParser parser) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token != JsonToken.START_ARRAY) {
+      throw new JsonParseException(parser, "Expected a Tiingo price array, got " + token);
+    }
+  }
+
+  /** First and last candle of a payload. Prices are {@link Double#NaN} when absent. */
+  public static final class Endpoints {
+
+    private int count;
+    private long firstEpochDay;
+    private double firstOpen = Double.NaN;
+    private double firstClose = Double.NaN;
+    private long lastEpochDay;
+    private double lastOpen = Double.NaN;
+    private double lastClose = Double.NaN;
+
+    public int getCount() {
+      return count;
+    }
+
+    public boolean isEmpty() {
+      return count == 0;
+    }
+
+    public LocalDate getFirstDate() {
+      return isEmpty() ? null : LocalDate.ofEpochDay(firstEpochDay);
+    }
+
+    public double getFirstOpen() {
+      return firstOpen;
+    }
+
+    public double getFirstClose() {
+      return firstClose;
+    }
+
+    public LocalDate getLastDate() {
+      return isEmpty() ? null : LocalDate.ofEpochDay(lastEpochDay);
+    }
+
+    public double getLastOpen() {
+      return lastOpen;
+    }
+
+    public double getLastClose() {
+      return lastClose;
+    }
+
+    @Override
+    public String toString() {
+      return "Endpoints{"
+          + "count=" + count
+          + ", first=" + getFirstDate() + " open " + firstOpen + " close " + firstClose
+          + ", last=" + getLastDate() + " open " + lastOpen + " close " + lastClose
+          + '}';
+    }
+  }
+}
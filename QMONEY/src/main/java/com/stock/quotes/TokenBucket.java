@@ -0,0 +1,84 @@
+package com.stock.quotes;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket holding up to {@code capacity} request permits and refilling at
+ * {@code capacity / period}, so a full bucket allows a burst of {@code capacity} requests and
+ * the long-run rate never exceeds the quota.
+ *
+ * <p>Permits are reserved rather than tried: {@link #reserve()} always takes one and returns how
+ * long the caller has to wait before using it, letting the bucket go into debt. Callers therefore
+ * queue up in reservation order and are spaced evenly instead of being rejected. Thread-safe.
+ */
+public class TokenBucket {
+
+  private final String name;
+  private final long capacity;
+  private final double nanosPerToken;
+  private final LongSupplier nanoTime;
+
+  private double tokens;
+  private long lastRefill;
+
+  public TokenBucket(String name, long capacity, Duration period) {
+    this(name, capacity, period, System::nanoTime);
+  }
+
+  TokenBucket(String name, long capacity, Duration period, LongSupplier nanoTime) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1, was " + capacity);
+    }
+    if (period.isNegative() || period.isZero()) {
+      throw new IllegalArgumentException("period must be positive, was " + period);
+    }
+    this.name = name;
+    this.capacity = capacity;
+    this.nanosPerToken = (double) period.toNanos() / capacity;
+    this.nanoTime = nanoTime;
+    this.tokens = capacity;
+    this.lastRefill = nanoTime.getAsLong();
+  }
+
+  /** Takes one permit and returns the nanoseconds to wait before it may be used, 0 if none. */
+  public synchronized long reserve() {
+    refill();
+    tokens -= 1;
+    return tokens >= 0 ? 0 : (long) Math.ceil(-tokens * nanosPerToken);
+  }
+
+  /**
+   * Empties the bucket, e.g. after the provider answered 429 and our count of the remaining
+   * quota turned out to be too optimistic.
+   */
+  public synchronized void drain() {
+    refill();
+    tokens = Math.min(tokens, 0);
+  }
+
+  /** Permits available right now; negative while callers are queued. */
+  public synchronized double available() {
+    refill();
+    return tokens;
+  }
+
+  private void refill() {
+    long now = nanoTime.getAsLong();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) / nanosPerToken);
+    lastRefill = now;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  @Override
+  public String toString() {
+    return "TokenBucket{" + name + ", " + String.format("%.1f", available()) + "/" + capacity + '}';
+  }
+}
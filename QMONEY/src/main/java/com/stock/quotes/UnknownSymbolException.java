@@ -0,0 +1,24 @@
+package com.stock.quotes;
+
+/**
+ * Thrown when the quote provider does not know a ticker, e.g. "CISCO" instead of "CSCO".
+ */
+public class UnknownSymbolException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String symbol;
+
+  public UnknownSymbolException(String symbol) {
+    this(symbol, null);
+  }
+
+  public UnknownSymbolException(String symbol, Throwable cause) {
+    super("Unknown symbol: " + symbol, cause);
+    this.symbol = symbol;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+}
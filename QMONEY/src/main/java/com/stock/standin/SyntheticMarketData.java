@@ -0,0 +1,185 @@
+package com.stock.standin;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.stock.dto.CandleSeries;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Deterministic daily candles for any symbol. Every weekday from {@code firstDay} to
+ * {@code lastDay} is a trading day, and each symbol follows its own random walk seeded from the
+ * symbol and the generator seed, so the same symbol always gets the same prices regardless of the
+ * range requested. Histories are generated once per symbol and kept.
+ */
+public class SyntheticMarketData {
+
+  public static final LocalDate DEFAULT_FIRST_DAY = LocalDate.parse("2000-01-03");
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final long seed;
+  private final LocalDate firstDay;
+  private final LocalDate lastDay;
+  private final ConcurrentMap<String, CandleSeries> histories = new ConcurrentHashMap<>();
+
+  /** Twenty years of history up to today. */
+  public SyntheticMarketData(long seed) {
+    this(seed, DEFAULT_FIRST_DAY, LocalDate.now());
+  }
+
+  public SyntheticMarketData(long seed, LocalDate firstDay, LocalDate lastDay) {
+    if (lastDay.isBefore(firstDay)) {
+      throw new IllegalArgumentException("lastDay " + lastDay + " is before firstDay " + firstDay);
+    }
+    this.seed = seed;
+    this.firstDay = firstDay;
+    this.lastDay = lastDay;
+  }
+
+  public LocalDate getFirstDay() {
+    return firstDay;
+  }
+
+  public LocalDate getLastDay() {
+    return lastDay;
+  }
+
+  /** The full history of {@code symbol}. */
+  public CandleSeries candles(String symbol) {
+    return histories.computeIfAbsent(symbol, this::generate);
+  }
+
+  /** The candles of {@code symbol} within {@code [from, to]}. */
+  public CandleSeries candles(String symbol, LocalDate from, LocalDate to) {
+    return candles(symbol).between(from, to);
+  }
+
+  private CandleSeries generate(String symbol) {
+    SplittableRandom random = new SplittableRandom(seed * 31 + symbol.hashCode());
+    double price = 5 + random.nextDouble() * 495;
+    // A small per-symbol drift keeps the returns of different symbols apart.
+    double drift = (random.nextDouble() - 0.45) * 0.002;
+    CandleSeries.Builder candles = CandleSeries.builder(
+        (int) ((lastDay.toEpochDay() - firstDay.toEpochDay()) * 5 / 7 + 1));
+    for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+      DayOfWeek dayOfWeek = day.getDayOfWeek();
+      if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
+        continue;
+      }
+      double open = price;
+      price = Math.max(0.5, price * (1 + drift + (random.nextDouble() - 0.5) * 0.04));
+      double high = Math.max(open, price) * (1 + random.nextDouble() * 0.01);
+      double low = Math.min(open, price) * (1 - random.nextDouble() * 0.01);
+      candles.add(day.toEpochDay(), round(open), round(high), round(low), round(price));
+    }
+    return candles.build();
+  }
+
+  private static double round(double price) {
+    return Math.round(price * 100) / 100.0;
+  }
+
+  /** Deterministic daily volume of {@code symbol} at {@code epochDay}. */
+  static long volume(String symbol, long epochDay) {
+    return 100_000 + Math.floorMod(symbol.hashCode() * 31L + epochDay * 7919L, 10_000_000L);
+  }
+
+  /**
+   * Writes {@code candles} as a Tiingo daily-prices payload, with all the fields the real API
+   * returns. Adjusted prices equal the raw ones since the data has no splits or dividends. The
+   * stream is closed.
+   */
+  public static void writeTiingoJson(String symbol, CandleSeries candles, OutputStream out)
+      throws IOException {
+    writeTiingoJson(symbol, candles, null, out);
+  }
+
+  /**
+   * Writes {@code candles} as a Tiingo daily-prices payload with only the fields in
+   * {@code columns}, plus the date as Tiingo always sends it, or every field if null. The stream
+   * is closed.
+   */
+  public static void writeTiingoJson(String symbol, CandleSeries candles, Set<String> columns,
+      OutputStream out) throws IOException {
+    try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+      json.writeStartArray();
+      for (int i = 0; i < candles.size(); i++) {
+        long volume = volume(symbol, candles.getEpochDay(i));
+        json.writeStartObject();
+        json.writeStringField("date", candles.getDate(i) + "T00:00:00.000Z");
+        writeField(json, columns, "close", candles.getClose(i));
+        writeField(json, columns, "high", candles.getHigh(i));
+        writeField(json, columns, "low", candles.getLow(i));
+        writeField(json, columns, "open", candles.getOpen(i));
+        writeField(json, columns, "volume", volume);
+        writeField(json, columns, "adjClose", candles.getClose(i));
+        writeField(json, columns, "adjHigh", candles.getHigh(i));
+        writeField(json, columns, "adjLow", candles.getLow(i));
+        writeField(json, columns, "adjOpen", candles.getOpen(i));
+        writeField(json, columns, "adjVolume", volume);
+        writeField(json, columns, "divCash", 0.0);
+        writeField(json, columns, "splitFactor", 1.0);
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+    }
+  }
+
+  private static void writeField(JsonGenerator json, Set<String> columns, String name,
+      double value) throws IOException {
+    if (columns == null || columns.contains(name)) {
+      json.writeNumberField(name, value);
+    }
+  }
+
+  private static void writeField(JsonGenerator json, Set<String> columns, String name,
+      long value) throws IOException {
+    if (columns == null || columns.contains(name)) {
+      json.writeNumberField(name, value);
+    }
+  }
+
+  /**
+   * Writes the latest candle of each of {@code symbols} as a Tiingo IEX top-of-book payload, as
+   * if {@link #getLastDay()} were today and its session had closed. The stream is closed.
+   */
+  public void writeIexTopOfBookJson(Iterable<String> symbols, OutputStream out)
+      throws IOException {
+    try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+      json.writeStartArray();
+      for (String symbol : symbols) {
+        CandleSeries history = candles(symbol);
+        if (history.isEmpty()) {
+          continue;
+        }
+        int last = history.size() - 1;
+        String timestamp = history.getDate(last) + "T16:00:00-04:00";
+        json.writeStartObject();
+        json.writeStringField("ticker", symbol);
+        json.writeStringField("timestamp", timestamp);
+        json.writeStringField("lastSaleTimestamp", timestamp);
+        json.writeNumberField("open", history.getOpen(last));
+        json.writeNumberField("high", history.getHigh(last));
+        json.writeNumberField("low", history.getLow(last));
+        json.writeNumberField("tngoLast", history.getClose(last));
+        json.writeNumberField("last", history.getClose(last));
+        if (last > 0) {
+          json.writeNumberField("prevClose", history.getClose(last - 1));
+        } else {
+          json.writeNullField("prevClose");
+        }
+        json.writeNumberField("volume", volume(symbol, history.getEpochDay(last)));
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package com.stock.standin;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Writes large {@code trades.json}-style portfolios for load tests against
+ * {@link TiingoStandInServer}. Trades are streamed to the output, so the size of the portfolio is
+ * not limited by the heap. The same arguments always produce the same file.
+ */
+public class SyntheticPortfolioGenerator {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final long seed;
+  private final int symbols;
+  private final LocalDate firstPurchase;
+  private final LocalDate lastPurchase;
+
+  /**
+   * @param symbols number of distinct symbols, named {@code SYM0} upwards
+   * @param firstPurchase earliest purchase date
+   * @param lastPurchase latest purchase date; purchases only fall on weekdays
+   */
+  public SyntheticPortfolioGenerator(long seed, int symbols, LocalDate firstPurchase,
+      LocalDate lastPurchase) {
+    if (symbols < 1) {
+      throw new IllegalArgumentException("symbols must be at least 1, was " + symbols);
+    }
+    if (lastPurchase.isBefore(firstPurchase)) {
+      throw new IllegalArgumentException("lastPurchase " + lastPurchase
+          + " is before firstPurchase " + firstPurchase);
+    }
+    this.seed = seed;
+    this.symbols = symbols;
+    this.firstPurchase = firstPurchase;
+    this.lastPurchase = lastPurchase;
+  }
+
+  /** Name of the {@code index}-th synthetic symbol. */
+  public static String symbol(int index) {
+    return "SYM" + index;
+  }
+
+  /** Writes {@code trades} BUY trades as a JSON array. The stream is closed. */
+  public void write(int trades, OutputStream out) throws IOException {
+    SplittableRandom random = new SplittableRandom(seed);
+    int days = (int) (lastPurchase.toEpochDay() - firstPurchase.toEpochDay()) + 1;
+    try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+      json.useDefaultPrettyPrinter();
+      json.writeStartArray();
+      for (int i = 0; i < trades; i++) {
+        LocalDate purchaseDate = firstPurchase.plusDays(random.nextInt(days));
+        while (purchaseDate.getDayOfWeek() == DayOfWeek.SATURDAY
+            || purchaseDate.getDayOfWeek() == DayOfWeek.SUNDAY) {
+          purchaseDate = purchaseDate.minusDays(1);
+        }
+        json.writeStartObject();
+        json.writeStringField("symbol", symbol(random.nextInt(symbols)));
+        json.writeNumberField("quantity", 1 + random.nextInt(500));
+        json.writeStringField("tradeType", "BUY");
+        json.writeStringField("purchaseDate", purchaseDate.toString());
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+    }
+  }
+
+  public void write(int trades, Path file) throws IOException {
+    write(trades, Files.newOutputStream(file));
+  }
+
+  /**
+   * Usage: {@code SyntheticPortfolioGenerator <output file> <trades> <symbols> [seed]}. Purchases
+   * fall in the five years before today.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("Usage: SyntheticPortfolioGenerator <output file> <trades> <symbols>"
+          + " [seed]");
+      System.exit(1);
+    }
+    LocalDate today = LocalDate.now();
+    new SyntheticPortfolioGenerator(args.length > 3 ? Long.parseLong(args[3]) : 42,
+        Integer.parseInt(args[2]), today.minusYears(5), today.minusDays(7))
+        .write(Integer.parseInt(args[1]), Paths.get(args[0]));
+  }
+}
@@ -0,0 +1,376 @@
+package com.stock.standin;
+
+import com.stock.dto.CandleSeries;
+import com.stock.quotes.TiingoEndpoints;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded HTTP server implementing Tiingo's {@code /tiingo/daily/{symbol}/prices} and
+ * multi-ticker {@code /iex/?tickers=...} endpoints over {@link SyntheticMarketData}, for offline
+ * tests, load tests and benchmarks. Point the application at it by setting
+ * {@value TiingoEndpoints#BASE_URL_PROPERTY} to {@link #getBaseUrl()}.
+ *
+ * <p>Every request can be delayed by a fixed latency plus a random jitter, and a configurable
+ * share of requests fails with HTTP 500 or with HTTP 429 and a {@code Retry-After} header. Symbols
+ * registered as unknown get Tiingo's 404 response. The token is not checked. Daily prices honour
+ * Tiingo's {@code columns} parameter, and successful responses are gzipped when the request
+ * accepts it.
+ *
+ * <p>Run {@link #main} to serve on a fixed port from the command line.
+ */
+public class TiingoStandInServer implements Closeable {
+
+  private static final String PREFIX = "/tiingo/daily/";
+  private static final String SUFFIX = "/prices";
+  private static final String IEX_PATH = "/iex/";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final SyntheticMarketData marketData;
+  private final long latencyMillis;
+  private final long latencyJitterMillis;
+  private final double errorRate;
+  private final double throttleRate;
+  private final long retryAfterSeconds;
+  private final Set<String> unknownSymbols;
+  private final Random random;
+
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong iexRequests = new AtomicLong();
+  private final AtomicLong injectedErrors = new AtomicLong();
+  private final AtomicLong injectedThrottles = new AtomicLong();
+
+  private TiingoStandInServer(Builder builder) throws IOException {
+    this.marketData = builder.marketData;
+    this.latencyMillis = builder.latency.toMillis();
+    this.latencyJitterMillis = builder.latencyJitter.toMillis();
+    this.errorRate = builder.errorRate;
+    this.throttleRate = builder.throttleRate;
+    this.retryAfterSeconds = builder.retryAfter.getSeconds();
+    this.unknownSymbols = Collections.unmodifiableSet(new HashSet<>(builder.unknownSymbols));
+    this.random = new Random(builder.seed);
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", builder.port), 0);
+    this.executor = Executors.newFixedThreadPool(builder.threads, runnable -> {
+      Thread thread = new Thread(runnable, "tiingo-stand-in");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext(PREFIX, this::handle);
+    server.createContext(IEX_PATH, this::handleIex);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Starts serving; returns this server for chaining. */
+  public TiingoStandInServer start() {
+    server.start();
+    return this;
+  }
+
+  /** Base URL to pass to {@link TiingoEndpoints} or to a transport, e.g. http://127.0.0.1:4242. */
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public SyntheticMarketData getMarketData() {
+    return marketData;
+  }
+
+  public long getRequestCount() {
+    return requests.get();
+  }
+
+  /** Requests to the multi-ticker IEX endpoint, also counted in {@link #getRequestCount()}. */
+  public long getIexRequestCount() {
+    return iexRequests.get();
+  }
+
+  public long getInjectedErrorCount() {
+    return injectedErrors.get();
+  }
+
+  public long getInjectedThrottleCount() {
+    return injectedThrottles.get();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      requests.incrementAndGet();
+      sleepLatency();
+      String path = exchange.getRequestURI().getPath();
+      if (!"GET".equals(exchange.getRequestMethod()) || !path.endsWith(SUFFIX)
+          || path.length() <= PREFIX.length() + SUFFIX.length()) {
+        respond(exchange, 404, "{\"detail\":\"Not found.\"}");
+        return;
+      }
+      String symbol = path.substring(PREFIX.length(), path.length() - SUFFIX.length());
+      if (injectFault(exchange)) {
+        return;
+      }
+      if (unknownSymbols.contains(symbol)) {
+        respond(exchange, 404, "{\"detail\":\"Error: Ticker '" + symbol + "' not found\"}");
+        return;
+      }
+      Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+      LocalDate to = query.containsKey("endDate") ? LocalDate.parse(query.get("endDate"))
+          : marketData.getLastDay();
+      CandleSeries candles;
+      if (query.containsKey("startDate")) {
+        candles = marketData.candles(symbol, LocalDate.parse(query.get("startDate")), to);
+      } else {
+        // Like Tiingo, no start date means the latest candle only.
+        CandleSeries upTo = marketData.candles(symbol, marketData.getFirstDay(), to);
+        candles = upTo.isEmpty() ? upTo : upTo.between(upTo.getDate(upTo.size() - 1), to);
+      }
+      Set<String> columns = query.containsKey("columns")
+          ? new HashSet<>(Arrays.asList(query.get("columns").split(","))) : null;
+      SyntheticMarketData.writeTiingoJson(symbol, candles, columns, startJson(exchange));
+    } catch (DateTimeParseException e) {
+      respond(exchange, 400, "{\"detail\":\"Error: " + e.getParsedString() + " is not a date\"}");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Latest quote of every ticker in the {@code tickers} parameter, with {@link
+   * SyntheticMarketData#getLastDay()} as the current session. Unknown tickers are left out of the
+   * answer, as Tiingo does.
+   */
+  private void handleIex(HttpExchange exchange) throws IOException {
+    try {
+      requests.incrementAndGet();
+      iexRequests.incrementAndGet();
+      sleepLatency();
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        respond(exchange, 404, "{\"detail\":\"Not found.\"}");
+        return;
+      }
+      if (injectFault(exchange)) {
+        return;
+      }
+      String tickers = parseQuery(exchange.getRequestURI().getRawQuery()).get("tickers");
+      List<String> symbols = new ArrayList<>();
+      if (tickers != null) {
+        for (String ticker : tickers.split(",")) {
+          String symbol = ticker.trim();
+          if (!symbol.isEmpty() && !unknownSymbols.contains(symbol)) {
+            symbols.add(symbol);
+          }
+        }
+      }
+      marketData.writeIexTopOfBookJson(symbols, startJson(exchange));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /** Answers with an injected 429 or 500 at the configured rates; true if it did. */
+  private boolean injectFault(HttpExchange exchange) throws IOException {
+    double roll;
+    synchronized (random) {
+      roll = random.nextDouble();
+    }
+    if (roll < throttleRate) {
+      injectedThrottles.incrementAndGet();
+      exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+      respond(exchange, 429, "{\"detail\":\"Error: You have run over your hourly request "
+          + "allocation.\"}");
+      return true;
+    }
+    if (roll < throttleRate + errorRate) {
+      injectedErrors.incrementAndGet();
+      respond(exchange, 500, "{\"detail\":\"Error: injected failure\"}");
+      return true;
+    }
+    return false;
+  }
+
+  private void sleepLatency() {
+    long delay = latencyMillis;
+    if (latencyJitterMillis > 0) {
+      synchronized (random) {
+        delay += (long) (random.nextDouble() * latencyJitterMillis);
+      }
+    }
+    if (delay > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /** Sends 200 with a chunked JSON body, gzipped if the client accepts it, to be written next. */
+  private static OutputStream startJson(HttpExchange exchange) throws IOException {
+    String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+    boolean gzip = accepted != null && accepted.toLowerCase().contains("gzip");
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    if (gzip) {
+      exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+    }
+    exchange.sendResponseHeaders(200, 0);
+    return gzip ? new GZIPOutputStream(exchange.getResponseBody(), 8192)
+        : exchange.getResponseBody();
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery == null) {
+      return query;
+    }
+    for (String pair : rawQuery.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq > 0) {
+        query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+            URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+      }
+    }
+    return query;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  /**
+   * Serves synthetic data until the process is killed.
+   *
+   * <p>Usage: {@code TiingoStandInServer [port] [latencyMillis] [errorRate] [throttleRate]}
+   */
+  public static void main(String[] args) throws IOException {
+    Builder builder = builder().port(args.length > 0 ? Integer.parseInt(args[0]) : 8089);
+    if (args.length > 1) {
+      builder.latency(Duration.ofMillis(Long.parseLong(args[1])), Duration.ZERO);
+    }
+    if (args.length > 2) {
+      builder.errorRate(Double.parseDouble(args[2]));
+    }
+    if (args.length > 3) {
+      builder.throttleRate(Double.parseDouble(args[3]));
+    }
+    TiingoStandInServer server = builder.build().start();
+    System.out.println("Serving synthetic Tiingo data at " + server.getBaseUrl()
+        + "; run the application with -D" + TiingoEndpoints.BASE_URL_PROPERTY + "="
+        + server.getBaseUrl());
+  }
+
+  public static class Builder {
+
+    private int port;
+    private int threads = 16;
+    private long seed = 42;
+    private SyntheticMarketData marketData;
+    private Duration latency = Duration.ZERO;
+    private Duration latencyJitter = Duration.ZERO;
+    private double errorRate;
+    private double throttleRate;
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private final Set<String> unknownSymbols = new HashSet<>();
+
+    private Builder() {
+    }
+
+    /** Port to listen on; 0, the default, picks a free one. */
+    public Builder port(int port) {
+      this.port = port;
+      return this;
+    }
+
+    public Builder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /** Seed of the market data, when not given explicitly, and of the injected faults. */
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public Builder marketData(SyntheticMarketData marketData) {
+      this.marketData = marketData;
+      return this;
+    }
+
+    /** Delay of every response: {@code latency} plus a uniform random share of {@code jitter}. */
+    public Builder latency(Duration latency, Duration jitter) {
+      this.latency = latency;
+      this.latencyJitter = jitter;
+      return this;
+    }
+
+    /** Share of requests, between 0 and 1, answered with HTTP 500. */
+    public Builder errorRate(double errorRate) {
+      this.errorRate = errorRate;
+      return this;
+    }
+
+    /** Share of requests, between 0 and 1, answered with HTTP 429. */
+    public Builder throttleRate(double throttleRate) {
+      this.throttleRate = throttleRate;
+      return this;
+    }
+
+    /** {@code Retry-After} sent with injected 429 responses, in whole seconds. */
+    public Builder retryAfter(Duration retryAfter) {
+      this.retryAfter = retryAfter;
+      return this;
+    }
+
+    public Builder unknownSymbol(String symbol) {
+      unknownSymbols.add(symbol);
+      return this;
+    }
+
+    public TiingoStandInServer build() throws IOException {
+      if (errorRate < 0 || throttleRate < 0 || errorRate + throttleRate > 1) {
+        throw new IllegalArgumentException("errorRate " + errorRate + " and throttleRate "
+            + throttleRate + " must be shares between 0 and 1");
+      }
+      if (marketData == null) {
+        marketData = new SyntheticMarketData(seed);
+      }
+      return new TiingoStandInServer(this);
+    }
+  }
+}
@@ -47,6 +47,17 @@ class ModuleThreeRefactorTest {
     Assertions.assertEquals(1348.49, price, 0.1);
   }
 
+  @Test
+  public void getPricesOnNonTradingDays() throws JsonProcessingException {
+    List<Candle> candles = getCandles(googlQuotes);
+    Double buyPrice = PortfolioManagerApplication.getOpeningPriceOnStartDate(candles,
+        LocalDate.parse("2018-12-30"));
+    Double sellPrice = PortfolioManagerApplication.getClosingPriceOnEndDate(candles,
+        LocalDate.parse("2019-12-08"));
+    Assertions.assertEquals(1027.2, buyPrice, 0.1);
+    Assertions.assertEquals(1025.47, sellPrice, 0.1);
+  }
+
   @Test
   public void fetchCandles() throws JsonProcessingException {
     PortfolioTrade trade = new PortfolioTrade();
@@ -0,0 +1,111 @@
+package com.stock.dto;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+class CandleSeriesTest {
+
+  private String googlQuotes = "[{\"date\":\"2019-01-02T00:00:00.000Z\",\"close\":1054.68,"
+          + "\"high\":1060.79,\"low\":1025.28,\"open\":1027.2,\"volume\":1593395,\"adjClose\":1054.68,"
+          + "\"adjHigh\":1060.79,\"adjLow\":1025.28,\""
+          + "adjOpen\":1027.2,\"adjVolume\":1593395,\"divCash\""
+          + ":0.0,\"splitFactor\":1.0},{\"date\":\""
+          + "2019-01-03T00:00:00.000Z\",\"close\":1025.47,\"high\""
+          + ":1066.26,\"low\":1022.37,\"open\":1050.67,\"volume\":2097957,\"adjClose\":1025.47,"
+          + "\"adjHigh\":1066.26,\"adjLow\":1022.37,\"adjOpen\":1050.67,\"adjVolume\":2097957,"
+          + "\"divCash\":0.0,\"splitFactor\":1.0},{\"date\":\"2019-12-12T00:00:00.000Z\","
+          + "\"close\":1348.49,\"high\":1080.0,\"low\":1036.86,\"open\":1042.56,\"volume\":2301428,"
+          + "\"adjClose\":1078.07,\"adjHigh\":1080.0,\"adjLow\":1036.86,\"adjOpen\":1042.56,\"adjVolume"
+          + "\":2301428,\"divCash\":0.0,\"splitFactor\":1.0}]";
+
+  private ObjectMapper getObjectMapper() {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.registerModule(new JavaTimeModule());
+    return mapper;
+  }
+
+  @Test
+  void deserializeMatchesTiingoCandles() throws Exception {
+    ObjectMapper mapper = getObjectMapper();
+    TiingoCandle[] expected = mapper.readValue(googlQuotes, TiingoCandle[].class);
+
+    CandleSeries series = mapper.readValue(googlQuotes, CandleSeries.class);
+
+    Assertions.assertEquals(expected.length, series.size());
+    for (int i = 0; i < expected.length; i++) {
+      Assertions.assertEquals(expected[i].getDate(), series.getDate(i));
+      Assertions.assertEquals(expected[i].getOpen(), series.getOpen(i), 0.0);
+      Assertions.assertEquals(expected[i].getHigh(), series.getHigh(i), 0.0);
+      Assertions.assertEquals(expected[i].getLow(), series.getLow(i), 0.0);
+      Assertions.assertEquals(expected[i].getClose(), series.getClose(i), 0.0);
+    }
+  }
+
+  @Test
+  void deserializeEmptyArray() throws Exception {
+    CandleSeries series = getObjectMapper().readValue("[]", CandleSeries.class);
+
+    Assertions.assertTrue(series.isEmpty());
+    Assertions.assertTrue(series.asCandles().isEmpty());
+  }
+
+  @Test
+  void candleViewAndCopyRoundTrip() throws Exception {
+    CandleSeries series = getObjectMapper().readValue(googlQuotes, CandleSeries.class);
+    List<Candle> candles = series.asCandles();
+
+    Assertions.assertEquals(3, candles.size());
+    Assertions.assertEquals(1027.2, candles.get(0).getOpen(), 0.0);
+    Assertions.assertEquals(1348.49, candles.get(2).getClose(), 0.0);
+    Assertions.assertSame(series, CandleSeries.of(candles));
+
+    List<Candle> copied = Arrays.asList(
+        getObjectMapper().readValue(googlQuotes, TiingoCandle[].class));
+    CandleSeries copy = CandleSeries.of(copied);
+    Assertions.assertEquals(series.getEpochDay(1), copy.getEpochDay(1));
+    Assertions.assertEquals(series.getClose(1), copy.getClose(1), 0.0);
+  }
+
+  @Test
+  void betweenSharesColumnsAndConcatRestoresThem() throws Exception {
+    CandleSeries series = getObjectMapper().readValue(googlQuotes, CandleSeries.class);
+
+    CandleSeries head = series.between(LocalDate.parse("2018-12-01"), LocalDate.parse("2019-01-02"));
+    CandleSeries tail = series.between(LocalDate.parse("2019-01-03"), LocalDate.parse("2020-01-01"));
+
+    Assertions.assertEquals(1, head.size());
+    Assertions.assertEquals(2, tail.size());
+    Assertions.assertEquals(LocalDate.parse("2019-01-03"), tail.getDate(0));
+    Assertions.assertTrue(series.between(LocalDate.parse("2019-01-04"),
+        LocalDate.parse("2019-12-11")).isEmpty());
+
+    CandleSeries joined = CandleSeries.concat(head, tail);
+    Assertions.assertEquals(3, joined.size());
+    Assertions.assertEquals(1348.49, joined.getClose(2), 0.0);
+  }
+
+  @Test
+  void tradingDayLookupsSkipNonTradingDays() throws Exception {
+    CandleSeries series = getObjectMapper().readValue(googlQuotes, CandleSeries.class);
+
+    Assertions.assertEquals(0, series.indexAtOrAfter(LocalDate.parse("2018-12-29")));
+    Assertions.assertEquals(1, series.indexAtOrAfter(LocalDate.parse("2019-01-03")));
+    Assertions.assertEquals(2, series.indexAtOrAfter(LocalDate.parse("2019-01-04")));
+    Assertions.assertEquals(-1, series.indexAtOrAfter(LocalDate.parse("2019-12-13")));
+
+    Assertions.assertEquals(-1, series.indexAtOrBefore(LocalDate.parse("2019-01-01")));
+    Assertions.assertEquals(1, series.indexAtOrBefore(LocalDate.parse("2019-12-11")));
+    Assertions.assertEquals(2, series.indexAtOrBefore(LocalDate.parse("2019-12-15")));
+
+    CandleSeries tail = series.between(LocalDate.parse("2019-01-03"), LocalDate.parse("2019-12-31"));
+    Assertions.assertEquals(0, tail.indexAtOrAfter(LocalDate.parse("2019-01-01")));
+    Assertions.assertEquals(1, tail.indexAtOrBefore(LocalDate.parse("2020-01-01")));
+  }
+}
@@ -0,0 +1,114 @@
+package com.stock.dto;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stock.io.PortfolioTradeReader;
+import com.stock.portfolio.PortfolioManager;
+import com.stock.portfolio.PortfolioManagerFactory;
+import com.stock.portfolio.Ranking;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.standin.SyntheticMarketData;
+
+class TradeBookTest {
+
+  @Test
+  void symbolsAreSharedAndLotsGroupedBySymbol() {
+    PortfolioTrade sell = new PortfolioTrade("AAPL", 4, LocalDate.parse("2019-03-01"));
+    sell.setTradeType(TradeType.SELL);
+    List<PortfolioTrade> trades = Arrays.asList(
+        new PortfolioTrade(new String("AAPL"), 10, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("MSFT", 20, LocalDate.parse("2019-01-03")),
+        sell);
+
+    TradeBook book = TradeBook.of(trades);
+
+    Assertions.assertEquals(3, book.size());
+    Assertions.assertEquals(2, book.getSymbolCount());
+    Assertions.assertSame(book.getSymbol(0), book.getSymbol(2));
+    Assertions.assertEquals(0, book.getSymbolId(2));
+    Assertions.assertEquals(LocalDate.parse("2019-03-01").toEpochDay(), book.getEpochDay(2));
+    Assertions.assertEquals(TradeType.SELL, book.getTradeType(2));
+    Assertions.assertEquals(2, book.getLotCount(0));
+    Assertions.assertEquals(2, book.getLot(0, 1));
+    Assertions.assertEquals(1, book.getLot(1, 0));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> book.getLot(1, 1));
+
+    PortfolioTrade view = book.asTrades().get(2);
+    Assertions.assertEquals("AAPL", view.getSymbol());
+    Assertions.assertEquals(4, view.getQuantity());
+    Assertions.assertEquals(TradeType.SELL, view.getTradeType());
+  }
+
+  @Test
+  void readsTheSameTradesAsPortfolioTradeReader() throws IOException {
+    List<PortfolioTrade> expected = new ArrayList<>();
+    try (PortfolioTradeReader reader = PortfolioTradeReader.open("trades.json")) {
+      reader.forEachRemaining(expected::add);
+    }
+
+    TradeBook book = PortfolioTradeReader.readTradeBook("trades.json");
+
+    Assertions.assertEquals(expected.size(), book.size());
+    for (int i = 0; i < book.size(); i++) {
+      Assertions.assertEquals(expected.get(i).getSymbol(), book.getSymbol(i));
+      Assertions.assertEquals(expected.get(i).getQuantity(), book.getQuantity(i));
+      Assertions.assertEquals(expected.get(i).getPurchaseDate(), book.getPurchaseDate(i));
+      Assertions.assertEquals(expected.get(i).getTradeType(), book.getTradeType(i));
+    }
+    Assertions.assertEquals(book.size(), new ObjectMapper()
+        .readValue(TradeBookTest.class.getResourceAsStream("/trades.json"), TradeBook.class)
+        .size());
+
+    String unknownField = "[{\"symbol\":\"AAPL\",\"quantity\":1,\"purchaseDate\":\"2019-01-02\","
+        + "\"price\":10}]";
+    Assertions.assertThrows(JsonParseException.class, () -> new PortfolioTradeReader(
+        new ByteArrayInputStream(unknownField.getBytes(StandardCharsets.UTF_8))).readTradeBook());
+  }
+
+  @Test
+  void portfolioManagerPricesABookLikeTheTradeList() {
+    SyntheticMarketData marketData = new SyntheticMarketData(11, LocalDate.parse("2015-01-01"),
+        LocalDate.parse("2020-06-30"));
+    PortfolioManager portfolioManager = PortfolioManagerFactory.getPortfolioManager(
+        new ThrottledQuoteTransport((symbol, from, to) ->
+            CompletableFuture.completedFuture(marketData.candles(symbol, from, to)),
+            RequestScheduler.unlimited()), null);
+    SplittableRandom random = new SplittableRandom(5);
+    List<PortfolioTrade> trades = new ArrayList<>();
+    for (int i = 0; i < 2_000; i++) {
+      trades.add(new PortfolioTrade("SYM" + random.nextInt(40), 1 + random.nextInt(100),
+          LocalDate.parse("2015-01-01").plusDays(random.nextInt(1_900))));
+    }
+    LocalDate endDate = LocalDate.parse("2020-06-30");
+    TradeBook book = TradeBook.of(trades);
+
+    for (Ranking ranking : Arrays.asList(Ranking.all(), Ranking.top(25))) {
+      List<AnnualizedReturn> expected =
+          portfolioManager.calculateAnnualizedReturn(trades, endDate, ranking);
+      List<AnnualizedReturn> actual =
+          portfolioManager.calculateAnnualizedReturn(book, endDate, ranking);
+      Assertions.assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        Assertions.assertEquals(expected.get(i).getSymbol(), actual.get(i).getSymbol());
+        Assertions.assertEquals(expected.get(i).getAnnualizedReturn(),
+            actual.get(i).getAnnualizedReturn(), 0.0);
+        Assertions.assertEquals(expected.get(i).getTotalReturns(),
+            actual.get(i).getTotalReturns(), 0.0);
+      }
+    }
+  }
+}
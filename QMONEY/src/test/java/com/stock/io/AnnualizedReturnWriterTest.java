@@ -0,0 +1,52 @@
+package com.stock.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stock.dto.AnnualizedReturn;
+
+class AnnualizedReturnWriterTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final List<AnnualizedReturn> RETURNS = Arrays.asList(
+      new AnnualizedReturn("AAPL", 0.814, 0.714),
+      new AnnualizedReturn("BRK/A", -0.25, null),
+      new AnnualizedReturn("MSFT", 0.584, 0.514));
+
+  @Test
+  void ndjsonLinesAppearAsEachReturnIsWritten() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (AnnualizedReturnWriter writer = new AnnualizedReturnWriter(out,
+        AnnualizedReturnWriter.Format.NDJSON)) {
+      for (int i = 0; i < RETURNS.size(); i++) {
+        writer.write(RETURNS.get(i));
+        // Flushed per return: the line is readable before the next is computed.
+        String[] lines = out.toString(StandardCharsets.UTF_8.name()).split("\n");
+        Assertions.assertEquals(i + 1, lines.length);
+        Assertions.assertEquals(MAPPER.writeValueAsString(RETURNS.get(i)), lines[i]);
+      }
+      Assertions.assertEquals(3, writer.getWrittenCount());
+    }
+    Assertions.assertTrue(out.toString(StandardCharsets.UTF_8.name()).endsWith("}\n"));
+  }
+
+  @Test
+  void arrayFormatIsTheSameJsonAsSerializingTheList() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (AnnualizedReturnWriter writer = new AnnualizedReturnWriter(out,
+        AnnualizedReturnWriter.Format.parse("array"))) {
+      RETURNS.forEach(writer);
+      Assertions.assertTrue(out.toString(StandardCharsets.UTF_8.name()).startsWith("[{"));
+    }
+
+    Assertions.assertEquals(MAPPER.writeValueAsString(RETURNS),
+        out.toString(StandardCharsets.UTF_8.name()));
+  }
+}
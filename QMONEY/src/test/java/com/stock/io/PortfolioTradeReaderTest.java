@@ -0,0 +1,90 @@
+package com.stock.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.TradeType;
+
+class PortfolioTradeReaderTest {
+
+  @Test
+  void readsClasspathResource() throws Exception {
+    try (PortfolioTradeReader reader = PortfolioTradeReader.open("trades.json")) {
+      PortfolioTrade first = reader.next();
+      Assertions.assertEquals("MSFT", first.getSymbol());
+      Assertions.assertEquals(100, first.getQuantity());
+      Assertions.assertEquals(TradeType.BUY, first.getTradeType());
+      Assertions.assertEquals(LocalDate.parse("2019-01-07"), first.getPurchaseDate());
+      Assertions.assertEquals("CSCO", reader.next().getSymbol());
+      Assertions.assertEquals("CTS", reader.next().getSymbol());
+      Assertions.assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  void readsFilesystemPath() throws Exception {
+    Path file = Files.createTempFile("trades", ".json");
+    try {
+      Files.write(file, ("[{\"symbol\":\"AAPL\",\"quantity\":5,\"tradeType\":\"SELL\","
+          + "\"purchaseDate\":\"2020-01-02\"}]").getBytes(StandardCharsets.UTF_8));
+
+      try (Stream<PortfolioTrade> trades = PortfolioTradeReader.stream(file.toString())) {
+        List<PortfolioTrade> result = trades.collect(Collectors.toList());
+        Assertions.assertEquals(1, result.size());
+        Assertions.assertEquals(TradeType.SELL, result.get(0).getTradeType());
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  void emptyArrayHasNoTrades() throws Exception {
+    try (PortfolioTradeReader reader = PortfolioTradeReader.open("empty.json")) {
+      Assertions.assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  void streamIsLazy() throws Exception {
+    String json = "[{\"symbol\":\"AAPL\",\"quantity\":1,\"purchaseDate\":\"2020-01-02\"},"
+        + "{\"symbol\":\"MSFT\",\"quantity\":1,\"purchaseDate\":\"2020-01-02\"},"
+        + "this is not json";
+    PortfolioTradeReader reader = new PortfolioTradeReader(
+        new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+    try (Stream<PortfolioTrade> trades = reader.stream()) {
+      List<String> symbols = trades.limit(2).map(PortfolioTrade::getSymbol)
+          .collect(Collectors.toList());
+      Assertions.assertEquals(Arrays.asList("AAPL", "MSFT"), symbols);
+    }
+  }
+
+  @Test
+  void malformedInputFails() throws Exception {
+    PortfolioTradeReader reader = new PortfolioTradeReader(
+        new ByteArrayInputStream("[1, 2]".getBytes(StandardCharsets.UTF_8)));
+
+    Assertions.assertThrows(UncheckedIOException.class, reader::hasNext);
+    reader.close();
+  }
+
+  @Test
+  void missingLocationFails() {
+    Assertions.assertThrows(FileNotFoundException.class,
+        () -> PortfolioTradeReader.open("no_such_trades.json"));
+  }
+}
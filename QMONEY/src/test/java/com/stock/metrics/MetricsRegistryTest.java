@@ -0,0 +1,80 @@
+package com.stock.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+class MetricsRegistryTest {
+
+  @Test
+  void bucketsCoverEveryValueWithBoundedError() {
+    long[] values = {0, 1, 7, 8, 15, 16, 17, 1_000, 123_456_789, Long.MAX_VALUE};
+    for (long value : values) {
+      int bucket = LatencyHistogram.bucketOf(value);
+      long upper = LatencyHistogram.upperBoundOf(bucket);
+      Assertions.assertTrue(upper >= value, "upper bound of " + value);
+      Assertions.assertTrue(upper - value <= value / 8, "error of " + value);
+      if (bucket > 0) {
+        Assertions.assertTrue(LatencyHistogram.upperBoundOf(bucket - 1) < value,
+            "previous bucket of " + value);
+      }
+    }
+  }
+
+  @Test
+  void histogramPercentilesFromConcurrentWriters() throws InterruptedException {
+    LatencyHistogram histogram = new LatencyHistogram();
+    List<Thread> writers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      Thread writer = new Thread(() -> {
+        for (int i = 1; i <= 1_000; i++) {
+          histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+      });
+      writers.add(writer);
+      writer.start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+
+    Assertions.assertEquals(4_000, histogram.getCount());
+    Assertions.assertEquals(500.5, histogram.getMeanMillis(), 1e-6);
+    Assertions.assertEquals(1_000.0, histogram.getMaxMillis(), 1e-6);
+    Assertions.assertEquals(500, histogram.getMedianMillis(), 500 / 8.0);
+    Assertions.assertEquals(990, histogram.get99thPercentileMillis(), 990 / 8.0);
+  }
+
+  @Test
+  void metricsArePublishedOverJmxAndDumpedAsJson() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry(true);
+    Counter inFlight = registry.counter("test.inFlight");
+    inFlight.increment();
+    inFlight.increment();
+    inFlight.decrement();
+    registry.meter("test.tradesPriced").mark(3);
+    registry.histogram("test.fetch.latency.BRK/A").record(TimeUnit.MILLISECONDS.toNanos(2));
+    Assertions.assertSame(inFlight, registry.counter("test.inFlight"));
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    Assertions.assertEquals(1L, server.getAttribute(
+        new ObjectName("com.stock:type=Counter,name=test.inFlight"), "Count"));
+    Assertions.assertEquals(1L, server.getAttribute(
+        MetricsRegistry.objectName("Histogram", "test.fetch.latency.BRK/A"), "Count"));
+
+    JsonNode json = registry.toJson();
+    Assertions.assertEquals(1, json.get("test.inFlight").asLong());
+    Assertions.assertEquals(3, json.get("test.tradesPriced").get("count").asLong());
+    Assertions.assertEquals(2.0, json.get("test.fetch.latency.BRK/A").get("maxMs").asDouble(),
+        0.25);
+  }
+}
@@ -0,0 +1,183 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.quotes.CandleCache;
+import com.stock.quotes.QuoteTransport;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.standin.SyntheticMarketData;
+
+class EndpointWindowsTest {
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicLong candlesServed = new AtomicLong();
+
+  @AfterEach
+  void clearProperty() {
+    System.clearProperty(EndpointWindows.MAX_WINDOWS_PROPERTY);
+  }
+
+  private QuoteTransport counting(QuoteTransport source) {
+    return (symbol, from, to) -> source.fetchAsync(symbol, from, to).thenApply(candles -> {
+      requests.incrementAndGet();
+      candlesServed.addAndGet(candles.size());
+      return candles;
+    });
+  }
+
+  private PortfolioManager portfolioManager(QuoteTransport source, int maxWindows) {
+    return portfolioManager(source, maxWindows, null);
+  }
+
+  private PortfolioManager portfolioManager(QuoteTransport source, int maxWindows,
+      CandleCache candleCache) {
+    System.setProperty(EndpointWindows.MAX_WINDOWS_PROPERTY, String.valueOf(maxWindows));
+    return PortfolioManagerFactory.getPortfolioManager(
+        new ThrottledQuoteTransport(counting(source), RequestScheduler.unlimited()), candleCache);
+  }
+
+  private static void assertSameReturns(List<AnnualizedReturn> expected,
+      List<AnnualizedReturn> actual) {
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assertions.assertEquals(expected.get(i).getSymbol(), actual.get(i).getSymbol());
+      Assertions.assertEquals(expected.get(i).getAnnualizedReturn(),
+          actual.get(i).getAnnualizedReturn(), 0.0);
+      Assertions.assertEquals(expected.get(i).getTotalReturns(),
+          actual.get(i).getTotalReturns(), 0.0);
+    }
+  }
+
+  @Test
+  void oldLotsArePricedFromAFewCandlesLikeFromTheWholeHistory() throws Exception {
+    SyntheticMarketData marketData = new SyntheticMarketData(3, LocalDate.parse("2009-01-01"),
+        LocalDate.parse("2020-06-30"));
+    QuoteTransport source = (symbol, from, to) ->
+        CompletableFuture.completedFuture(marketData.candles(symbol, from, to));
+    LocalDate endDate = LocalDate.parse("2020-06-30");
+    List<PortfolioTrade> portfolio = Arrays.asList(
+        new PortfolioTrade("AAPL", 5, LocalDate.parse("2010-03-15")),
+        new PortfolioTrade("MSFT", 10, LocalDate.parse("2012-07-04")),
+        new PortfolioTrade("AAPL", 3, LocalDate.parse("2010-03-17")),
+        new PortfolioTrade("AAPL", 1, LocalDate.parse("2016-11-19")));
+
+    List<AnnualizedReturn> whole = portfolioManager(source, 0)
+        .calculateAnnualizedReturn(portfolio, endDate);
+    long wholeCandles = candlesServed.getAndSet(0);
+    Assertions.assertEquals(2, requests.getAndSet(0));
+
+    List<AnnualizedReturn> windowed = portfolioManager(source, 4)
+        .calculateAnnualizedReturn(portfolio, endDate);
+    assertSameReturns(whole, windowed);
+    Assertions.assertEquals(5, requests.getAndSet(0));
+    Assertions.assertTrue(candlesServed.get() < 40, candlesServed.get() + " candles");
+    Assertions.assertTrue(wholeCandles > 4_000, wholeCandles + " candles");
+
+    candlesServed.set(0);
+    assertSameReturns(whole, portfolioManager(source, 4)
+        .calculateAnnualizedReturnAsync(portfolio, endDate).join());
+    Assertions.assertTrue(candlesServed.get() < 40, candlesServed.get() + " candles");
+
+    // Three windows for AAPL are more than allowed, so it is fetched whole again.
+    requests.set(0);
+    assertSameReturns(whole, portfolioManager(source, 2)
+        .calculateAnnualizedReturn(portfolio, endDate));
+    Assertions.assertEquals(3, requests.get());
+  }
+
+  @Test
+  void windowsThroughACandleCacheDoNotFetchTheGap() {
+    SyntheticMarketData marketData = new SyntheticMarketData(3, LocalDate.parse("2009-01-01"),
+        LocalDate.parse("2020-06-30"));
+    QuoteTransport source = (symbol, from, to) ->
+        CompletableFuture.completedFuture(marketData.candles(symbol, from, to));
+    LocalDate endDate = LocalDate.parse("2019-12-12");
+    List<PortfolioTrade> portfolio = Arrays.asList(
+        new PortfolioTrade("AAPL", 5, LocalDate.parse("2010-03-01")),
+        new PortfolioTrade("MSFT", 10, LocalDate.parse("2012-07-04")));
+    List<AnnualizedReturn> whole = portfolioManager(source, 0)
+        .calculateAnnualizedReturn(portfolio, endDate);
+    candlesServed.set(0);
+
+    CandleCache candleCache = new CandleCache();
+    assertSameReturns(whole, portfolioManager(source, 4, candleCache)
+        .calculateAnnualizedReturn(portfolio, endDate));
+    Assertions.assertTrue(candlesServed.get() < 40, candlesServed.get() + " candles");
+    // Both windows of each symbol stay cached, so a second run fetches nothing.
+    requests.set(0);
+    assertSameReturns(whole, portfolioManager(source, 4, candleCache)
+        .calculateAnnualizedReturn(portfolio, endDate));
+    Assertions.assertEquals(0, requests.get());
+    assertSameReturns(whole, portfolioManager(source, 4, new CandleCache())
+        .calculateAnnualizedReturnAsync(portfolio, endDate).join());
+    Assertions.assertTrue(candlesServed.get() < 80, candlesServed.get() + " candles");
+
+    // Once the whole history is cached, windows inside it are served from the cache.
+    portfolioManager(source, 0, candleCache).calculateAnnualizedReturn(portfolio, endDate);
+    requests.set(0);
+    assertSameReturns(whole, portfolioManager(source, 4, candleCache)
+        .calculateAnnualizedReturn(portfolio, endDate));
+    Assertions.assertEquals(0, requests.get());
+  }
+
+  @Test
+  void windowsWithoutATradingDayAreWidened() throws Exception {
+    // Trading until 2019-01-10, halted until 2019-03-01, and no data after 2019-12-31.
+    CandleSeries.Builder builder = CandleSeries.builder();
+    for (LocalDate day = LocalDate.parse("2019-01-02"); !day.isAfter(LocalDate.parse("2019-12-31"));
+        day = day.plusDays(1)) {
+      boolean halted = day.isAfter(LocalDate.parse("2019-01-10"))
+          && day.isBefore(LocalDate.parse("2019-03-01"));
+      if (!halted && day.getDayOfWeek().getValue() <= 5) {
+        double price = 100 + day.getDayOfYear();
+        builder.add(day.toEpochDay(), price, price + 1, price - 1, price + 0.5);
+      }
+    }
+    CandleSeries history = builder.build();
+    QuoteTransport source = (symbol, from, to) ->
+        CompletableFuture.completedFuture(history.between(from, to));
+    LocalDate endDate = LocalDate.parse("2020-01-31");
+    List<PortfolioTrade> portfolio = Arrays.asList(
+        new PortfolioTrade("HALT", 1, LocalDate.parse("2019-01-03")),
+        new PortfolioTrade("HALT", 1, LocalDate.parse("2019-01-20")));
+
+    List<AnnualizedReturn> whole = portfolioManager(source, 0)
+        .calculateAnnualizedReturn(portfolio, endDate);
+    List<AnnualizedReturn> windowed = portfolioManager(source, 4)
+        .calculateAnnualizedReturn(portfolio, endDate);
+
+    assertSameReturns(whole, windowed);
+    Assertions.assertEquals(2, windowed.size());
+    // Bought in the halt at the first open after it, sold at the last close before the end date.
+    double open = 100 + LocalDate.parse("2019-03-01").getDayOfYear();
+    double close = 100 + LocalDate.parse("2019-12-31").getDayOfYear() + 0.5;
+    Assertions.assertEquals((close - open) / open, windowed.get(1).getTotalReturns(), 1e-12);
+  }
+
+  @Test
+  void closeWindowsAreMergedAndTooManyFallBackToOne() {
+    LocalDate endDate = LocalDate.parse("2020-06-30");
+    TreeSet<LocalDate> recent = new TreeSet<>(Arrays.asList(LocalDate.parse("2020-06-20")));
+    Assertions.assertEquals(1, EndpointWindows.forPurchases(recent, endDate, 4).getWindowCount());
+
+    TreeSet<LocalDate> spread = new TreeSet<>(Arrays.asList(LocalDate.parse("2010-01-04"),
+        LocalDate.parse("2010-01-12"), LocalDate.parse("2015-05-05"),
+        LocalDate.parse("2018-08-08")));
+    Assertions.assertEquals(4, EndpointWindows.forPurchases(spread, endDate, 4).getWindowCount());
+    Assertions.assertEquals(1, EndpointWindows.forPurchases(spread, endDate, 3).getWindowCount());
+  }
+}
@@ -0,0 +1,105 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.PortfolioTrade;
+import com.stock.quotes.CandleCache;
+import com.stock.quotes.QuoteTransport;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.standin.SyntheticMarketData;
+
+class IncrementalAnnualizedReturnsTest {
+
+  private static final LocalDate FIRST_DAY = LocalDate.parse("2015-01-01");
+  private static final LocalDate LAST_DAY = LocalDate.parse("2020-06-30");
+
+  private final SyntheticMarketData marketData = new SyntheticMarketData(9, FIRST_DAY, LAST_DAY);
+  private final List<String> fetches = new ArrayList<>();
+
+  private PortfolioManager portfolioManager() {
+    return portfolioManager(new CandleCache());
+  }
+
+  private PortfolioManager portfolioManager(CandleCache candleCache) {
+    QuoteTransport canned = (symbol, from, to) -> {
+      synchronized (fetches) {
+        fetches.add(symbol + " " + from + " " + to);
+      }
+      return CompletableFuture.completedFuture(marketData.candles(symbol, from, to));
+    };
+    return PortfolioManagerFactory.getPortfolioManager(
+        new ThrottledQuoteTransport(canned, RequestScheduler.unlimited()), candleCache);
+  }
+
+  private static List<PortfolioTrade> portfolio() {
+    return Arrays.asList(new PortfolioTrade("AAPL", 10, LocalDate.parse("2017-03-01")),
+        new PortfolioTrade("MSFT", 5, LocalDate.parse("2016-06-15")),
+        new PortfolioTrade("AAPL", 2, LocalDate.parse("2019-12-21")));
+  }
+
+  private static void assertSameReturns(List<AnnualizedReturn> expected,
+      List<AnnualizedReturn> actual, LocalDate endDate) {
+    Assertions.assertEquals(expected.size(), actual.size(), endDate.toString());
+    for (int i = 0; i < expected.size(); i++) {
+      Assertions.assertEquals(expected.get(i).getSymbol(), actual.get(i).getSymbol());
+      Assertions.assertEquals(expected.get(i).getAnnualizedReturn(),
+          actual.get(i).getAnnualizedReturn(), 1e-12, endDate.toString());
+      Assertions.assertEquals(expected.get(i).getTotalReturns(),
+          actual.get(i).getTotalReturns(), 1e-12, endDate.toString());
+    }
+  }
+
+  @Test
+  void rollingForwardFetchesOnlyNewDaysAndMatchesFullRecomputation() {
+    List<PortfolioTrade> portfolio = portfolio().subList(0, 2);
+    IncrementalAnnualizedReturns incremental = portfolioManager().trackAnnualizedReturn(portfolio);
+    PortfolioManager reference = portfolioManager();
+    incremental.advanceTo(LocalDate.parse("2019-12-15"));
+
+    for (LocalDate endDate = LocalDate.parse("2019-12-16");
+        !endDate.isAfter(LocalDate.parse("2020-01-10")); endDate = endDate.plusDays(1)) {
+      fetches.clear();
+      List<AnnualizedReturn> actual = incremental.advanceTo(endDate);
+
+      Assertions.assertEquals(2, fetches.size(), fetches.toString());
+      for (String fetch : fetches) {
+        Assertions.assertTrue(fetch.endsWith(" " + endDate + " " + endDate), fetch);
+      }
+      assertSameReturns(reference.calculateAnnualizedReturn(portfolio, endDate), actual, endDate);
+    }
+  }
+
+  @Test
+  void lotBoughtAfterTheFirstEndDateJoinsOnceItsDayIsSeen() {
+    IncrementalAnnualizedReturns incremental = portfolioManager().trackAnnualizedReturn(portfolio());
+
+    Assertions.assertEquals(2, incremental.advanceTo(LocalDate.parse("2019-12-20")).size());
+    // 2019-12-21 is a Saturday, so the lot is priced at Monday's open.
+    Assertions.assertEquals(2, incremental.advanceTo(LocalDate.parse("2019-12-22")).size());
+    Assertions.assertEquals(3, incremental.advanceTo(LocalDate.parse("2019-12-23")).size());
+  }
+
+  @Test
+  void movingBackStartsOverFromFullHistory() {
+    // Without a cache, which would answer the refetch of the full history.
+    IncrementalAnnualizedReturns incremental =
+        portfolioManager(null).trackAnnualizedReturn(portfolio());
+    incremental.advanceTo(LocalDate.parse("2020-01-10"));
+    fetches.clear();
+
+    List<AnnualizedReturn> actual = incremental.advanceTo(LocalDate.parse("2020-01-03"));
+
+    Assertions.assertTrue(fetches.contains("AAPL 2017-03-01 2020-01-03"), fetches.toString());
+    assertSameReturns(portfolioManager().calculateAnnualizedReturn(portfolio(),
+        LocalDate.parse("2020-01-03")), actual, LocalDate.parse("2020-01-03"));
+  }
+}
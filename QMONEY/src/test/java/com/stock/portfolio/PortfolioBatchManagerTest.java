@@ -0,0 +1,152 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.PortfolioTrade;
+import com.stock.quotes.CandleCache;
+import com.stock.quotes.Futures;
+import com.stock.quotes.QuoteTransport;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.quotes.UnknownSymbolException;
+import com.stock.standin.SyntheticMarketData;
+
+class PortfolioBatchManagerTest {
+
+  private static final LocalDate FIRST_DAY = LocalDate.parse("2015-01-01");
+  private static final LocalDate END_DATE = LocalDate.parse("2019-12-31");
+
+  private final SyntheticMarketData marketData = new SyntheticMarketData(3, FIRST_DAY, END_DATE);
+  private final Map<String, AtomicInteger> fetches = new ConcurrentHashMap<>();
+  private final List<LocalDate> fetchedFrom = new ArrayList<>();
+
+  private QuoteTransport countingTransport() {
+    QuoteTransport canned = (symbol, from, to) -> {
+      fetches.computeIfAbsent(symbol, s -> new AtomicInteger()).incrementAndGet();
+      if ("NOPE".equals(symbol)) {
+        return Futures.failed(new UnknownSymbolException(symbol));
+      }
+      if ("AAPL".equals(symbol)) {
+        synchronized (fetchedFrom) {
+          fetchedFrom.add(from);
+        }
+      }
+      return CompletableFuture.completedFuture(marketData.candles(symbol, from, to));
+    };
+    return new ThrottledQuoteTransport(canned, RequestScheduler.unlimited());
+  }
+
+  private static PortfolioTrade trade(String symbol, int quantity, String purchaseDate) {
+    return new PortfolioTrade(symbol, quantity, LocalDate.parse(purchaseDate));
+  }
+
+  private static Map<String, List<PortfolioTrade>> portfolios() {
+    Map<String, List<PortfolioTrade>> portfolios = new LinkedHashMap<>();
+    portfolios.put("carol", Arrays.asList(trade("AAPL", 10, "2018-03-01"),
+        trade("MSFT", 5, "2017-06-15")));
+    portfolios.put("alice", Arrays.asList(trade("MSFT", 2, "2019-01-02"),
+        trade("GOOGL", 1, "2016-02-10"), trade("AAPL", 3, "2016-01-04")));
+    portfolios.put("bob", Arrays.asList(trade("GOOGL", 7, "2019-05-01")));
+    return portfolios;
+  }
+
+  @Test
+  void fetchesEverySymbolOnceFromTheEarliestPurchase() throws InterruptedException {
+    PortfolioBatchManager batchManager =
+        PortfolioManagerFactory.getPortfolioBatchManager(countingTransport(), new CandleCache());
+
+    Map<String, List<AnnualizedReturn>> results =
+        batchManager.calculateAnnualizedReturns(portfolios(), END_DATE, 4);
+
+    Assertions.assertEquals(Arrays.asList("carol", "alice", "bob"),
+        new ArrayList<>(results.keySet()));
+    Assertions.assertEquals(3, fetches.size());
+    for (AtomicInteger count : fetches.values()) {
+      Assertions.assertEquals(1, count.get());
+    }
+    Assertions.assertEquals(Arrays.asList(LocalDate.parse("2016-01-04")), fetchedFrom);
+  }
+
+  @Test
+  void matchesPricingEachPortfolioOnItsOwn() throws InterruptedException {
+    QuoteTransport transport = countingTransport();
+    PortfolioBatchManager batchManager =
+        PortfolioManagerFactory.getPortfolioBatchManager(transport, new CandleCache());
+    PortfolioManager portfolioManager = PortfolioManagerFactory.getPortfolioManager(transport,
+        null);
+
+    Map<String, List<AnnualizedReturn>> results =
+        batchManager.calculateAnnualizedReturns(portfolios(), END_DATE, 2);
+
+    for (Map.Entry<String, List<PortfolioTrade>> portfolio : portfolios().entrySet()) {
+      List<AnnualizedReturn> expected =
+          portfolioManager.calculateAnnualizedReturn(portfolio.getValue(), END_DATE);
+      List<AnnualizedReturn> actual = results.get(portfolio.getKey());
+      Assertions.assertEquals(expected.size(), actual.size(), portfolio.getKey());
+      for (int i = 0; i < expected.size(); i++) {
+        Assertions.assertEquals(expected.get(i).getSymbol(), actual.get(i).getSymbol());
+        Assertions.assertEquals(expected.get(i).getAnnualizedReturn(),
+            actual.get(i).getAnnualizedReturn(), 1e-12);
+        Assertions.assertEquals(expected.get(i).getTotalReturns(),
+            actual.get(i).getTotalReturns(), 1e-12);
+      }
+    }
+  }
+
+  @Test
+  void skipsUnknownSymbolInEveryPortfolio() throws InterruptedException {
+    Map<String, List<PortfolioTrade>> portfolios = new LinkedHashMap<>();
+    portfolios.put("one", Arrays.asList(trade("NOPE", 1, "2018-01-02"),
+        trade("AAPL", 1, "2018-01-02")));
+    portfolios.put("two", Arrays.asList(trade("NOPE", 4, "2017-01-03")));
+
+    Map<String, List<AnnualizedReturn>> results = PortfolioManagerFactory
+        .getPortfolioBatchManager(countingTransport(), new CandleCache())
+        .calculateAnnualizedReturns(portfolios, END_DATE, 2);
+
+    Assertions.assertEquals(1, results.get("one").size());
+    Assertions.assertEquals("AAPL", results.get("one").get(0).getSymbol());
+    Assertions.assertTrue(results.get("two").isEmpty());
+    Assertions.assertEquals(1, fetches.get("NOPE").get());
+  }
+
+  @Test
+  void failureInOnePortfolioDoesNotFailTheBatch() throws InterruptedException {
+    // A Saturday purchase has no trading day before the Sunday end date to be bought at.
+    LocalDate endDate = LocalDate.parse("2019-12-29");
+    Map<String, List<PortfolioTrade>> portfolios = new LinkedHashMap<>();
+    portfolios.put("weekend", Arrays.asList(trade("AAPL", 1, "2019-12-28"),
+        trade("MSFT", 2, "2018-01-02")));
+    portfolios.put("fine", Arrays.asList(trade("AAPL", 3, "2018-01-02")));
+    PortfolioBatchManager batchManager =
+        PortfolioManagerFactory.getPortfolioBatchManager(countingTransport(), new CandleCache());
+
+    Map<String, List<AnnualizedReturn>> results =
+        batchManager.calculateAnnualizedReturns(portfolios, endDate, 2);
+    Assertions.assertEquals(1, results.get("weekend").size());
+    Assertions.assertEquals("MSFT", results.get("weekend").get(0).getSymbol());
+    Assertions.assertEquals(1, results.get("fine").size());
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Map<String, Double> xirr = batchManager.calculateXirr(portfolios, endDate, executor);
+      Assertions.assertEquals(Arrays.asList("fine"), new ArrayList<>(xirr.keySet()));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
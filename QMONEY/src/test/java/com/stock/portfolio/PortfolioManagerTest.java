@@ -25,6 +25,8 @@ import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.stock.dto.AnnualizedReturn;
 import com.stock.dto.PortfolioTrade;
 import com.stock.dto.TiingoCandle;
+import com.stock.metrics.Counter;
+import com.stock.metrics.MetricsRegistry;
 
 
 @ExtendWith(MockitoExtension.class)
@@ -74,6 +76,11 @@ class PortfolioManagerTest {
 			+ "\"adjLow\":97.4807376477,\"adjOpen\":98.259164644,\"adjVolume\":44060620,\"divCash"
 			+ "\":0.0,\"splitFactor\":1.0}]";
 
+	@Test
+	public void injectsTheRestTemplateMock() {
+		Assertions.assertSame(restTemplate, portfolioManager.restTemplate);
+	}
+
 	@Test
 	public void calculateExtrapolatedAnnualizedReturn()
 			throws Exception {
@@ -112,6 +119,101 @@ class PortfolioManagerTest {
 	}
 
 
+	@Test
+	public void calculateAnnualizedReturnParallel() throws Exception {
+		Mockito.doReturn(getCandles(aaplQuotes))
+		.when(portfolioManager).getStockQuote(eq("AAPL"), any(), any());
+		Mockito.doReturn(getCandles(msftQuotes))
+		.when(portfolioManager).getStockQuote(eq("MSFT"), any(), any());
+		Mockito.doReturn(getCandles(googlQuotes))
+		.when(portfolioManager).getStockQuote(eq("GOOGL"), any(), any());
+		PortfolioTrade trade1 = new PortfolioTrade("AAPL", 50, LocalDate.parse("2019-01-02"));
+		PortfolioTrade trade2 = new PortfolioTrade("GOOGL", 100, LocalDate.parse("2019-01-02"));
+		PortfolioTrade trade3 = new PortfolioTrade("MSFT", 20, LocalDate.parse("2019-01-02"));
+		List<PortfolioTrade> portfolioTrades = Arrays
+				.asList(new PortfolioTrade[]{trade1, trade2, trade3});
+
+		List<AnnualizedReturn> annualizedReturns = portfolioManager
+				.calculateAnnualizedReturnParallel(portfolioTrades, LocalDate.parse("2019-12-12"), 3);
+
+		List<String> symbols = annualizedReturns.stream().map(AnnualizedReturn::getSymbol)
+				.collect(Collectors.toList());
+		Assertions.assertEquals(0.814, annualizedReturns.get(0).getAnnualizedReturn(), 0.01);
+		Assertions.assertEquals(0.584, annualizedReturns.get(1).getAnnualizedReturn(), 0.01);
+		Assertions.assertEquals(0.33, annualizedReturns.get(2).getAnnualizedReturn(),0.01);
+		Assertions.assertEquals(Arrays.asList(new String[]{"AAPL", "MSFT", "GOOGL"}), symbols);
+	}
+
+	@Test
+	public void calculateAnnualizedReturnParallelSkipsFailedSymbol() throws Exception {
+		Mockito.doReturn(getCandles(aaplQuotes))
+		.when(portfolioManager).getStockQuote(eq("AAPL"), any(), any());
+		Mockito.doThrow(new RuntimeException("unknown symbol"))
+		.when(portfolioManager).getStockQuote(eq("CISCO"), any(), any());
+		Mockito.doReturn(getCandles(msftQuotes))
+		.when(portfolioManager).getStockQuote(eq("MSFT"), any(), any());
+		PortfolioTrade trade1 = new PortfolioTrade("AAPL", 50, LocalDate.parse("2019-01-02"));
+		PortfolioTrade trade2 = new PortfolioTrade("CISCO", 100, LocalDate.parse("2019-01-02"));
+		PortfolioTrade trade3 = new PortfolioTrade("MSFT", 20, LocalDate.parse("2019-01-02"));
+		PortfolioTrade trade4 = new PortfolioTrade("CISCO", 30, LocalDate.parse("2019-01-03"));
+		List<PortfolioTrade> portfolioTrades = Arrays
+				.asList(new PortfolioTrade[]{trade1, trade2, trade3, trade4});
+		Counter failures = MetricsRegistry.global().counter("portfolio.calculate.failures");
+		long failuresBefore = failures.getCount();
+
+		List<AnnualizedReturn> annualizedReturns = portfolioManager
+				.calculateAnnualizedReturnParallel(portfolioTrades, LocalDate.parse("2019-12-12"), 2);
+
+		List<String> symbols = annualizedReturns.stream().map(AnnualizedReturn::getSymbol)
+				.collect(Collectors.toList());
+		Assertions.assertEquals(Arrays.asList(new String[]{"AAPL", "MSFT"}), symbols);
+		// Both lots of the failed symbol are counted.
+		Assertions.assertEquals(2, failures.getCount() - failuresBefore);
+	}
+
+	@Test
+	public void calculateAnnualizedReturnSkipsFailedSymbol() throws Exception {
+		Mockito.doReturn(getCandles(aaplQuotes))
+		.when(portfolioManager).getStockQuote(eq("AAPL"), any(), any());
+		Mockito.doThrow(new RuntimeException("unknown symbol"))
+		.when(portfolioManager).getStockQuote(eq("CISCO"), any(), any());
+		Mockito.doReturn(getCandles(msftQuotes))
+		.when(portfolioManager).getStockQuote(eq("MSFT"), any(), any());
+		PortfolioTrade trade1 = new PortfolioTrade("AAPL", 50, LocalDate.parse("2019-01-02"));
+		PortfolioTrade trade2 = new PortfolioTrade("CISCO", 100, LocalDate.parse("2019-01-02"));
+		PortfolioTrade trade3 = new PortfolioTrade("MSFT", 20, LocalDate.parse("2019-01-02"));
+		List<PortfolioTrade> portfolioTrades = Arrays
+				.asList(new PortfolioTrade[]{trade1, trade2, trade3});
+
+		List<AnnualizedReturn> annualizedReturns = portfolioManager
+				.calculateAnnualizedReturn(portfolioTrades, LocalDate.parse("2019-12-12"));
+
+		List<String> symbols = annualizedReturns.stream().map(AnnualizedReturn::getSymbol)
+				.collect(Collectors.toList());
+		Assertions.assertEquals(Arrays.asList(new String[]{"AAPL", "MSFT"}), symbols);
+	}
+
+
+	@Test
+	public void calculateAnnualizedReturnFetchesEachSymbolOnce() throws Exception {
+		Mockito.doReturn(getCandles(aaplQuotes))
+		.when(portfolioManager).getStockQuote(eq("AAPL"), any(), any());
+		PortfolioTrade trade1 = new PortfolioTrade("AAPL", 50, LocalDate.parse("2019-01-03"));
+		PortfolioTrade trade2 = new PortfolioTrade("AAPL", 10, LocalDate.parse("2019-01-02"));
+		List<PortfolioTrade> portfolioTrades = Arrays
+				.asList(new PortfolioTrade[]{trade1, trade2});
+
+		List<AnnualizedReturn> annualizedReturns = portfolioManager
+				.calculateAnnualizedReturn(portfolioTrades, LocalDate.parse("2019-12-12"));
+
+		Mockito.verify(portfolioManager, Mockito.times(1))
+				.getStockQuote(eq("AAPL"), eq(LocalDate.parse("2019-01-02")), eq(LocalDate.parse("2019-12-12")));
+		Assertions.assertEquals(2, annualizedReturns.size());
+		Assertions.assertEquals((271.46 - 143.98) / 143.98, annualizedReturns.get(0).getTotalReturns(), 0.0001);
+		Assertions.assertEquals((271.46 - 154.89) / 154.89, annualizedReturns.get(1).getTotalReturns(), 0.0001);
+	}
+
+
 	private List<TiingoCandle> getCandles(String responseText) throws JsonProcessingException {
 		ObjectMapper mapper = new ObjectMapper();
 		mapper.registerModule(new JavaTimeModule());
@@ -0,0 +1,110 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioReturns;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.TradeType;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+
+class PortfolioReturnsTest {
+
+  private static final LocalDate BUY_DAY = LocalDate.parse("2019-01-02");
+  private static final LocalDate END_DATE = LocalDate.parse("2020-01-02");
+
+  private static CandleSeries candles(double open, double close) {
+    return CandleSeries.builder()
+        .add(BUY_DAY.toEpochDay(), open, open, open, open)
+        .add(END_DATE.toEpochDay(), close, close, close, close)
+        .build();
+  }
+
+  private static PortfolioManager portfolioManager() {
+    Map<String, CandleSeries> quotes = new HashMap<>();
+    quotes.put("AAPL", candles(100, 150));
+    quotes.put("MSFT", candles(50, 45));
+    return PortfolioManagerFactory.getPortfolioManager(new ThrottledQuoteTransport(
+        (symbol, from, to) -> CompletableFuture.completedFuture(quotes.get(symbol).between(from, to)),
+        RequestScheduler.unlimited()), null);
+  }
+
+  @Test
+  void totalsAreWeightedByQuantity() {
+    List<PortfolioTrade> portfolio = Arrays.asList(new PortfolioTrade("AAPL", 10, BUY_DAY),
+        new PortfolioTrade("MSFT", 100, BUY_DAY));
+
+    PortfolioReturns returns = portfolioManager().calculatePortfolioReturns(portfolio, END_DATE);
+
+    Assertions.assertEquals(2, returns.getLots());
+    Assertions.assertEquals(10 * 100 + 100 * 50, returns.getInvestedCapital(), 1e-9);
+    Assertions.assertEquals(10 * 150 + 100 * 45, returns.getCurrentValue(), 1e-9);
+    Assertions.assertEquals(0.0, returns.getProfitAndLoss(), 1e-9);
+    List<AnnualizedReturn> lots = returns.getAnnualizedReturns();
+    Assertions.assertEquals("AAPL", lots.get(0).getSymbol());
+    double weighted = (1_000 * lots.get(0).getAnnualizedReturn()
+        + 5_000 * lots.get(1).getAnnualizedReturn()) / 6_000;
+    Assertions.assertEquals(weighted, returns.getAnnualizedReturn(), 1e-12);
+  }
+
+  @Test
+  void perLotReturnsMatchCalculateAnnualizedReturnAndSellsReduceHoldings() {
+    PortfolioTrade sell = new PortfolioTrade("AAPL", 4, BUY_DAY);
+    sell.setTradeType(TradeType.SELL);
+    List<PortfolioTrade> holdings = Arrays.asList(new PortfolioTrade("AAPL", 10, BUY_DAY),
+        new PortfolioTrade("MSFT", 1, BUY_DAY));
+    List<PortfolioTrade> portfolio = Arrays.asList(holdings.get(0), sell, holdings.get(1));
+
+    PortfolioReturns returns = portfolioManager().calculatePortfolioReturns(portfolio, END_DATE);
+
+    List<AnnualizedReturn> expected =
+        portfolioManager().calculateAnnualizedReturn(holdings, END_DATE);
+    Assertions.assertEquals(3, returns.getLots());
+    Assertions.assertEquals(expected.size(), returns.getAnnualizedReturns().size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assertions.assertEquals(expected.get(i).getAnnualizedReturn(),
+          returns.getAnnualizedReturns().get(i).getAnnualizedReturn(), 1e-12);
+    }
+    Assertions.assertEquals(6 * 100 + 50, returns.getInvestedCapital(), 1e-9);
+    Assertions.assertEquals(6 * 150 + 45, returns.getCurrentValue(), 1e-9);
+    Assertions.assertEquals(295.0 / 650, returns.getTotalReturns(), 1e-12);
+  }
+
+  @Test
+  void annualizedReturnIsWeightedByBoughtCapitalOnly() {
+    // Nearly everything sold again: the net invested capital is 100, the bought capital 10,000.
+    PortfolioTrade sell = new PortfolioTrade("AAPL", 99, BUY_DAY);
+    sell.setTradeType(TradeType.SELL);
+    List<PortfolioTrade> portfolio = Arrays.asList(new PortfolioTrade("AAPL", 100, BUY_DAY),
+        sell);
+
+    PortfolioReturns returns = portfolioManager().calculatePortfolioReturns(portfolio, END_DATE);
+
+    Assertions.assertEquals(100, returns.getInvestedCapital(), 1e-9);
+    Assertions.assertEquals(1, returns.getAnnualizedReturns().size());
+    Assertions.assertEquals(returns.getAnnualizedReturns().get(0).getAnnualizedReturn(),
+        returns.getAnnualizedReturn(), 1e-12);
+  }
+
+  @Test
+  void lotsWithoutTradingDaysAreSkipped() {
+    List<PortfolioTrade> portfolio = Arrays.asList(new PortfolioTrade("AAPL", 10, BUY_DAY),
+        new PortfolioTrade("MSFT", 5, END_DATE.plusDays(1)));
+
+    PortfolioReturns returns = portfolioManager().calculatePortfolioReturns(portfolio, END_DATE);
+
+    Assertions.assertEquals(1, returns.getLots());
+    Assertions.assertEquals("AAPL", returns.getAnnualizedReturns().get(0).getSymbol());
+    Assertions.assertEquals(10 * 100, returns.getInvestedCapital(), 1e-9);
+  }
+}
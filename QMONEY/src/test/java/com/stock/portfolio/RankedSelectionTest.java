@@ -0,0 +1,130 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+
+class RankedSelectionTest {
+
+  private static final Comparator<int[]> BY_SCORE_DESCENDING =
+      Comparator.<int[]>comparingInt(pair -> pair[0]).reversed();
+
+  @Test
+  void concurrentSelectionMatchesTheStableFullSort() throws InterruptedException {
+    // Few distinct scores, so that most of the order comes from breaking ties.
+    SplittableRandom random = new SplittableRandom(7);
+    List<int[]> input = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      input.add(new int[] {random.nextInt(20), i});
+    }
+    List<int[]> sorted = new ArrayList<>(input);
+    sorted.sort(BY_SCORE_DESCENDING);
+    List<Integer> shuffled = new ArrayList<>();
+    for (int i = 0; i < input.size(); i++) {
+      shuffled.add(i);
+    }
+    Collections.shuffle(shuffled, new Random(11));
+
+    for (Ranking ranking : new Ranking[] {Ranking.top(50), Ranking.bottom(50), Ranking.all()}) {
+      RankedSelection<int[]> selection = ranking.newSelection(BY_SCORE_DESCENDING);
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+        for (int t = 0; t < 4; t++) {
+          int first = t;
+          executor.execute(() -> {
+            for (int i = first; i < shuffled.size(); i += 4) {
+              int position = shuffled.get(i);
+              selection.offer(input.get(position), position);
+            }
+          });
+        }
+      } finally {
+        executor.shutdown();
+      }
+      Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+      List<int[]> expected = ranking.equals(Ranking.bottom(50))
+          ? sorted.subList(sorted.size() - 50, sorted.size())
+          : sorted.subList(0, Math.min(ranking.getLimit(), sorted.size()));
+      List<int[]> actual = selection.toList();
+      Assertions.assertEquals(expected.size(), actual.size(), ranking.toString());
+      for (int i = 0; i < expected.size(); i++) {
+        Assertions.assertSame(expected.get(i), actual.get(i), ranking + " at " + i);
+      }
+      Assertions.assertEquals(input.size(), selection.getOfferedCount());
+    }
+  }
+
+  @Test
+  void boundedRankingsAreTheEndsOfTheFullResult() throws InterruptedException {
+    LocalDate buyDay = LocalDate.parse("2019-01-02");
+    LocalDate endDate = LocalDate.parse("2020-01-02");
+    Map<String, CandleSeries> quotes = new HashMap<>();
+    List<PortfolioTrade> portfolio = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      double close = 100 + (i % 10) * 5;
+      quotes.put("SYM" + i, CandleSeries.builder()
+          .add(buyDay.toEpochDay(), 100, 100, 100, 100)
+          .add(endDate.toEpochDay(), close, close, close, close)
+          .build());
+      portfolio.add(new PortfolioTrade("SYM" + i, 1, buyDay));
+    }
+    PortfolioManager portfolioManager = PortfolioManagerFactory.getPortfolioManager(
+        new ThrottledQuoteTransport((symbol, from, to) -> CompletableFuture.completedFuture(
+            quotes.get(symbol).between(from, to)), RequestScheduler.unlimited()), null);
+
+    List<AnnualizedReturn> all = portfolioManager.calculateAnnualizedReturn(portfolio, endDate);
+    List<AnnualizedReturn> top = portfolioManager.calculateAnnualizedReturn(portfolio, endDate,
+        Ranking.top(7));
+    List<AnnualizedReturn> bottom = portfolioManager.calculateAnnualizedReturnAsync(portfolio,
+        endDate, Ranking.bottom(7)).join();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<AnnualizedReturn> parallelTop;
+    try {
+      parallelTop = portfolioManager.calculateAnnualizedReturnParallel(portfolio, endDate,
+          executor, Ranking.top(7));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assertions.assertEquals(symbols(all.subList(0, 7)), symbols(top));
+    Assertions.assertEquals(symbols(all.subList(0, 7)), symbols(parallelTop));
+    Assertions.assertEquals(symbols(all.subList(33, 40)), symbols(bottom));
+  }
+
+  @Test
+  void rankingIsParsedFromTheCommandLine() {
+    Assertions.assertEquals(Ranking.top(50), Ranking.parse("top:50"));
+    Assertions.assertEquals(Ranking.bottom(3), Ranking.parse("BOTTOM:3"));
+    Assertions.assertEquals(Ranking.all(), Ranking.parse("all"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Ranking.parse("top:0"));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> Ranking.parse("best:5"));
+  }
+
+  private static List<String> symbols(List<AnnualizedReturn> returns) {
+    List<String> symbols = new ArrayList<>();
+    for (AnnualizedReturn annualizedReturn : returns) {
+      symbols.add(annualizedReturn.getSymbol());
+    }
+    return symbols;
+  }
+}
@@ -0,0 +1,87 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.ReturnSweep;
+import com.stock.quotes.QuoteTransport;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.standin.SyntheticMarketData;
+
+class ReturnSweepTest {
+
+  private static final LocalDate FIRST_DAY = LocalDate.parse("2015-01-01");
+  private static final LocalDate LAST_DAY = LocalDate.parse("2020-06-30");
+
+  private final SyntheticMarketData marketData = new SyntheticMarketData(13, FIRST_DAY, LAST_DAY);
+  private final List<String> fetches = new ArrayList<>();
+
+  private PortfolioManager portfolioManager() {
+    QuoteTransport canned = (symbol, from, to) -> {
+      fetches.add(symbol);
+      return CompletableFuture.completedFuture(marketData.candles(symbol, from, to));
+    };
+    return PortfolioManagerFactory.getPortfolioManager(
+        new ThrottledQuoteTransport(canned, RequestScheduler.unlimited()), null);
+  }
+
+  @Test
+  void everyDayMatchesCalculateAnnualizedReturn() {
+    List<PortfolioTrade> portfolio = Arrays.asList(
+        new PortfolioTrade("AAPL", 10, LocalDate.parse("2017-03-01")),
+        new PortfolioTrade("MSFT", 5, LocalDate.parse("2016-06-15")),
+        new PortfolioTrade("AAPL", 2, LocalDate.parse("2018-11-24")));
+    LocalDate from = LocalDate.parse("2019-01-01");
+    LocalDate to = LocalDate.parse("2019-12-31");
+
+    ReturnSweep sweep = portfolioManager().calculateAnnualizedReturnSweep(portfolio, from, to);
+
+    Assertions.assertEquals(2, fetches.size());
+    Assertions.assertEquals(3, sweep.getLotCount());
+    Assertions.assertEquals(261, sweep.getDayCount());
+    Assertions.assertEquals(LocalDate.parse("2019-01-01"), sweep.getDate(0));
+    PortfolioManager reference = portfolioManager();
+    for (int day = 0; day < sweep.getDayCount(); day += 13) {
+      List<AnnualizedReturn> expected =
+          reference.calculateAnnualizedReturn(portfolio, sweep.getDate(day));
+      List<AnnualizedReturn> actual = sweep.toAnnualizedReturns(day);
+      actual.sort(PortfolioManagerImpl.getComparator());
+      Assertions.assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        Assertions.assertEquals(expected.get(i).getSymbol(), actual.get(i).getSymbol());
+        Assertions.assertEquals(expected.get(i).getAnnualizedReturn(),
+            actual.get(i).getAnnualizedReturn(), 1e-12);
+        Assertions.assertEquals(expected.get(i).getTotalReturns(),
+            actual.get(i).getTotalReturns(), 1e-12);
+      }
+    }
+  }
+
+  @Test
+  void lotHasNoReturnBeforeItsPurchase() {
+    List<PortfolioTrade> portfolio = Arrays.asList(
+        new PortfolioTrade("AAPL", 1, LocalDate.parse("2019-06-15")));
+
+    ReturnSweep sweep = portfolioManager().calculateAnnualizedReturnSweep(portfolio,
+        LocalDate.parse("2019-06-10"), LocalDate.parse("2019-06-21"));
+
+    Assertions.assertEquals(10, sweep.getDayCount());
+    Assertions.assertEquals(LocalDate.parse("2019-06-10"), sweep.getDate(0));
+    for (int day = 0; day < 5; day++) {
+      Assertions.assertTrue(Double.isNaN(sweep.getTotalReturn(0, day)));
+    }
+    Assertions.assertTrue(sweep.toAnnualizedReturns(4).isEmpty());
+    Assertions.assertEquals(LocalDate.parse("2019-06-17"), sweep.getDate(5));
+    Assertions.assertFalse(Double.isNaN(sweep.getTotalReturn(0, 5)));
+    Assertions.assertThrows(IndexOutOfBoundsException.class, () -> sweep.getTotalReturn(1, 0));
+  }
+}
@@ -0,0 +1,146 @@
+package com.stock.portfolio;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.decampo.xirr.Transaction;
+import org.decampo.xirr.Xirr;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.dto.TradeType;
+import com.stock.quotes.QuoteTransport;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.standin.SyntheticMarketData;
+
+class XirrSolverTest {
+
+  private static final LocalDate FIRST_DAY = LocalDate.parse("2015-01-01");
+  private static final LocalDate END_DATE = LocalDate.parse("2019-12-31");
+
+  @Test
+  void oneYearAtTenPercent() {
+    XirrSolver solver = new XirrSolver()
+        .add(-1_000, LocalDate.parse("2019-01-01"))
+        .add(1_100, LocalDate.parse("2020-01-01"));
+
+    Assertions.assertEquals(0.10, solver.solve(), 1e-12);
+    Assertions.assertEquals(0, solver.npv(0.10), 1e-9);
+    Assertions.assertTrue(solver.getIterations() < 10, "iterations " + solver.getIterations());
+  }
+
+  @Test
+  void matchesXirrLibraryOnRandomFlows() {
+    SplittableRandom random = new SplittableRandom(11);
+    XirrSolver solver = new XirrSolver();
+    for (int set = 0; set < 500; set++) {
+      solver.reset();
+      // Payments before receipts: one sign change, so the rate is unique. Receipts start a year
+      // after the last payment and return between half and twice what was paid, which keeps the
+      // rate within (-1, 1) where the library's Newton-Raphson converges too.
+      int flows = 2 + random.nextInt(40);
+      int payments = 1 + random.nextInt(flows - 1);
+      double[] amounts = new double[flows];
+      LocalDate[] dates = new LocalDate[flows];
+      double paid = 0;
+      double weights = 0;
+      long day = FIRST_DAY.toEpochDay();
+      for (int i = 0; i < flows; i++) {
+        day += (i == payments ? 365 : 0) + random.nextInt(60);
+        dates[i] = LocalDate.ofEpochDay(day);
+        amounts[i] = 1 + random.nextDouble() * 10_000;
+        if (i < payments) {
+          paid += amounts[i];
+        } else {
+          weights += amounts[i];
+        }
+      }
+      double received = paid * (0.5 + random.nextDouble() * 1.5);
+      List<Transaction> transactions = new ArrayList<>();
+      for (int i = 0; i < flows; i++) {
+        double amount = i < payments ? -amounts[i] : amounts[i] * received / weights;
+        solver.add(amount, dates[i]);
+        transactions.add(new Transaction(amount, dates[i]));
+      }
+
+      double expected = new Xirr(transactions).xirr();
+      Assertions.assertEquals(expected, solver.solve(), 1e-9, "set " + set);
+    }
+  }
+
+  @Test
+  void flowsOfOneSignHaveNoRate() {
+    XirrSolver solver = new XirrSolver()
+        .add(-100, LocalDate.parse("2019-01-01"))
+        .add(-100, LocalDate.parse("2019-06-01"));
+
+    Assertions.assertTrue(Double.isNaN(solver.solve()));
+    Assertions.assertTrue(Double.isNaN(solver.reset().solve()));
+  }
+
+  @Test
+  void cashFlowsHonourQuantityAndSells() {
+    CandleSeries candles = CandleSeries.builder()
+        .add(LocalDate.parse("2019-01-02").toEpochDay(), 10, 11, 9, 10.5)
+        .add(LocalDate.parse("2019-07-01").toEpochDay(), 12, 13, 11, 12.5)
+        .add(LocalDate.parse("2019-12-31").toEpochDay(), 15, 16, 14, 16)
+        .build();
+    PortfolioTrade sell = new PortfolioTrade("AAPL", 4, LocalDate.parse("2019-06-29"));
+    sell.setTradeType(TradeType.SELL);
+    List<PortfolioTrade> trades = Arrays.asList(
+        new PortfolioTrade("AAPL", 10, LocalDate.parse("2019-01-01")), sell);
+
+    double actual = PortfolioCashFlows.xirr(trades, Collections.singletonMap("AAPL", candles),
+        END_DATE);
+
+    // Bought 10 at the 2019-01-02 open, sold 4 at the 2019-07-01 open, 6 still held at the close.
+    double expected = new Xirr(Arrays.asList(
+        new Transaction(-100, LocalDate.parse("2019-01-01")),
+        new Transaction(48, LocalDate.parse("2019-06-29")),
+        new Transaction(96, END_DATE))).xirr();
+    Assertions.assertEquals(expected, actual, 1e-9);
+  }
+
+  @Test
+  void managerAndBatchAgreeOnPortfolioXirr() throws InterruptedException {
+    SyntheticMarketData marketData = new SyntheticMarketData(5, FIRST_DAY, END_DATE);
+    QuoteTransport transport = new ThrottledQuoteTransport((symbol, from, to) ->
+        CompletableFuture.completedFuture(marketData.candles(symbol, from, to)),
+        RequestScheduler.unlimited());
+    PortfolioTrade sell = new PortfolioTrade("MSFT", 3, LocalDate.parse("2018-09-04"));
+    sell.setTradeType(TradeType.SELL);
+    Map<String, List<PortfolioTrade>> portfolios = new LinkedHashMap<>();
+    portfolios.put("a", Arrays.asList(new PortfolioTrade("MSFT", 8, LocalDate.parse("2016-03-01")),
+        new PortfolioTrade("AAPL", 2, LocalDate.parse("2017-05-15")), sell));
+    portfolios.put("b", Arrays.asList(new PortfolioTrade("AAPL", 1, LocalDate.parse("2019-02-01"))));
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    Map<String, Double> batch;
+    try {
+      batch = PortfolioManagerFactory.getPortfolioBatchManager(transport, null)
+          .calculateXirr(portfolios, END_DATE, executor);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    PortfolioManager portfolioManager = PortfolioManagerFactory.getPortfolioManager(transport,
+        null);
+    for (Map.Entry<String, List<PortfolioTrade>> portfolio : portfolios.entrySet()) {
+      double expected = portfolioManager.calculateXirr(portfolio.getValue(), END_DATE);
+      Assertions.assertFalse(Double.isNaN(expected));
+      Assertions.assertEquals(expected, batch.get(portfolio.getKey()), 1e-12);
+    }
+  }
+}
@@ -0,0 +1,107 @@
+package com.stock.quotes;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.CandleSeries;
+import com.stock.standin.SyntheticMarketData;
+import com.stock.standin.TiingoStandInServer;
+
+class BatchingQuoteTransportTest {
+
+  private static final LocalDate FIRST_DAY = LocalDate.parse("2019-01-01");
+  private static final LocalDate TODAY = LocalDate.parse("2020-06-30");
+
+  private TiingoStandInServer server;
+  private BatchingQuoteTransport transport;
+
+  @AfterEach
+  void stop() {
+    if (transport != null) {
+      transport.close();
+    }
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = TiingoStandInServer.builder()
+        .marketData(new SyntheticMarketData(3, FIRST_DAY, TODAY))
+        .unknownSymbol("NOPE")
+        .build().start();
+  }
+
+  private BatchingQuoteTransport open(int maxTickers, int maxUrlLength) {
+    PooledHttpQuoteTransport http = new PooledHttpQuoteTransport(server.getBaseUrl(), "token", 4);
+    Clock today = Clock.fixed(TODAY.atTime(12, 0).atZone(BatchingQuoteTransport.EXCHANGE_ZONE)
+        .toInstant(), BatchingQuoteTransport.EXCHANGE_ZONE);
+    transport = new BatchingQuoteTransport(http, http, RequestScheduler.unlimited(), maxTickers,
+        maxUrlLength, Duration.ofMillis(50), today);
+    return transport;
+  }
+
+  @Test
+  void sessionFetchesShareBatchesAndHistoryGoesPerSymbol() {
+    open(100, BatchingQuoteTransport.DEFAULT_MAX_URL_LENGTH);
+    List<String> symbols = new ArrayList<>();
+    List<CompletableFuture<CandleSeries>> fetches = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      symbols.add("SYM" + i);
+      fetches.add(transport.fetchAsync("SYM" + i, TODAY, TODAY));
+    }
+    // The same symbol again and an unknown one, in the same window.
+    CompletableFuture<CandleSeries> again = transport.fetchAsync("SYM249", TODAY, TODAY);
+    CompletableFuture<CandleSeries> unknown = transport.fetchAsync("NOPE", TODAY, TODAY);
+
+    for (int i = 0; i < symbols.size(); i++) {
+      CandleSeries latest = fetches.get(i).join();
+      CandleSeries expected = server.getMarketData().candles(symbols.get(i), TODAY, TODAY);
+      Assertions.assertEquals(1, latest.size(), symbols.get(i));
+      Assertions.assertEquals(expected.getOpen(0), latest.getOpen(0), 0.0);
+      Assertions.assertEquals(expected.getClose(0), latest.getClose(0), 0.0);
+    }
+    Assertions.assertEquals(fetches.get(249).join().getClose(0), again.join().getClose(0), 0.0);
+    CompletionException failure = Assertions.assertThrows(CompletionException.class,
+        unknown::join);
+    Assertions.assertTrue(failure.getCause() instanceof UnknownSymbolException);
+
+    Assertions.assertEquals(3, transport.getBatchCount());
+    Assertions.assertEquals(251, transport.getBatchedSymbolCount());
+    Assertions.assertEquals(1, transport.getFallbackCount());
+    Assertions.assertEquals(3, server.getIexRequestCount());
+
+    CandleSeries history = transport.fetch("SYM1", LocalDate.parse("2020-06-01"), TODAY);
+    Assertions.assertEquals(server.getMarketData().candles("SYM1", LocalDate.parse("2020-06-01"),
+        TODAY).size(), history.size());
+    Assertions.assertEquals(3, server.getIexRequestCount());
+  }
+
+  @Test
+  void batchesAreSplitToFitTheUrlLimit() {
+    int emptyLength = TiingoEndpoints.iexTopOfBook(server.getBaseUrl(),
+        Collections.<String>emptyList(), "token").length();
+    open(BatchingQuoteTransport.DEFAULT_MAX_TICKERS, emptyLength + "AAPL,MSFT".length());
+    Assertions.assertEquals(Arrays.asList(Arrays.asList("AAPL", "MSFT"), Arrays.asList("GOOGL"),
+        Arrays.asList("TSLA", "F")),
+        transport.split(Arrays.asList("AAPL", "MSFT", "GOOGL", "TSLA", "F")));
+
+    // A blocking fetch does not wait out the linger; a range from yesterday is history.
+    Assertions.assertEquals(1, transport.fetch("AAPL", TODAY, TODAY.plusDays(1)).size());
+    Assertions.assertFalse(transport.isBatchable(TODAY.minusDays(1), TODAY));
+  }
+}
@@ -0,0 +1,183 @@
+package com.stock.quotes;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.CandleSeries;
+
+class CandleCacheTest {
+
+  private static final LocalDate TODAY = LocalDate.parse("2020-01-31");
+
+  private final Clock clock = Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC),
+      ZoneOffset.UTC);
+
+  private final List<String> fetches = new ArrayList<>();
+
+  /** Returns one candle per calendar day, with the day of month as its price. */
+  private CandleSeries load(String symbol, LocalDate from, LocalDate to) {
+    fetches.add(symbol + " " + from + ".." + to);
+    CandleSeries.Builder candles = CandleSeries.builder();
+    for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+      double price = date.getDayOfMonth();
+      candles.add(date.toEpochDay(), price, price, price, price);
+    }
+    return candles.build();
+  }
+
+  @Test
+  void coveredRangeIsServedFromCache() {
+    CandleCache cache = new CandleCache(1000, Duration.ofHours(1), clock);
+
+    cache.get("AAPL", LocalDate.parse("2020-01-01"), LocalDate.parse("2020-01-20"), this::load);
+    CandleSeries candles = cache.get("AAPL", LocalDate.parse("2020-01-05"),
+        LocalDate.parse("2020-01-10"), this::load);
+
+    Assertions.assertEquals(1, fetches.size());
+    Assertions.assertEquals(6, candles.size());
+    Assertions.assertEquals(LocalDate.parse("2020-01-05"), candles.getDate(0));
+    Assertions.assertEquals(1, cache.getHitCount());
+    Assertions.assertEquals(1, cache.getMissCount());
+  }
+
+  @Test
+  void overlappingRangeFetchesOnlyMissingEdges() {
+    CandleCache cache = new CandleCache(1000, Duration.ofHours(1), clock);
+
+    cache.get("AAPL", LocalDate.parse("2020-01-10"), LocalDate.parse("2020-01-20"), this::load);
+    CandleSeries candles = cache.get("AAPL", LocalDate.parse("2020-01-05"),
+        LocalDate.parse("2020-01-25"), this::load);
+
+    Assertions.assertEquals(3, fetches.size());
+    Assertions.assertEquals("AAPL 2020-01-05..2020-01-09", fetches.get(1));
+    Assertions.assertEquals("AAPL 2020-01-21..2020-01-25", fetches.get(2));
+    Assertions.assertEquals(21, candles.size());
+    for (int i = 0; i < candles.size(); i++) {
+      Assertions.assertEquals(LocalDate.parse("2020-01-05").plusDays(i), candles.getDate(i));
+    }
+  }
+
+  @Test
+  void distantRangeIsFetchedWithoutTheGapAndBothAreKept() {
+    CandleCache cache = new CandleCache(1000, Duration.ofHours(1), clock);
+
+    cache.get("AAPL", LocalDate.parse("2019-12-01"), LocalDate.parse("2020-01-20"), this::load);
+    CandleSeries window = cache.get("AAPL", LocalDate.parse("2019-03-01"),
+        LocalDate.parse("2019-03-07"), this::load);
+    cache.get("AAPL", LocalDate.parse("2019-12-10"), LocalDate.parse("2020-01-10"), this::load);
+    cache.get("AAPL", LocalDate.parse("2019-03-02"), LocalDate.parse("2019-03-06"), this::load);
+
+    Assertions.assertEquals(2, fetches.size());
+    Assertions.assertEquals("AAPL 2019-03-01..2019-03-07", fetches.get(1));
+    Assertions.assertEquals(7, window.size());
+    Assertions.assertEquals(2, cache.getHitCount());
+    Assertions.assertEquals(51 + 7, cache.size());
+  }
+
+  @Test
+  void requestSpanningTwoRangesFetchesOnlyTheGapBetweenThem() {
+    CandleCache cache = new CandleCache(1000, Duration.ofHours(1), clock);
+
+    cache.get("AAPL", LocalDate.parse("2019-03-01"), LocalDate.parse("2019-03-07"), this::load);
+    cache.get("AAPL", LocalDate.parse("2019-03-15"), LocalDate.parse("2019-03-20"), this::load);
+    CandleSeries candles = cache.get("AAPL", LocalDate.parse("2019-02-25"),
+        LocalDate.parse("2019-03-25"), this::load);
+    cache.get("AAPL", LocalDate.parse("2019-02-25"), LocalDate.parse("2019-03-25"), this::load);
+
+    Assertions.assertEquals(Arrays.asList("AAPL 2019-03-01..2019-03-07",
+        "AAPL 2019-03-15..2019-03-20", "AAPL 2019-02-25..2019-02-28",
+        "AAPL 2019-03-08..2019-03-14", "AAPL 2019-03-21..2019-03-25"), fetches);
+    Assertions.assertEquals(29, candles.size());
+    for (int i = 0; i < candles.size(); i++) {
+      Assertions.assertEquals(LocalDate.parse("2019-02-25").plusDays(i), candles.getDate(i));
+    }
+    Assertions.assertEquals(1, cache.getHitCount());
+    Assertions.assertEquals(29, cache.size());
+  }
+
+  @Test
+  void concurrentMissesAreMergedWhicheverSettlesLast() {
+    CandleCache cache = new CandleCache(1000, Duration.ofHours(1), clock);
+    Map<String, CompletableFuture<CandleSeries>> pending = new HashMap<>();
+    CandleCache.AsyncLoader held = (symbol, from, to) ->
+        pending.computeIfAbsent(from + ".." + to, range -> new CompletableFuture<>());
+
+    cache.getAsync("AAPL", LocalDate.parse("2019-01-01"), LocalDate.parse("2019-06-30"), held);
+    cache.getAsync("AAPL", LocalDate.parse("2019-03-01"), LocalDate.parse("2019-03-31"), held);
+    cache.getAsync("AAPL", LocalDate.parse("2019-06-15"), LocalDate.parse("2019-12-31"), held);
+    for (String range : Arrays.asList("2019-01-01..2019-06-30", "2019-06-15..2019-12-31",
+        "2019-03-01..2019-03-31")) {
+      String[] dates = range.split("\\.\\.");
+      pending.get(range).complete(load("AAPL", LocalDate.parse(dates[0]),
+          LocalDate.parse(dates[1])));
+    }
+    fetches.clear();
+    CandleSeries year = cache.get("AAPL", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-12-31"), this::load);
+
+    Assertions.assertEquals(0, fetches.size(), fetches.toString());
+    Assertions.assertEquals(365, year.size());
+    for (int i = 0; i < year.size(); i++) {
+      Assertions.assertEquals(LocalDate.parse("2019-01-01").plusDays(i), year.getDate(i));
+    }
+    Assertions.assertEquals(365, cache.size());
+  }
+
+  @Test
+  void todayIsAlwaysRefetched() {
+    CandleCache cache = new CandleCache(1000, Duration.ofHours(1), clock);
+
+    cache.get("AAPL", LocalDate.parse("2020-01-20"), TODAY, this::load);
+    CandleSeries candles = cache.get("AAPL", LocalDate.parse("2020-01-20"), TODAY, this::load);
+
+    Assertions.assertEquals("AAPL 2020-01-31..2020-01-31", fetches.get(1));
+    Assertions.assertEquals(12, candles.size());
+  }
+
+  @Test
+  void unknownSymbolIsCachedNegatively() {
+    CandleCache cache = new CandleCache(1000, Duration.ofHours(1), clock);
+    CandleCache.Loader unknown = (symbol, from, to) -> {
+      fetches.add(symbol);
+      throw new UnknownSymbolException(symbol);
+    };
+
+    for (int i = 0; i < 3; i++) {
+      Assertions.assertThrows(UnknownSymbolException.class, () -> cache.get("CISCO",
+          LocalDate.parse("2020-01-01"), LocalDate.parse("2020-01-10"), unknown));
+    }
+
+    Assertions.assertEquals(1, fetches.size());
+    Assertions.assertEquals(2, cache.getNegativeHitCount());
+  }
+
+  @Test
+  void leastRecentlyUsedSymbolIsEvicted() {
+    CandleCache cache = new CandleCache(25, Duration.ofHours(1), clock);
+    LocalDate from = LocalDate.parse("2020-01-01");
+    LocalDate to = LocalDate.parse("2020-01-10");
+
+    cache.get("AAPL", from, to, this::load);
+    cache.get("MSFT", from, to, this::load);
+    cache.get("AAPL", from, to, this::load);
+    cache.get("GOOGL", from, to, this::load);
+    cache.get("AAPL", from, to, this::load);
+    cache.get("MSFT", from, to, this::load);
+
+    Assertions.assertEquals(2, cache.getEvictionCount());
+    Assertions.assertEquals(4, fetches.size());
+    Assertions.assertEquals("MSFT 2020-01-01..2020-01-10", fetches.get(3));
+    Assertions.assertEquals(20, cache.size());
+  }
+}
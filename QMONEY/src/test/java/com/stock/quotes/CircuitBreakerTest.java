@@ -0,0 +1,41 @@
+package com.stock.quotes;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  @Test
+  void opensAfterFailuresAndLetsOneTrialThroughAfterTheOpenPeriod() {
+    AtomicLong now = new AtomicLong();
+    CircuitBreaker circuit = new CircuitBreaker("test", 3, Duration.ofSeconds(30), now::get);
+
+    circuit.onFailure();
+    circuit.onFailure();
+    circuit.onSuccess();
+    circuit.onFailure();
+    circuit.onFailure();
+    Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+    circuit.onFailure();
+    Assertions.assertEquals(CircuitBreaker.State.OPEN, circuit.getState());
+    Assertions.assertFalse(circuit.tryAcquire());
+
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    Assertions.assertTrue(circuit.tryAcquire());
+    Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuit.getState());
+    Assertions.assertFalse(circuit.tryAcquire());
+    circuit.onFailure();
+    Assertions.assertEquals(CircuitBreaker.State.OPEN, circuit.getState());
+
+    now.addAndGet(Duration.ofSeconds(30).toNanos());
+    Assertions.assertTrue(circuit.tryAcquire());
+    circuit.onSuccess();
+    Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuit.getState());
+    Assertions.assertTrue(circuit.tryAcquire());
+    Assertions.assertEquals(2, circuit.getOpenedCount());
+    Assertions.assertEquals(2, circuit.getRejectedCount());
+  }
+}
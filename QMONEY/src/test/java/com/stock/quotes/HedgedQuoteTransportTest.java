@@ -0,0 +1,132 @@
+package com.stock.quotes;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.CandleSeries;
+
+class HedgedQuoteTransportTest {
+
+  private static final LocalDate FROM = LocalDate.parse("2019-01-01");
+  private static final LocalDate TO = LocalDate.parse("2019-12-12");
+
+  private static CandleSeries candles() {
+    return CandleSeries.builder().add(FROM.toEpochDay(), 1, 2, 1, 2).build();
+  }
+
+  @Test
+  void slowRequestIsHedgedAndTheHedgeWins() {
+    // The first copy never answers; the hedge answers at once.
+    List<CompletableFuture<CandleSeries>> calls = new ArrayList<>();
+    QuoteTransport stuckOnce = (symbol, from, to) -> {
+      CompletableFuture<CandleSeries> call = calls.isEmpty() ? new CompletableFuture<>()
+          : CompletableFuture.completedFuture(candles());
+      calls.add(call);
+      return call;
+    };
+    HedgedQuoteTransport hedged = new HedgedQuoteTransport(stuckOnce, RequestScheduler.unlimited(), 0.95, 1.0,
+        Duration.ofMillis(20), Duration.ofMillis(1));
+
+    CandleSeries result = hedged.fetchAsync("AAPL", FROM, TO).join();
+
+    Assertions.assertEquals(1, result.size());
+    Assertions.assertEquals(2, calls.size());
+    Assertions.assertEquals(1, hedged.getHedgeCount());
+    Assertions.assertEquals(1, hedged.getHedgeWinCount());
+  }
+
+  @Test
+  void hedgesStayWithinBudgetAndFailOnlyWhenEveryCopyFails() throws InterruptedException {
+    AtomicInteger calls = new AtomicInteger();
+    List<CompletableFuture<CandleSeries>> pending = new ArrayList<>();
+    QuoteTransport slow = (symbol, from, to) -> {
+      calls.incrementAndGet();
+      CompletableFuture<CandleSeries> call = new CompletableFuture<>();
+      synchronized (pending) {
+        pending.add(call);
+      }
+      return call;
+    };
+    HedgedQuoteTransport hedged = new HedgedQuoteTransport(slow, RequestScheduler.unlimited(), 0.95, 0.1,
+        Duration.ofMillis(10), Duration.ofMillis(1));
+
+    List<CompletableFuture<CandleSeries>> fetches = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      fetches.add(hedged.fetchAsync("SYM" + i, FROM, TO));
+    }
+    Thread.sleep(200);
+    Assertions.assertEquals(2, hedged.getHedgeCount());
+    Assertions.assertEquals(22, calls.get());
+
+    synchronized (pending) {
+      for (CompletableFuture<CandleSeries> call : pending) {
+        call.completeExceptionally(new QuoteServiceException("HTTP 503", 503));
+      }
+    }
+    for (CompletableFuture<CandleSeries> fetch : fetches) {
+      CompletionException failure = Assertions.assertThrows(CompletionException.class,
+          fetch::join);
+      Assertions.assertEquals(503, ((QuoteServiceException) failure.getCause()).getStatusCode());
+    }
+    Assertions.assertEquals(0, hedged.getHedgeWinCount());
+  }
+
+  @Test
+  void hedgesTakeASparePermitAndReportLosing429s() {
+    TokenBucket bucket = new TokenBucket("test", 2, Duration.ofHours(1));
+    RequestScheduler scheduler = new RequestScheduler(Collections.singletonList(bucket), 0,
+        Duration.ZERO, Duration.ZERO);
+    // Every copy of a fetch answers only when the test completes it.
+    Map<String, CompletableFuture<CandleSeries>> originals = new ConcurrentHashMap<>();
+    Map<String, CompletableFuture<CandleSeries>> hedges = new ConcurrentHashMap<>();
+    QuoteTransport transport = (symbol, from, to) -> {
+      CompletableFuture<CandleSeries> call = new CompletableFuture<>();
+      if (originals.putIfAbsent(symbol, call) != null) {
+        hedges.put(symbol, call);
+      }
+      return call;
+    };
+    HedgedQuoteTransport hedged = new HedgedQuoteTransport(transport, scheduler, 0.95, 1.0,
+        Duration.ofMillis(10), Duration.ofMillis(1));
+
+    // The first fetch's own permit leaves one for its hedge, which then loses with a 429.
+    scheduler.execute(() -> null);
+    CompletableFuture<CandleSeries> first = hedged.fetchAsync("AAPL", FROM, TO);
+    waitFor(() -> hedges.containsKey("AAPL"));
+    hedges.get("AAPL").completeExceptionally(new QuoteServiceException("slow down",
+        QuoteServiceException.TOO_MANY_REQUESTS));
+    Assertions.assertEquals(0, scheduler.getThrottledResponseCount());
+    originals.get("AAPL").complete(candles());
+    Assertions.assertEquals(1, first.join().size());
+    Assertions.assertEquals(1, scheduler.getThrottledResponseCount());
+    Assertions.assertEquals(0.0, bucket.available(), 1e-3);
+
+    // The 429 drained the bucket, so the next hedge has no permit and is not sent.
+    CompletableFuture<CandleSeries> second = hedged.fetchAsync("MSFT", FROM, TO);
+    waitFor(() -> hedged.getHedgesWithoutQuotaCount() == 1);
+    originals.get("MSFT").complete(candles());
+    Assertions.assertEquals(1, second.join().size());
+    Assertions.assertEquals(1, hedged.getHedgeCount());
+    Assertions.assertFalse(hedges.containsKey("MSFT"));
+  }
+
+  private static void waitFor(BooleanSupplier condition) {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!condition.getAsBoolean()) {
+      Assertions.assertTrue(System.nanoTime() < deadline, "timed out");
+      Thread.yield();
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package com.stock.quotes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.portfolio.PortfolioManager;
+import com.stock.portfolio.PortfolioManagerFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class PooledHttpQuoteTransportTest {
+
+  private static final String AAPL = "[{\"date\":\"2019-01-02T00:00:00.000Z\",\"close\":157.92,"
+      + "\"high\":158.85,\"low\":154.23,\"open\":154.89,\"volume\":37039737},"
+      + "{\"date\":\"2019-12-12T00:00:00.000Z\",\"close\":271.46,\"high\":148.5499,"
+      + "\"low\":143.8,\"open\":144.53,\"volume\":58607070}]";
+
+  private static final String MSFT = "[{\"date\":\"2019-01-02T00:00:00.000Z\",\"close\":101.12,"
+      + "\"high\":101.75,\"low\":98.94,\"open\":99.55,\"volume\":35329345},"
+      + "{\"date\":\"2019-12-12T00:00:00.000Z\",\"close\":153.24,\"high\":102.51,"
+      + "\"low\":98.93,\"open\":99.72,\"volume\":44060620}]";
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private HttpServer server;
+  private PooledHttpQuoteTransport transport;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/tiingo/daily/", this::respond);
+    server.start();
+    transport = new PooledHttpQuoteTransport(
+        "http://127.0.0.1:" + server.getAddress().getPort(), "test-token", 4);
+  }
+
+  @AfterEach
+  void stopServer() {
+    transport.close();
+    server.stop(0);
+  }
+
+  private void respond(HttpExchange exchange) throws IOException {
+    requests.incrementAndGet();
+    String path = exchange.getRequestURI().getPath();
+    if (path.contains("/SLOW/")) {
+      try {
+        Thread.sleep(1_000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    String body = path.contains("/AAPL/") ? AAPL : path.contains("/MSFT/") ? MSFT
+        : "{\"detail\":\"Error: Ticker not found\"}";
+    int status = path.contains("/BROKEN/") ? 500 : body.startsWith("[") ? 200 : 404;
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  @Test
+  void fetchParsesSeriesAndReusesConnections() {
+    for (int i = 0; i < 5; i++) {
+      CandleSeries candles = transport.fetch("AAPL", LocalDate.parse("2019-01-01"),
+          LocalDate.parse("2019-12-12"));
+      Assertions.assertEquals(2, candles.size());
+      Assertions.assertEquals(154.89, candles.getOpen(0), 0.0);
+      Assertions.assertEquals(271.46, candles.getClose(1), 0.0);
+    }
+
+    Assertions.assertEquals(5, requests.get());
+    Assertions.assertEquals(1, transport.getOpenConnections());
+  }
+
+  @Test
+  void unknownTickerAndServerErrorAreReportedSeparately() {
+    CompletionException unknown = Assertions.assertThrows(CompletionException.class,
+        () -> transport.fetchAsync("NOPE", LocalDate.parse("2019-01-01"),
+            LocalDate.parse("2019-12-12")).join());
+    Assertions.assertTrue(unknown.getCause() instanceof UnknownSymbolException);
+
+    QuoteServiceException broken = Assertions.assertThrows(QuoteServiceException.class,
+        () -> transport.fetch("BROKEN", LocalDate.parse("2019-01-01"),
+            LocalDate.parse("2019-12-12")));
+    Assertions.assertEquals(500, broken.getStatusCode());
+    Assertions.assertFalse(broken.getMessage().contains("test-token"));
+  }
+
+  @Test
+  void asyncAnnualizedReturnSkipsUnknownSymbol() {
+    PortfolioManager portfolioManager = PortfolioManagerFactory.getPortfolioManager(transport,
+        new CandleCache());
+    List<PortfolioTrade> trades = Arrays.asList(
+        new PortfolioTrade("AAPL", 50, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("NOPE", 20, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("MSFT", 100, LocalDate.parse("2019-01-02")));
+
+    List<AnnualizedReturn> result = portfolioManager.calculateAnnualizedReturnAsync(trades,
+        LocalDate.parse("2019-12-12")).join();
+
+    Assertions.assertEquals(2, result.size());
+    Assertions.assertEquals("AAPL", result.get(0).getSymbol());
+    Assertions.assertEquals("MSFT", result.get(1).getSymbol());
+    Assertions.assertEquals(0.814, result.get(0).getAnnualizedReturn(), 0.001);
+  }
+
+  @Test
+  void asyncAnnualizedReturnSkipsALotThatCannotBePriced() {
+    PortfolioManager portfolioManager = PortfolioManagerFactory.getPortfolioManager(transport,
+        new CandleCache());
+    // Bought after the last candle up to the end date, so there is no day to buy it at.
+    List<PortfolioTrade> trades = Arrays.asList(
+        new PortfolioTrade("AAPL", 50, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("MSFT", 100, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("MSFT", 10, LocalDate.parse("2019-12-13")));
+
+    List<AnnualizedReturn> result = portfolioManager.calculateAnnualizedReturnAsync(trades,
+        LocalDate.parse("2019-12-12")).join();
+
+    Assertions.assertEquals(2, result.size());
+    Assertions.assertEquals("AAPL", result.get(0).getSymbol());
+    Assertions.assertEquals("MSFT", result.get(1).getSymbol());
+    Assertions.assertEquals((153.24 - 99.55) / 99.55, result.get(1).getTotalReturns(), 1e-9);
+  }
+
+  @Test
+  void streamSkipsALotThatCannotBePriced() {
+    PortfolioManager portfolioManager = PortfolioManagerFactory.getPortfolioManager(transport,
+        new CandleCache());
+    List<PortfolioTrade> trades = Arrays.asList(
+        new PortfolioTrade("MSFT", 10, LocalDate.parse("2019-12-13")),
+        new PortfolioTrade("AAPL", 50, LocalDate.parse("2019-01-02")),
+        new PortfolioTrade("MSFT", 100, LocalDate.parse("2019-01-02")));
+    List<String> streamed = new ArrayList<>();
+
+    long emitted = portfolioManager.streamAnnualizedReturn(trades, LocalDate.parse("2019-12-12"),
+        annualizedReturn -> streamed.add(annualizedReturn.getSymbol())).join();
+
+    Assertions.assertEquals(2, emitted);
+    Collections.sort(streamed);
+    Assertions.assertEquals(Arrays.asList("AAPL", "MSFT"), streamed);
+  }
+
+  @Test
+  void slowResponseTimesOutAndRepeatedFailuresOpenTheCircuit() {
+    String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    try (PooledHttpQuoteTransport impatient = new PooledHttpQuoteTransport(baseUrl, "test-token",
+        4, Duration.ofSeconds(1), Duration.ofMillis(100))) {
+      long timeouts = QuoteMetrics.TIMEOUTS.getCount();
+      QuoteServiceException slow = Assertions.assertThrows(QuoteServiceException.class,
+          () -> impatient.fetch("SLOW", LocalDate.parse("2019-01-01"),
+              LocalDate.parse("2019-12-12")));
+      Assertions.assertTrue(HttpDeadlines.isTimeout(slow), slow.toString());
+      Assertions.assertEquals(timeouts + 1, QuoteMetrics.TIMEOUTS.getCount());
+
+      for (int i = 1; i < CircuitBreaker.DEFAULT_FAILURE_THRESHOLD; i++) {
+        Assertions.assertThrows(QuoteServiceException.class, () -> impatient.fetch("BROKEN",
+            LocalDate.parse("2019-01-01"), LocalDate.parse("2019-12-12")));
+      }
+      int sent = requests.get();
+      QuoteServiceException open = Assertions.assertThrows(QuoteServiceException.class,
+          () -> impatient.fetch("AAPL", LocalDate.parse("2019-01-01"),
+              LocalDate.parse("2019-12-12")));
+      Assertions.assertTrue(open.getMessage().startsWith("Circuit open"), open.getMessage());
+      Assertions.assertEquals(sent, requests.get());
+      Assertions.assertEquals(CircuitBreaker.State.OPEN,
+          CircuitBreaker.forUrl(baseUrl).getState());
+    }
+  }
+}
@@ -0,0 +1,207 @@
+package com.stock.quotes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.stock.dto.CandleSeries;
+import com.stock.quotes.QuoteStore.Encoding;
+import com.stock.standin.SyntheticMarketData;
+
+class QuoteStoreTest {
+
+  private static final LocalDate TODAY = LocalDate.parse("2020-01-08");
+  private static final Clock CLOCK =
+      Clock.fixed(TODAY.atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+
+  private final SyntheticMarketData marketData = new SyntheticMarketData(17,
+      LocalDate.parse("2015-01-01"), TODAY);
+  private final List<String> fetches = new ArrayList<>();
+  private Path directory;
+
+  @BeforeEach
+  void createDirectory() throws IOException {
+    directory = Files.createTempDirectory("quote-store");
+  }
+
+  @AfterEach
+  void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  private QuoteStore store(Encoding encoding) throws IOException {
+    return new QuoteStore(directory, encoding, CLOCK);
+  }
+
+  private CandleSeries get(QuoteStore store, String symbol, String from, String to) {
+    return store.get(symbol, LocalDate.parse(from), LocalDate.parse(to), (s, f, t) -> {
+      fetches.add(s + " " + f + " " + t);
+      return marketData.candles(s, f, t);
+    });
+  }
+
+  private static void assertSameCandles(CandleSeries expected, CandleSeries actual) {
+    Assertions.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assertions.assertEquals(expected.getEpochDay(i), actual.getEpochDay(i));
+      Assertions.assertEquals(expected.getOpen(i), actual.getOpen(i), 0.0);
+      Assertions.assertEquals(expected.getHigh(i), actual.getHigh(i), 0.0);
+      Assertions.assertEquals(expected.getLow(i), actual.getLow(i), 0.0);
+      Assertions.assertEquals(expected.getClose(i), actual.getClose(i), 0.0);
+    }
+  }
+
+  @Test
+  void warmStartReadsFromDiskAndAppendsOnlyNewerCandles() throws IOException {
+    for (Encoding encoding : Encoding.values()) {
+      fetches.clear();
+      get(store(encoding), "AAPL", "2018-01-01", "2019-12-31");
+      long size = Files.size(directory.resolve("AAPL.qms"));
+
+      QuoteStore restarted = store(encoding);
+      CandleSeries stored = get(restarted, "AAPL", "2018-06-01", "2019-12-31");
+      CandleSeries extended = get(restarted, "AAPL", "2019-06-01", "2020-01-06");
+
+      Assertions.assertEquals(Arrays.asList("AAPL 2018-01-01 2019-12-31",
+          "AAPL 2020-01-01 2020-01-06"), fetches, encoding.name());
+      assertSameCandles(marketData.candles("AAPL", LocalDate.parse("2018-06-01"),
+          LocalDate.parse("2019-12-31")), stored);
+      assertSameCandles(marketData.candles("AAPL", LocalDate.parse("2019-06-01"),
+          LocalDate.parse("2020-01-06")), extended);
+      Assertions.assertEquals(size + 4 * encoding.recordBytes,
+          Files.size(directory.resolve("AAPL.qms")), encoding.name());
+      Assertions.assertEquals(1, restarted.getHitCount());
+      Assertions.assertTrue(restarted.verify("AAPL").isEmpty());
+      Files.delete(directory.resolve("AAPL.qms"));
+    }
+  }
+
+  @Test
+  void todayIsFetchedEveryTimeButNeverStored() throws IOException {
+    QuoteStore store = store(Encoding.FIXED_POINT);
+    get(store, "MSFT", "2019-12-02", "2020-01-08");
+    get(store, "MSFT", "2019-12-02", "2020-01-08");
+
+    Assertions.assertEquals(Arrays.asList("MSFT 2019-12-02 2020-01-08",
+        "MSFT 2020-01-08 2020-01-08"), fetches);
+  }
+
+  @Test
+  void olderHistoryIsPrependedAndPricesWithoutScaleFallBackToRaw() throws IOException {
+    QuoteStore store = store(Encoding.FIXED_POINT);
+    get(store, "GOOGL", "2019-06-01", "2019-12-31");
+    CandleSeries wider = get(store, "GOOGL", "2019-01-01", "2019-12-31");
+    Assertions.assertEquals("GOOGL 2019-01-01 2019-05-31", fetches.get(1));
+    assertSameCandles(marketData.candles("GOOGL", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-12-31")), wider);
+    Assertions.assertEquals(2, QuoteStore.read(store.pathOf("GOOGL")).header.decimals);
+
+    CandleSeries thirds = CandleSeries.builder()
+        .add(LocalDate.parse("2019-01-02").toEpochDay(), 1.0 / 3, 1, 0.25, 0.5)
+        .build();
+    Assertions.assertEquals(-1, QuoteStore.decimalsFor(thirds));
+    CandleSeries raw = store.get("ODD", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-01-31"), (s, f, t) -> thirds);
+    Assertions.assertEquals(Encoding.RAW, QuoteStore.read(store.pathOf("ODD")).header.encoding);
+    assertSameCandles(thirds, store.get("ODD", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-01-31"), (s, f, t) -> {
+          throw new AssertionError("should be stored");
+        }));
+    assertSameCandles(thirds, raw);
+  }
+
+  @Test
+  void distantRangesAreFetchedWithoutTheGapAndAllKeptOnDisk() throws IOException {
+    QuoteStore store = store(Encoding.FIXED_POINT);
+    get(store, "AAPL", "2019-01-01", "2019-12-31");
+    CandleSeries window = get(store, "AAPL", "2016-03-01", "2016-03-07");
+    get(store, "AAPL", "2017-03-01", "2017-03-07");
+    get(store, "AAPL", "2016-03-08", "2016-03-10");
+
+    Assertions.assertEquals(Arrays.asList("AAPL 2019-01-01 2019-12-31",
+        "AAPL 2016-03-01 2016-03-07", "AAPL 2017-03-01 2017-03-07",
+        "AAPL 2016-03-08 2016-03-10"), fetches);
+    assertSameCandles(marketData.candles("AAPL", LocalDate.parse("2016-03-01"),
+        LocalDate.parse("2016-03-07")), window);
+    Assertions.assertEquals("[2016-03-01..2016-03-10, 2017-03-01..2017-03-07, "
+        + "2019-01-01..2019-12-31]", QuoteStore.read(store.pathOf("AAPL")).ranges.toString());
+    Assertions.assertTrue(store.verify("AAPL").isEmpty());
+
+    QuoteStore restarted = store(Encoding.FIXED_POINT);
+    assertSameCandles(marketData.candles("AAPL", LocalDate.parse("2016-03-02"),
+        LocalDate.parse("2016-03-09")), get(restarted, "AAPL", "2016-03-02", "2016-03-09"));
+    get(restarted, "AAPL", "2017-03-01", "2017-03-07");
+    get(restarted, "AAPL", "2019-02-01", "2019-11-30");
+    Assertions.assertEquals(4, fetches.size());
+    Assertions.assertEquals(3, restarted.getHitCount());
+  }
+
+  @Test
+  void versionOneFileIsReadAndRewrittenOnItsNextChange() throws IOException {
+    QuoteStore store = store(Encoding.RAW);
+    get(store, "IBM", "2019-01-01", "2019-01-31");
+    Path file = store.pathOf("IBM");
+    byte[] current = Files.readAllBytes(file);
+    ByteBuffer versionOne = ByteBuffer.allocate(current.length - 8);
+    versionOne.put(current, 0, QuoteStore.HEADER_BYTES)
+        .put(current, QuoteStore.HEADER_BYTES + 8, current.length - QuoteStore.HEADER_BYTES - 8);
+    versionOne.put(4, (byte) 1).putInt(20, 0);
+    Files.write(file, versionOne.array());
+    Assertions.assertTrue(store.verify("IBM").isEmpty());
+
+    QuoteStore restarted = store(Encoding.RAW);
+    assertSameCandles(marketData.candles("IBM", LocalDate.parse("2019-01-07"),
+        LocalDate.parse("2019-01-25")), get(restarted, "IBM", "2019-01-07", "2019-01-25"));
+    CandleSeries extended = get(restarted, "IBM", "2019-01-01", "2019-02-28");
+
+    Assertions.assertEquals(Arrays.asList("IBM 2019-01-01 2019-01-31",
+        "IBM 2019-02-01 2019-02-28"), fetches);
+    assertSameCandles(marketData.candles("IBM", LocalDate.parse("2019-01-01"),
+        LocalDate.parse("2019-02-28")), extended);
+    Assertions.assertEquals(QuoteStore.VERSION, QuoteStore.read(file).header.version);
+    Assertions.assertTrue(restarted.verify("IBM").isEmpty());
+  }
+
+  @Test
+  void verifyReportsDamageAndCompactRepairsIt() throws IOException {
+    QuoteStore store = store(Encoding.RAW);
+    get(store, "BRK/A", "2019-01-01", "2019-12-31");
+    Path file = store.pathOf("BRK/A");
+    Assertions.assertEquals("BRK%2FA.qms", file.getFileName().toString());
+    Assertions.assertEquals(Collections.singletonList("BRK/A"), store.symbols());
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.APPEND)) {
+      channel.write(ByteBuffer.wrap(new byte[7]));
+    }
+
+    Assertions.assertEquals(Collections.singletonList("7 bytes after the last counted record"),
+        store.verify("BRK/A"));
+    long saved = store.compact("BRK/A");
+    Assertions.assertTrue(saved > 7 + 250 * 15, "saved " + saved);
+    Assertions.assertTrue(store.verify("BRK/A").isEmpty());
+
+    Files.write(file, new byte[] {1, 2, 3});
+    Assertions.assertFalse(store.verify("BRK/A").isEmpty());
+    fetches.clear();
+    get(store, "BRK/A", "2019-01-01", "2019-12-31");
+    Assertions.assertEquals(1, fetches.size());
+    Assertions.assertTrue(store.verify("BRK/A").isEmpty());
+  }
+}
@@ -0,0 +1,92 @@
+package com.stock.quotes;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class RequestSchedulerTest {
+
+  private final AtomicLong now = new AtomicLong();
+
+  @Test
+  void bucketAllowsBurstThenSpacesReservations() {
+    TokenBucket bucket = new TokenBucket("test", 3, Duration.ofSeconds(3), now::get);
+
+    Assertions.assertEquals(0, bucket.reserve());
+    Assertions.assertEquals(0, bucket.reserve());
+    Assertions.assertEquals(0, bucket.reserve());
+    Assertions.assertEquals(Duration.ofSeconds(1).toNanos(), bucket.reserve());
+    Assertions.assertEquals(Duration.ofSeconds(2).toNanos(), bucket.reserve());
+
+    now.addAndGet(Duration.ofSeconds(10).toNanos());
+    Assertions.assertEquals(3.0, bucket.available(), 1e-9);
+    bucket.drain();
+    Assertions.assertEquals(0.0, bucket.available(), 1e-9);
+  }
+
+  @Test
+  void throttledRequestIsRetriedAndOtherFailuresAreNot() {
+    RequestScheduler scheduler = new RequestScheduler(Collections.emptyList(), 3,
+        Duration.ofMillis(1), Duration.ofMillis(10));
+    AtomicInteger calls = new AtomicInteger();
+
+    String result = scheduler.execute(() -> {
+      if (calls.incrementAndGet() < 3) {
+        throw new QuoteServiceException("slow down", QuoteServiceException.TOO_MANY_REQUESTS);
+      }
+      return "ok";
+    });
+
+    Assertions.assertEquals("ok", result);
+    Assertions.assertEquals(3, calls.get());
+    Assertions.assertEquals(2, scheduler.getThrottledResponseCount());
+
+    QuoteServiceException failure = Assertions.assertThrows(QuoteServiceException.class,
+        () -> scheduler.execute(() -> {
+          calls.incrementAndGet();
+          throw new QuoteServiceException("broken", 500);
+        }));
+    Assertions.assertEquals(500, failure.getStatusCode());
+    Assertions.assertEquals(4, calls.get());
+  }
+
+  @Test
+  void asyncRequestGivesUpAfterMaxRetries() {
+    RequestScheduler scheduler = new RequestScheduler(Collections.emptyList(), 2,
+        Duration.ofMillis(1), Duration.ofMillis(10));
+    AtomicInteger calls = new AtomicInteger();
+
+    CompletableFuture<String> result = scheduler.executeAsync(() -> {
+      calls.incrementAndGet();
+      return Futures.failed(
+          new QuoteServiceException("slow down", QuoteServiceException.TOO_MANY_REQUESTS));
+    });
+
+    QuoteServiceException failure = Assertions.assertThrows(QuoteServiceException.class,
+        () -> Futures.join(result));
+    Assertions.assertTrue(failure.isThrottled());
+    Assertions.assertEquals(3, calls.get());
+  }
+
+  @Test
+  void backoffGrowsWithJitterAndHonoursRetryAfter() {
+    RequestScheduler scheduler = new RequestScheduler(Collections.emptyList(), 5,
+        Duration.ofSeconds(1), Duration.ofSeconds(8));
+
+    for (int attempt = 0; attempt < 6; attempt++) {
+      long ceiling = Duration.ofSeconds(Math.min(8, 1L << attempt)).toNanos();
+      long backoff = scheduler.backoffNanos(attempt, null);
+      Assertions.assertTrue(backoff >= ceiling / 2 && backoff <= ceiling, "attempt " + attempt);
+    }
+    Assertions.assertEquals(Duration.ofSeconds(30).toNanos(),
+        scheduler.backoffNanos(0, Duration.ofSeconds(30)));
+    Assertions.assertEquals(Duration.ofSeconds(30),
+        QuoteServiceException.parseRetryAfter(" 30 "));
+    Assertions.assertNull(QuoteServiceException.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+  }
+}
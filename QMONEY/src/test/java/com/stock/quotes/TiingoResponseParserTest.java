@@ -0,0 +1,100 @@
+package com.stock.quotes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.TiingoCandle;
+import com.stock.quotes.TiingoResponseParser.Endpoints;
+
+class TiingoResponseParserTest {
+
+  private String aaplQuotes = "[{\"date\":\"2019-01-02T00:00:00.000Z\",\"close\":157.92,\"high\":"
+      + "158.85,\"low\":154.23,\"open\":154.89,\"volume\":37039737,\"adjClose\":155.575184502,"
+      + "\"adjHigh\":156.4913757481,\"adjLow\":151.9399740739,\"adjOpen\":152.590174313,\"adjVolume"
+      + "\":37039737,\"divCash\":0.0,\"splitFactor\":1.0},{\"date\":\"2019-01-03T00:00:00.000Z\","
+      + "\"close\":142.19,\"high\":145.72,\"low\":142.0,\"open\":143.98,\"volume\":91312195,"
+      + "\"adjClose\":140.0787454682,\"adjHigh\":143.5563315959,\"adjLow\":139.8915666115,\"adjOpen"
+      + "\":141.842167329,\"adjVolume\":91312195,\"divCash\":0.0,\"splitFactor\":1.0},{\"date\":"
+      + "\"2019-12-12T00:00:00.000Z\",\"close\":271.46,\"high\":148.5499,\"low\":143.8,\"open"
+      + "\":144.53,\"volume\":58607070,\"adjClose\":146.0586173649,\"adjHigh\":146.3442128942,"
+      + "\"adjLow\":141.6648399911,\"adjOpen\":142.3840008617,\"adjVolume\":58607070,\"divCash"
+      + "\":0.0,\"splitFactor\":1.0}]";
+
+  private static InputStream stream(String body) {
+    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void parseSeriesMatchesObjectMapper() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    mapper.registerModule(new JavaTimeModule());
+    TiingoCandle[] expected = mapper.readValue(aaplQuotes, TiingoCandle[].class);
+
+    CandleSeries series = TiingoResponseParser.parseSeries(stream(aaplQuotes));
+
+    Assertions.assertEquals(expected.length, series.size());
+    for (int i = 0; i < expected.length; i++) {
+      Assertions.assertEquals(expected[i].getDate(), series.getDate(i));
+      Assertions.assertEquals(expected[i].getOpen(), series.getOpen(i), 0.0);
+      Assertions.assertEquals(expected[i].getClose(), series.getClose(i), 0.0);
+    }
+  }
+
+  @Test
+  void parseEndpointsKeepsFirstAndLastCandle() throws IOException {
+    Endpoints endpoints = TiingoResponseParser.parseEndpoints(stream(aaplQuotes));
+
+    Assertions.assertEquals(3, endpoints.getCount());
+    Assertions.assertEquals(LocalDate.parse("2019-01-02"), endpoints.getFirstDate());
+    Assertions.assertEquals(154.89, endpoints.getFirstOpen(), 0.0);
+    Assertions.assertEquals(157.92, endpoints.getFirstClose(), 0.0);
+    Assertions.assertEquals(LocalDate.parse("2019-12-12"), endpoints.getLastDate());
+    Assertions.assertEquals(271.46, endpoints.getLastClose(), 0.0);
+  }
+
+  @Test
+  void parseEndpointsOfEmptyArray() throws IOException {
+    Endpoints endpoints = TiingoResponseParser.parseEndpoints(stream("[]"));
+
+    Assertions.assertTrue(endpoints.isEmpty());
+    Assertions.assertNull(endpoints.getFirstDate());
+  }
+
+  @Test
+  void parseTopOfBookKeysEveryTickerInUpperCase() throws IOException {
+    String body = "[{\"ticker\":\"aapl\",\"timestamp\":\"2019-12-12T15:59:59.95-05:00\","
+        + "\"open\":267.78,\"high\":272.56,\"low\":267.32,\"tngoLast\":271.46,"
+        + "\"last\":271.45,\"prevClose\":268.48,\"mid\":null,\"askPrice\":null},"
+        + "{\"ticker\":\"MSFT\",\"timestamp\":\"2019-12-12T09:29:00-05:00\",\"open\":null,"
+        + "\"high\":null,\"low\":null,\"tngoLast\":null,\"last\":null,\"prevClose\":151.7}]";
+
+    Map<String, CandleSeries> quotes = TiingoResponseParser.parseTopOfBook(stream(body));
+
+    Assertions.assertEquals(2, quotes.size());
+    CandleSeries aapl = quotes.get("AAPL");
+    Assertions.assertEquals(1, aapl.size());
+    Assertions.assertEquals(LocalDate.parse("2019-12-12"), aapl.getDate(0));
+    Assertions.assertEquals(267.78, aapl.getOpen(0), 0.0);
+    Assertions.assertEquals(271.46, aapl.getClose(0), 0.0);
+    // No trade yet in the session: known ticker, no candle.
+    Assertions.assertTrue(quotes.get("MSFT").isEmpty());
+  }
+
+  @Test
+  void errorPayloadIsRejected() {
+    Assertions.assertThrows(IOException.class, () -> TiingoResponseParser
+        .parseSeries(stream("{\"detail\":\"Error: Ticker 'CISCO' not found\"}")));
+    Assertions.assertThrows(IOException.class, () -> TiingoResponseParser
+        .parseEndpoints(stream("{\"detail\":\"Error: Ticker 'CISCO' not found\"}")));
+  }
+}
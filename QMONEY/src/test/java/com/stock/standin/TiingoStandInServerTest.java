@@ -0,0 +1,186 @@
+package com.stock.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stock.PortfolioManagerApplication;
+import com.stock.dto.AnnualizedReturn;
+import com.stock.dto.CandleSeries;
+import com.stock.dto.PortfolioTrade;
+import com.stock.io.AnnualizedReturnWriter;
+import com.stock.quotes.PooledHttpQuoteTransport;
+import com.stock.quotes.QuoteServiceException;
+import com.stock.quotes.RequestScheduler;
+import com.stock.quotes.ThrottledQuoteTransport;
+import com.stock.quotes.TiingoEndpoints;
+import com.stock.quotes.UnknownSymbolException;
+
+class TiingoStandInServerTest {
+
+  private static final LocalDate FIRST_DAY = LocalDate.parse("2015-01-01");
+  private static final LocalDate LAST_DAY = LocalDate.parse("2020-06-30");
+
+  private TiingoStandInServer server;
+
+  @AfterEach
+  void stopServer() {
+    System.clearProperty(TiingoEndpoints.BASE_URL_PROPERTY);
+    System.clearProperty(TiingoEndpoints.COLUMNS_PROPERTY);
+    if (server != null) {
+      server.close();
+    }
+  }
+
+  private TiingoStandInServer.Builder standIn() {
+    return TiingoStandInServer.builder()
+        .marketData(new SyntheticMarketData(7, FIRST_DAY, LAST_DAY));
+  }
+
+  @Test
+  void servesDeterministicWeekdayCandles() throws IOException {
+    server = standIn().unknownSymbol("NOPE").build().start();
+    try (PooledHttpQuoteTransport transport =
+        new PooledHttpQuoteTransport(server.getBaseUrl(), "token", 2)) {
+      CandleSeries candles = transport.fetch("AAPL", LocalDate.parse("2019-12-28"),
+          LocalDate.parse("2020-01-03"));
+
+      Assertions.assertEquals(LocalDate.parse("2019-12-30"), candles.getDate(0));
+      Assertions.assertEquals(5, candles.size());
+      CandleSeries again = new SyntheticMarketData(7, FIRST_DAY, LAST_DAY).candles("AAPL",
+          LocalDate.parse("2019-12-30"), LocalDate.parse("2020-01-03"));
+      Assertions.assertEquals(again.getClose(4), candles.getClose(4), 0.0);
+      Assertions.assertTrue(candles.getLow(2) <= candles.getOpen(2));
+
+      Assertions.assertThrows(UnknownSymbolException.class,
+          () -> transport.fetch("NOPE", LAST_DAY.minusDays(5), LAST_DAY));
+    }
+  }
+
+  @Test
+  void projectedGzippedTransferParsesTheSameCandlesFromFewerBytes() throws IOException {
+    server = standIn().build().start();
+    CandleSeries full;
+    long fullBytes;
+    System.setProperty(TiingoEndpoints.COLUMNS_PROPERTY, "");
+    try (PooledHttpQuoteTransport transport =
+        new PooledHttpQuoteTransport(server.getBaseUrl(), "token", 2)) {
+      Assertions.assertNull(transport.getColumns());
+      full = transport.fetch("AAPL", FIRST_DAY, LAST_DAY);
+      fullBytes = transport.getDecodedBytes();
+    }
+    System.clearProperty(TiingoEndpoints.COLUMNS_PROPERTY);
+    try (PooledHttpQuoteTransport transport =
+        new PooledHttpQuoteTransport(server.getBaseUrl(), "token", 2)) {
+      Assertions.assertEquals(TiingoEndpoints.CANDLE_COLUMNS, transport.getColumns());
+      CandleSeries projected = transport.fetch("AAPL", FIRST_DAY, LAST_DAY);
+
+      Assertions.assertEquals(full.size(), projected.size());
+      for (int i = 0; i < full.size(); i++) {
+        Assertions.assertEquals(full.getEpochDay(i), projected.getEpochDay(i));
+        Assertions.assertEquals(full.getOpen(i), projected.getOpen(i), 0.0);
+        Assertions.assertEquals(full.getClose(i), projected.getClose(i), 0.0);
+      }
+      Assertions.assertEquals(1, transport.getBodyCount());
+      Assertions.assertTrue(transport.getDecodedBytes() < fullBytes / 2,
+          transport.getDecodedBytes() + " of " + fullBytes);
+      Assertions.assertTrue(transport.getWireBytesPerRequest() < fullBytes / 5.0,
+          transport.getWireBytes() + " of " + fullBytes);
+    }
+  }
+
+  @Test
+  void injectedFaultsAreReportedAndThrottlingIsRetried() throws IOException {
+    server = standIn().errorRate(1.0).build().start();
+    try (PooledHttpQuoteTransport transport =
+        new PooledHttpQuoteTransport(server.getBaseUrl(), "token", 2)) {
+      QuoteServiceException failure = Assertions.assertThrows(QuoteServiceException.class,
+          () -> transport.fetch("AAPL", FIRST_DAY, LAST_DAY));
+      Assertions.assertEquals(500, failure.getStatusCode());
+    }
+    server.close();
+
+    server = standIn().throttleRate(0.5).retryAfter(Duration.ZERO).build().start();
+    RequestScheduler scheduler = new RequestScheduler(Collections.emptyList(), 20,
+        Duration.ofMillis(1), Duration.ofMillis(5));
+    try (ThrottledQuoteTransport transport = new ThrottledQuoteTransport(
+        new PooledHttpQuoteTransport(server.getBaseUrl(), "token", 2), scheduler)) {
+      for (int i = 0; i < 10; i++) {
+        Assertions.assertFalse(transport.fetch("SYM" + i, FIRST_DAY, LAST_DAY).isEmpty());
+      }
+    }
+    Assertions.assertTrue(server.getInjectedThrottleCount() > 0);
+    Assertions.assertEquals(server.getInjectedThrottleCount(),
+        scheduler.getThrottledResponseCount());
+  }
+
+  @Test
+  void applicationRunsAgainstStandInWithGeneratedPortfolio() throws Exception {
+    server = standIn().build().start();
+    System.setProperty(TiingoEndpoints.BASE_URL_PROPERTY, server.getBaseUrl());
+    Path trades = Files.createTempFile("synthetic-trades", ".json");
+    try {
+      new SyntheticPortfolioGenerator(3, 25, FIRST_DAY, LocalDate.parse("2019-06-30"))
+          .write(300, trades);
+      List<PortfolioTrade> portfolio = PortfolioManagerApplication.readTradesFromJson(
+          trades.toString());
+      Assertions.assertEquals(300, portfolio.size());
+
+      List<AnnualizedReturn> returns = PortfolioManagerApplication
+          .mainCalculateReturnsAfterRefactor(new String[] {trades.toString(), "2020-06-30"});
+
+      Assertions.assertEquals(300, returns.size());
+      for (int i = 1; i < returns.size(); i++) {
+        Assertions.assertTrue(returns.get(i - 1).getAnnualizedReturn()
+            >= returns.get(i).getAnnualizedReturn());
+      }
+      Assertions.assertTrue(server.getRequestCount() <= 25);
+    } finally {
+      Files.delete(trades);
+    }
+  }
+
+  @Test
+  void streamedReturnsAreTheSameAsTheCollectedOnes() throws Exception {
+    server = standIn().build().start();
+    System.setProperty(TiingoEndpoints.BASE_URL_PROPERTY, server.getBaseUrl());
+    Path trades = Files.createTempFile("synthetic-trades", ".json");
+    try {
+      new SyntheticPortfolioGenerator(5, 25, FIRST_DAY, LocalDate.parse("2019-06-30"))
+          .write(200, trades);
+      String[] args = {trades.toString(), "2020-06-30"};
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+      long written = PortfolioManagerApplication.mainStreamReturns(args,
+          new AnnualizedReturnWriter(out, AnnualizedReturnWriter.Format.NDJSON));
+
+      ObjectMapper mapper = new ObjectMapper();
+      List<String> streamed = new ArrayList<>(Arrays.asList(
+          out.toString(StandardCharsets.UTF_8.name()).split("\n")));
+      List<String> collected = new ArrayList<>();
+      for (AnnualizedReturn annualizedReturn : PortfolioManagerApplication
+          .mainCalculateReturnsAfterRefactor(args)) {
+        collected.add(mapper.writeValueAsString(annualizedReturn));
+      }
+      Assertions.assertEquals(200, written);
+      Collections.sort(streamed);
+      Collections.sort(collected);
+      Assertions.assertEquals(collected, streamed);
+    } finally {
+      Files.delete(trades);
+    }
+  }
+}